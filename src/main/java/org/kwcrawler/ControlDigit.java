@@ -1,66 +1,62 @@
 package org.kwcrawler;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class ControlDigit {
 
     private final static int[] weights = { 1, 3, 7, 1, 3, 7, 1, 3, 7, 1, 3, 7 };
-    private final static Map<Character, Integer> decodingValues = new HashMap<>();
+    // values of characters of court codes and ledger numbers by their ASCII code, -1 for characters that have none
+    private final static int[] decodingValues = new int[128];
 
     static {
-        decodingValues.put('0', 0);
-        decodingValues.put('1', 1);
-        decodingValues.put('2', 2);
-        decodingValues.put('3', 3);
-        decodingValues.put('4', 4);
-        decodingValues.put('5', 5);
-        decodingValues.put('6', 6);
-        decodingValues.put('7', 7);
-        decodingValues.put('8', 8);
-        decodingValues.put('9', 9);
-        decodingValues.put('X', 10);
-        decodingValues.put('A', 11);
-        decodingValues.put('B', 12);
-        decodingValues.put('C', 13);
-        decodingValues.put('D', 14);
-        decodingValues.put('E', 15);
-        decodingValues.put('F', 16);
-        decodingValues.put('G', 17);
-        decodingValues.put('H', 18);
-        decodingValues.put('I', 19);
-        decodingValues.put('J', 20);
-        decodingValues.put('K', 21);
-        decodingValues.put('L', 22);
-        decodingValues.put('M', 23);
-        decodingValues.put('N', 24);
-        decodingValues.put('O', 25);
-        decodingValues.put('P', 26);
-        decodingValues.put('R', 27);
-        decodingValues.put('S', 28);
-        decodingValues.put('T', 29);
-        decodingValues.put('U', 30);
-        decodingValues.put('W', 31);
-        decodingValues.put('Y', 32);
-        decodingValues.put('Z', 33);
+        Arrays.fill(decodingValues, -1);
+        var characters = "0123456789XABCDEFGHIJKLMNOPRSTUWYZ";
+        for (int i = 0; i < characters.length(); i++) {
+            decodingValues[characters.charAt(i)] = i;
+        }
     }
 
     public static byte calculate(String courtCode, String ledgerNumber) {
         int result = 0;
         for (int i = 0; i < courtCode.length(); i++) {
-            char ch = courtCode.charAt(i);
-            result += decodingValues.get(ch) * weights[i];
+            result += value(courtCode.charAt(i)) * weights[i];
         }
 
         for (int i = 0; i < ledgerNumber.length(); i++) {
-            char ch = ledgerNumber.charAt(i);
-            result += decodingValues.get(ch) * weights[i+4];
+            result += value(ledgerNumber.charAt(i)) * weights[i+4];
         }
 
         return (byte)(result % 10);
     }
 
-    public static byte calculate(CourtCode courtCode, Integer ledgerNumber) {
-        return calculate(courtCode.getCode(), String.format("%08d", ledgerNumber));
+    public static byte calculate(CourtCode courtCode, int ledgerNumber) {
+        return calculate(courtCode.getPackedCode(), ledgerNumber);
+    }
+
+    /// Control digit of a court code packed into an int, see [KWId]
+    static byte calculate(int packedCourtCode, int ledgerNumber) {
+        int result = 0;
+        for (int i = 0; i < 4; i++) {
+            result += value((char) ((packedCourtCode >>> (24 - 8 * i)) & 0xff)) * weights[i];
+        }
+        return (byte) ((result + ledgerSum(ledgerNumber)) % 10);
+    }
+
+    // weighted digits of the ledger number zero-padded to 8 digits, from the last one
+    private static int ledgerSum(int ledgerNumber) {
+        int result = 0;
+        for (int i = 11; i >= 4; i--) {
+            result += (ledgerNumber % 10) * weights[i];
+            ledgerNumber /= 10;
+        }
+        return result;
+    }
+
+    private static int value(char ch) {
+        var value = ch < decodingValues.length ? decodingValues[ch] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid character: " + ch);
+        }
+        return value;
     }
 }
@@ -1,21 +1,135 @@
 package org.kwcrawler;
 
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Scanner;
+
+/// Code of a court keeping land registers, one of `court-codes.txt`.
+///
+/// Every code has one canonical instance, see [#of], and a dense [#ordinal] in code order, for arrays indexed
+/// by court instead of maps. Codes are found through a perfect hash of their characters packed into an int,
+/// a multiply and a shift into a table without collisions, found when the class is loaded.
+/// Ordinals change when courts are added to the file, so they are not written anywhere, see [KWId].
 public class CourtCode {
+    private static final CourtCode[] courtCodes;
+    private static final List<CourtCode> values;
+    // ordinal plus one of the code in each slot of the perfect hash, 0 for an empty slot
+    private static final short[] slots;
+    private static final int multiplier;
+    private static final int shift;
+
+    static {
+        String[] codes;
+        try (var inputStream = CourtCode.class.getClassLoader().getResourceAsStream("court-codes.txt");
+            var scanner = new Scanner(inputStream, StandardCharsets.UTF_8)) {
+            codes = scanner.useDelimiter("\\A").next().lines().map(String::strip).filter(line -> !line.isEmpty()).sorted().distinct().toArray(String[]::new);
+        } catch (IOException | NullPointerException e) {
+            throw new RuntimeException("Failed to read court codes file", e);
+        }
+
+        courtCodes = new CourtCode[codes.length];
+        var packedCodes = new int[codes.length];
+        for (var i = 0; i < codes.length; i++) {
+            packedCodes[i] = pack(codes[i]);
+            if (packedCodes[i] == 0) {
+                throw new IllegalStateException("Invalid court code in court codes file: " + codes[i]);
+            }
+            courtCodes[i] = new CourtCode(codes[i], i, packedCodes[i]);
+        }
+
+        // about 20 slots per code, so a multiplier without collisions is found in a few thousand tries
+        var bits = 32 - Integer.numberOfLeadingZeros(codes.length * 16);
+        var candidate = 0x9E3779B9;
+        short[] table;
+        for (var tries = 0; ; tries++, candidate += 0x6A09E668) {
+            if (tries == 1 << 16) {
+                bits++;
+                tries = 0;
+            }
+            table = perfectHash(packedCodes, candidate | 1, bits);
+            if (table != null) {
+                break;
+            }
+        }
+        values = List.of(courtCodes);
+        slots = table;
+        multiplier = candidate | 1;
+        shift = 32 - bits;
+    }
+
     private final String code;
+    private final int ordinal;
+    private final int packedCode;
 
+    /// @deprecated use [#of], which returns the canonical instance instead of creating a new one
+    @Deprecated
     public CourtCode(String code) {
+        var courtCode = find(code);
+        if (courtCode == null) {
+            throw new IllegalArgumentException("Invalid court code: " + code);
+        }
+        this.code = courtCode.code;
+        this.ordinal = courtCode.ordinal;
+        this.packedCode = courtCode.packedCode;
+    }
+
+    private CourtCode(String code, int ordinal, int packedCode) {
         this.code = code;
+        this.ordinal = ordinal;
+        this.packedCode = packedCode;
+    }
 
-        if (!CourtCodeValidator.isValidCourtCode(code)) {
+    /// @return canonical instance of the code
+    /// @throws IllegalArgumentException when it is not a court code
+    public static CourtCode of(String code) {
+        var courtCode = find(code);
+        if (courtCode == null) {
             throw new IllegalArgumentException("Invalid court code: " + code);
         }
+        return courtCode;
+    }
+
+    /// @param packedCode characters of the code packed into an int, a byte each, see [KWId#packedCourtCode]
+    /// @return canonical instance of the code, or `null` when it is not a court code
+    static CourtCode ofPacked(int packedCode) {
+        if (packedCode == 0) {
+            return null;
+        }
+        var slot = slots[(packedCode * multiplier) >>> shift];
+        // codes that are not court codes may fall into slots of court codes
+        return slot != 0 && courtCodes[slot - 1].packedCode == packedCode ? courtCodes[slot - 1] : null;
+    }
+
+    public static boolean isValid(String code) {
+        return find(code) != null;
+    }
+
+    /// All court codes, ordered by code and so by ordinal
+    public static List<CourtCode> values() {
+        return values;
+    }
+
+    /// Number of court codes, ordinals are below it
+    public static int count() {
+        return courtCodes.length;
     }
 
     public String getCode() {
         return code;
     }
 
+    /// Position of the code among all court codes ordered by code
+    public int ordinal() {
+        return ordinal;
+    }
+
+    /// Characters of the code packed into an int, a byte each
+    int getPackedCode() {
+        return packedCode;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -26,11 +140,50 @@ public class CourtCode {
         }
 
         var other = (CourtCode) obj;
-        return code.equals(other.code);
+        return ordinal == other.ordinal;
+    }
+
+    @Override
+    public int hashCode() {
+        return ordinal;
     }
 
     @Override
     public String toString() {
         return code;
     }
+
+    private static CourtCode find(String code) {
+        return code == null ? null : ofPacked(pack(code));
+    }
+
+    /// @return characters of the code packed into an int, or 0 when it can't be a court code
+    private static int pack(String code) {
+        if (code.length() != 4) {
+            return 0;
+        }
+        var packedCode = 0;
+        for (var i = 0; i < 4; i++) {
+            var ch = code.charAt(i);
+            if (ch == 0 || ch > 0x7f) {
+                return 0;
+            }
+            packedCode = packedCode << 8 | ch;
+        }
+        return packedCode;
+    }
+
+    /// @return table of ordinals plus one by the top `bits` bits of the product of packed codes and the multiplier,
+    /// or `null` when two codes fall into the same slot
+    private static short[] perfectHash(int[] packedCodes, int multiplier, int bits) {
+        var table = new short[1 << bits];
+        for (var i = 0; i < packedCodes.length; i++) {
+            var slot = (packedCodes[i] * multiplier) >>> (32 - bits);
+            if (table[slot] != 0) {
+                return null;
+            }
+            table[slot] = (short) (i + 1);
+        }
+        return table;
+    }
 }
@@ -91,6 +91,13 @@ public class Downloader implements AutoCloseable {
         return null;
     }
 
+    /// Whether the summary page is downloaded and the register was found, without reading its other pages
+    public static boolean isDownloadedAndFound(KWNumber kwNumber) {
+        return readPageFromFile(kwNumber, Chapter.SUMMARY)
+                .map(content -> !contentForNotExistingKW(content))
+                .orElse(false);
+    }
+
     public static boolean doesExist(KWNumber kwNumber) {
         var summaryPageContent = readPageFromFile(kwNumber, Chapter.SUMMARY);
         return !contentForNotExistingKW(summaryPageContent.get());
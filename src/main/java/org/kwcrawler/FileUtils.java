@@ -4,7 +4,9 @@ package org.kwcrawler;
 import java.io.IOException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 
 public class FileUtils {
     public static void createFileWithDirectories(String filename) {
@@ -19,4 +21,18 @@ public class FileUtils {
             throw new RuntimeException(e);
         }
     }
+
+    /// Deletes the file, or the directory with everything in it
+    public static void deleteRecursively(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (var paths = Files.walk(path)) {
+            for (var file : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete " + path, e);
+        }
+    }
 }
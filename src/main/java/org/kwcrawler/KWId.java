@@ -0,0 +1,96 @@
+package org.kwcrawler;
+
+/// KW number packed into a `long`, for keeping millions of them in primitive arrays, see [KWIdSet] and [KWIdMap].
+///
+/// Characters of the court code take a byte each in the upper half, the ledger number and the control digit
+/// the lower half, so ids are ordered like codes, and ids written to files stay the same when courts are added.
+/// That is why the court is not its [CourtCode#ordinal], which changes when courts are added.
+/// `0` is never an id. Encoding and decoding don't allocate, except for the codes they return.
+public final class KWId {
+    private KWId() {
+    }
+
+    public static long of(CourtCode courtCode, int ledgerNumber) {
+        var packedCourtCode = courtCode.getPackedCode();
+        return of(packedCourtCode, ledgerNumber, ControlDigit.calculate(packedCourtCode, ledgerNumber));
+    }
+
+    static long of(int packedCourtCode, int ledgerNumber, byte controlDigit) {
+        return (long) packedCourtCode << 32 | (long) ledgerNumber << 4 | controlDigit;
+    }
+
+    /// @param code KW code, e.g. `GL1G/00052948/3`
+    /// @throws IllegalArgumentException when it is not a valid code, also when its control digit is wrong
+    public static long parse(CharSequence code) {
+        if (code.length() != 15 || code.charAt(4) != '/' || code.charAt(13) != '/') {
+            throw new IllegalArgumentException("Invalid KW number: " + code);
+        }
+        var packedCourtCode = 0;
+        for (var i = 0; i < 4; i++) {
+            var ch = code.charAt(i);
+            packedCourtCode = packedCourtCode << 8 | (ch < 0x80 ? ch : 0);
+        }
+        var ledgerNumber = 0;
+        for (var i = 5; i < 13; i++) {
+            ledgerNumber = ledgerNumber * 10 + digit(code, i);
+        }
+        if (CourtCode.ofPacked(packedCourtCode) == null) {
+            throw new IllegalArgumentException("Invalid court code of KW number: " + code);
+        }
+        var controlDigit = digit(code, 14);
+        if (ControlDigit.calculate(packedCourtCode, ledgerNumber) != controlDigit) {
+            throw new IllegalArgumentException("Invalid control digit of KW number: " + code);
+        }
+        return of(packedCourtCode, ledgerNumber, (byte) controlDigit);
+    }
+
+    public static CourtCode courtCode(long id) {
+        var courtCode = CourtCode.ofPacked(packedCourtCode(id));
+        if (courtCode == null) {
+            throw new IllegalArgumentException("Not a KW id: " + id);
+        }
+        return courtCode;
+    }
+
+    /// Court code packed into an int, a byte per character
+    public static int packedCourtCode(long id) {
+        return (int) (id >>> 32);
+    }
+
+    public static int ledgerNumber(long id) {
+        return (int) ((id >>> 4) & 0xfffffff);
+    }
+
+    public static byte controlDigit(long id) {
+        return (byte) (id & 0xf);
+    }
+
+    public static String toCode(long id) {
+        var code = new char[15];
+        var packedCourtCode = packedCourtCode(id);
+        for (var i = 0; i < 4; i++) {
+            code[i] = (char) ((packedCourtCode >>> (24 - 8 * i)) & 0xff);
+        }
+        code[4] = '/';
+        var ledgerNumber = ledgerNumber(id);
+        for (var i = 12; i >= 5; i--) {
+            code[i] = (char) ('0' + ledgerNumber % 10);
+            ledgerNumber /= 10;
+        }
+        code[13] = '/';
+        code[14] = (char) ('0' + controlDigit(id));
+        return new String(code);
+    }
+
+    public static KWNumber toKWNumber(long id) {
+        return new KWNumber(courtCode(id), ledgerNumber(id), controlDigit(id));
+    }
+
+    private static int digit(CharSequence code, int index) {
+        var ch = code.charAt(index);
+        if (ch < '0' || ch > '9') {
+            throw new IllegalArgumentException("Invalid KW number: " + code);
+        }
+        return ch - '0';
+    }
+}
@@ -0,0 +1,123 @@
+package org.kwcrawler;
+
+/// Map of [KWId]s to longs, in an open-addressing table of primitive keys and values,
+/// 16 bytes per slot with at most 3/4 of slots taken, so 20 million registers take about 512 MB.
+/// Not thread safe.
+public class KWIdMap {
+    // 0 is never an id, so it marks an empty slot
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    public KWIdMap() {
+        this(16);
+    }
+
+    public KWIdMap(int expectedSize) {
+        var capacity = Integer.highestOneBit(Math.max(16, expectedSize * 4 / 3) - 1) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+    }
+
+    /// @return the previous value, or `missing` when the id had none
+    public long put(long id, long value, long missing) {
+        var slot = slot(id);
+        if (keys[slot] == id) {
+            var previous = values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        keys[slot] = id;
+        values[slot] = value;
+        size++;
+        if (size * 4L > keys.length * 3L) {
+            rehash();
+        }
+        return missing;
+    }
+
+    /// @return the value, or `missing` when the id has none
+    public long get(long id, long missing) {
+        var slot = slot(id);
+        return keys[slot] == id ? values[slot] : missing;
+    }
+
+    public boolean containsKey(long id) {
+        return keys[slot(id)] == id;
+    }
+
+    /// @return the removed value, or `missing` when the id had none
+    public long remove(long id, long missing) {
+        var slot = slot(id);
+        if (keys[slot] != id) {
+            return missing;
+        }
+        var value = values[slot];
+        // shift following entries of the run back, so lookups don't stop at the emptied slot
+        var mask = keys.length - 1;
+        var empty = slot;
+        for (var next = (slot + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            var home = home(keys[next]);
+            // the entry may move into the empty slot when it lies cyclically between its home and its slot
+            if (((next - home) & mask) >= ((next - empty) & mask)) {
+                keys[empty] = keys[next];
+                values[empty] = values[next];
+                empty = next;
+            }
+        }
+        keys[empty] = 0;
+        values[empty] = 0;
+        size--;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /// Passes entries in no particular order
+    public void forEach(EntryConsumer consumer) {
+        for (var slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    public interface EntryConsumer {
+        void accept(long id, long value);
+    }
+
+    /// Slot of the id, or the empty slot where it would go
+    private int slot(long id) {
+        if (id == 0) {
+            throw new IllegalArgumentException("Not a KW id: " + id);
+        }
+        var mask = keys.length - 1;
+        var slot = home(id);
+        while (keys[slot] != 0 && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // ids of a court differ only in low bits, mixed so that they spread over the whole table
+    private int home(long id) {
+        var hash = (id ^ (id >>> 33)) * 0xff51afd7ed558ccdL;
+        return (int) (hash ^ (hash >>> 33)) & (keys.length - 1);
+    }
+
+    private void rehash() {
+        var oldKeys = keys;
+        var oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        for (var slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                var newSlot = slot(oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.kwcrawler;
+
+import java.util.function.LongConsumer;
+
+/// Set of [KWId]s as bits of ledger numbers of each court, the control digit follows from them.
+///
+/// Courts are found by their [CourtCode#ordinal], without hashing. Bits are kept in chunks of [#CHUNK_BITS]
+/// ledger numbers, allocated when the first number in them is added, so a court takes 8 KiB for every
+/// 65536 ledger numbers it has any register in, and all registers of the country, about 25 million,
+/// take a few MB. Not thread safe.
+public class KWIdSet {
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_BITS = 1 << CHUNK_SHIFT;
+    // ledger numbers have 8 digits
+    private static final int CHUNKS = (99_999_999 >> CHUNK_SHIFT) + 1;
+
+    // chunks of each court by its ordinal
+    private final long[][][] chunks = new long[CourtCode.count()][][];
+    private long size;
+
+    /// @return `true` when the id was not in the set
+    public boolean add(long id) {
+        var ordinal = KWId.courtCode(id).ordinal();
+        if (chunks[ordinal] == null) {
+            chunks[ordinal] = new long[CHUNKS][];
+        }
+        var ledgerNumber = KWId.ledgerNumber(id);
+        var chunk = chunks[ordinal][ledgerNumber >>> CHUNK_SHIFT];
+        if (chunk == null) {
+            chunk = new long[CHUNK_BITS / 64];
+            chunks[ordinal][ledgerNumber >>> CHUNK_SHIFT] = chunk;
+        }
+        var word = (ledgerNumber & (CHUNK_BITS - 1)) >>> 6;
+        var bit = 1L << ledgerNumber;
+        if ((chunk[word] & bit) != 0) {
+            return false;
+        }
+        chunk[word] |= bit;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long id) {
+        var chunk = chunk(id);
+        return chunk != null && (chunk[(KWId.ledgerNumber(id) & (CHUNK_BITS - 1)) >>> 6] & 1L << KWId.ledgerNumber(id)) != 0;
+    }
+
+    /// @return `true` when the id was in the set
+    public boolean remove(long id) {
+        var chunk = chunk(id);
+        if (chunk == null) {
+            return false;
+        }
+        var word = (KWId.ledgerNumber(id) & (CHUNK_BITS - 1)) >>> 6;
+        var bit = 1L << KWId.ledgerNumber(id);
+        if ((chunk[word] & bit) == 0) {
+            return false;
+        }
+        chunk[word] &= ~bit;
+        size--;
+        return true;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /// Passes ids in order
+    public void forEach(LongConsumer consumer) {
+        // ordinals are in order of codes
+        for (var ordinal = 0; ordinal < chunks.length; ordinal++) {
+            if (chunks[ordinal] == null) {
+                continue;
+            }
+            var packedCourtCode = CourtCode.values().get(ordinal).getPackedCode();
+            for (var chunkIndex = 0; chunkIndex < CHUNKS; chunkIndex++) {
+                var chunk = chunks[ordinal][chunkIndex];
+                if (chunk == null) {
+                    continue;
+                }
+                for (var word = 0; word < chunk.length; word++) {
+                    for (var bits = chunk[word]; bits != 0; bits &= bits - 1) {
+                        var ledgerNumber = chunkIndex << CHUNK_SHIFT | word << 6 | Long.numberOfTrailingZeros(bits);
+                        consumer.accept(KWId.of(packedCourtCode, ledgerNumber, ControlDigit.calculate(packedCourtCode, ledgerNumber)));
+                    }
+                }
+            }
+        }
+    }
+
+    private long[] chunk(long id) {
+        var courtCode = CourtCode.ofPacked(KWId.packedCourtCode(id));
+        if (courtCode == null || chunks[courtCode.ordinal()] == null) {
+            return null;
+        }
+        return chunks[courtCode.ordinal()][KWId.ledgerNumber(id) >>> CHUNK_SHIFT];
+    }
+}
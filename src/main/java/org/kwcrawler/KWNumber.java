@@ -9,17 +9,17 @@ import java.util.List;
 public class KWNumber {
 
     private final CourtCode courtCode;
-    private final Integer ledgerNumber;
+    private final int ledgerNumber;
     private final byte controlDigit;
 
-    public KWNumber(CourtCode courtCode, Integer ledgerNumber) {
+    public KWNumber(CourtCode courtCode, int ledgerNumber) {
         validateLedgerNumber(ledgerNumber);
         this.courtCode = courtCode;
         this.ledgerNumber = ledgerNumber;
         this.controlDigit = ControlDigit.calculate(courtCode, ledgerNumber);
     }
 
-    public KWNumber(CourtCode courtCode, Integer ledgerNumber, Byte controlDigit) {
+    public KWNumber(CourtCode courtCode, int ledgerNumber, byte controlDigit) {
         this(courtCode, ledgerNumber);
 
         if (controlDigit != this.controlDigit) {
@@ -28,14 +28,14 @@ public class KWNumber {
     }
 
     public KWNumber(String courtCode, String ledgerNumber, String controlDigit) {
-        this(new CourtCode(courtCode), Integer.parseInt(ledgerNumber), Byte.parseByte(controlDigit));
+        this(CourtCode.of(courtCode), Integer.parseInt(ledgerNumber), Byte.parseByte(controlDigit));
     }
 
     public KWNumber(String kwNumber) {
         this(kwNumber.split("/")[0], kwNumber.split("/")[1], kwNumber.split("/")[2]);
     }
 
-    private void validateLedgerNumber(Integer ledgerNumber) {
+    private void validateLedgerNumber(int ledgerNumber) {
         if (ledgerNumber < 0 || ledgerNumber > 99999999) {
             throw new IllegalArgumentException("Invalid ledger number: " + ledgerNumber);
         }
@@ -46,15 +46,28 @@ public class KWNumber {
     }
 
     public String getLedgerNumber() {
-        return String.format("%08d", ledgerNumber);
+        return toCode().substring(5, 13);
+    }
+
+    public int getLedgerNumberValue() {
+        return ledgerNumber;
     }
 
     public String getControlDigit() {
         return Byte.toString(controlDigit);
     }
 
+    /// The number packed into a long, see [KWId]
+    public long toId() {
+        return KWId.of(courtCode.getPackedCode(), ledgerNumber, controlDigit);
+    }
+
+    public static KWNumber fromId(long id) {
+        return KWId.toKWNumber(id);
+    }
+
     public String toCode() {
-        return courtCode + "/" + getLedgerNumber() + "/" + controlDigit;
+        return KWId.toCode(toId());
     }
 
     @Override
@@ -93,6 +106,11 @@ public class KWNumber {
         if (!courtCode.equals(kwNumber.courtCode)) {
             return false;
         }
-        return ledgerNumber.equals(kwNumber.ledgerNumber);
+        return ledgerNumber == kwNumber.ledgerNumber;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(toId());
     }
 }
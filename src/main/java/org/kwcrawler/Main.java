@@ -4,19 +4,27 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.document.StringField;
-import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiTerms;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.kwcrawler.analyser.AnalysedRegister;
+import org.kwcrawler.analyser.AnalysedRegisterSerialized;
 import org.kwcrawler.analyser.RegisterAnalyser;
-import org.kwcrawler.parser.ParsedRegister;
+import org.kwcrawler.analyser.StoredAnalyses;
+import org.kwcrawler.index.IndexCatalog;
+import org.kwcrawler.index.IndexSearch;
+import org.kwcrawler.index.Indexer;
+import org.kwcrawler.index.OwnerIndex;
+import org.kwcrawler.index.ParcelIndex;
+import org.kwcrawler.index.SearchClient;
+import org.kwcrawler.index.SearchResult;
+import org.kwcrawler.index.SearchServer;
+import org.kwcrawler.parser.SectionSelection;
 import org.kwcrawler.parser.ParsedRegisterSerialized;
 import org.kwcrawler.parser.RegisterParser;
 import org.kwcrawler.structure.Filenames;
@@ -26,12 +34,15 @@ import org.openqa.selenium.TimeoutException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class Main {
@@ -89,12 +100,37 @@ public class Main {
     public static class IndexCommand {
         @Parameter(description = "KW court code to index")
         private String courtCode = "";
+
+        @Parameter(names = { "--shard" }, description = "Process only a slice of registers, for instance 3/16")
+        private String shard;
+
+        @Parameter(names = { "--shard-by" }, description = "Space split into shards: LEDGER or COURT")
+        private Shard.Space shardBy = Shard.Space.LEDGER;
     }
 
     @Parameters(commandNames = "generate-teryt", commandDescription = "Generate TERYT database from already downloaded KWs")
     public static class GenerateTerytCommand {
         @Parameter(description = "KW court code to index")
         private String courtCode = "";
+
+        @Parameter(names = { "--shard" }, description = "Process only a slice of registers, for instance 3/16")
+        private String shard;
+
+        @Parameter(names = { "--shard-by" }, description = "Space split into shards: LEDGER or COURT")
+        private Shard.Space shardBy = Shard.Space.LEDGER;
+    }
+
+    @Parameters(commandNames = "merge-index", commandDescription = "Merge indexes created by sharded index runs")
+    public static class MergeIndexCommand {
+    }
+
+    @Parameters(commandNames = "merge-teryt", commandDescription = "Merge TERYT counts created by sharded generate-teryt runs")
+    public static class MergeTerytCommand {
+        @Parameter(description = "KW court code to merge", required = true)
+        private String courtCode = "";
+
+        @Parameter(names = { "--partial" }, description = "Write mappings even though counts of some shards are missing, the counts are kept")
+        private boolean partial = false;
     }
 
     @Parameters(commandNames = "map", commandDescription = "Map downloaded KWs")
@@ -104,15 +140,69 @@ public class Main {
 
         @Parameter(names = { "--proxy" }, description = "Proxy server, for instance: socks5://localhost:8080")
         String proxy;
+
+        @Parameter(names = { "--shard" }, description = "Process only a slice of registers, for instance 3/16")
+        String shard;
+
+        @Parameter(names = { "--shard-by" }, description = "Space split into shards: LEDGER or COURT")
+        Shard.Space shardBy = Shard.Space.LEDGER;
     }
 
     @Parameters(commandNames = "search", commandDescription = "Search indexed KWs")
     public static class SearchCommand {
-        @Parameter(required = true)
-        private String query;
+        @Parameter(description = "Query, all KWs when empty")
+        private String query = "";
+
+        @Parameter(names = { "--filter" }, description = "Query all KWs have to match, for instance: gmina:MIEDŹNO obszar:[1 TO *] własność:LEGAL_ENTITY")
+        private String filter;
+
+        @Parameter(names = { "--facets" }, description = "Print counts of KWs by voivodeship, district and commune")
+        private boolean facets = false;
 
         @Parameter(names = { "--raw" }, description = "Print raw JSON")
         private boolean raw = false;
+
+        @Parameter(names = { "--limit" }, description = "Number of KWs on a page")
+        private int limit = SearchServer.DEFAULT_LIMIT;
+
+        @Parameter(names = { "--after" }, description = "Cursor of the next page, printed after the previous one")
+        private String after;
+
+        @Parameter(names = { "--stream" }, description = "Print all matching KWs as JSON, a line each, ordered by KW number")
+        private boolean stream = false;
+
+        @Parameter(names = { "--port" }, description = "Port of the search server, searched locally when it is not running")
+        private int port = SearchServer.DEFAULT_PORT;
+    }
+
+    @Parameters(commandNames = "serve", commandDescription = "Serve searches of indexed KWs over HTTP on localhost")
+    public static class ServeCommand {
+        @Parameter(names = { "--port" }, description = "Port to listen on")
+        private int port = SearchServer.DEFAULT_PORT;
+    }
+
+    @Parameters(commandNames = "match-groups", commandDescription = "Print indexed KWs of people of groups")
+    public static class MatchGroupsCommand {
+        @Parameter(names = { "--groups" }, description = "File with groups of people, by name with names of parents or by PESEL")
+        private String groups = OwnerTypeSelector.GROUPS_FILE.toString();
+    }
+
+    @Parameters(commandNames = "owners", commandDescription = "Print indexed KWs of an owner")
+    public static class OwnersCommand {
+        @Parameter(names = { "--pesel" }, description = "PESEL of the owner")
+        private String pesel;
+
+        @Parameter(names = { "--name" }, description = "Name of the owner with names of parents, for instance: JAN KOWALSKI (PIOTR, ANNA)")
+        private String name;
+
+        @Parameter(names = { "--regon" }, description = "REGON of the owner")
+        private String regon;
+    }
+
+    @Parameters(commandNames = "parcel", commandDescription = "Print KWs a parcel is or was in")
+    public static class ParcelCommand {
+        @Parameter(required = true, description = "TERYT id of the parcel, for instance 040701_1.0007.123/4")
+        private String parcelId;
     }
 
     @Parameters(commandNames = "info", commandDescription = "Print information about KW")
@@ -130,9 +220,15 @@ public class Main {
         var parseCommand = new ParseCommand();
         var indexCommand = new IndexCommand();
         var searchCommand = new SearchCommand();
+        var serveCommand = new ServeCommand();
+        var matchGroupsCommand = new MatchGroupsCommand();
+        var ownersCommand = new OwnersCommand();
+        var parcelCommand = new ParcelCommand();
         var infoCommand = new InfoCommand();
         var mapCommand = new MapCommand();
         var generateTerytCommand = new GenerateTerytCommand();
+        var mergeIndexCommand = new MergeIndexCommand();
+        var mergeTerytCommand = new MergeTerytCommand();
 
         JCommander jcommander;
         try {
@@ -142,9 +238,15 @@ public class Main {
                     .addCommand(parseCommand)
                     .addCommand(indexCommand)
                     .addCommand(searchCommand)
+                    .addCommand(serveCommand)
+                    .addCommand(matchGroupsCommand)
+                    .addCommand(ownersCommand)
+                    .addCommand(parcelCommand)
                     .addCommand(infoCommand)
                     .addCommand(mapCommand)
                     .addCommand(generateTerytCommand)
+                    .addCommand(mergeIndexCommand)
+                    .addCommand(mergeTerytCommand)
                     .build();
             jcommander.parse(args);
 
@@ -163,9 +265,15 @@ public class Main {
             case "parse" -> parse(parseCommand);
             case "index" -> index(indexCommand);
             case "search" -> search(searchCommand);
+            case "serve" -> serve(serveCommand);
+            case "match-groups" -> matchGroups(matchGroupsCommand);
+            case "owners" -> owners(ownersCommand);
+            case "parcel" -> parcel(parcelCommand);
             case "info" -> info(infoCommand);
             case "map" -> Mapping.map(mapCommand);
             case "generate-teryt" -> generateTeryt(generateTerytCommand);
+            case "merge-index" -> mergeIndex(mergeIndexCommand);
+            case "merge-teryt" -> mergeTeryt(mergeTerytCommand);
             default -> {
                 System.err.println("Unknown command");
                 jcommander.usage();
@@ -362,7 +470,7 @@ public class Main {
         }
 
         try {
-            return new CourtCode(template.substring(0, 4));
+            return CourtCode.of(template.substring(0, 4));
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Invalid court code in template: " + template);
         }
@@ -373,7 +481,7 @@ public class Main {
     private static boolean generateKWNumbersRecursive(String template, int index, StringBuilder current, List<KWNumber> kwNumbers, Integer max) {
         if (index == template.length()) {
             var parts = current.toString().split("/");
-            var courtCode = new CourtCode(parts[0]);
+            var courtCode = CourtCode.of(parts[0]);
             var ledgerNumber = Integer.parseInt(parts[1]);
 
             if (max != null && ledgerNumber > max) {
@@ -420,201 +528,211 @@ public class Main {
     }
 
     public static void index(IndexCommand indexCommand) {
-        FileUtils.createFileWithDirectories("index/lock");
+        var shard = Shard.parse(indexCommand.shard, indexCommand.shardBy);
+        var courtCodes = indexCommand.courtCode.isEmpty() ? downloadedCourts() : List.of(CourtCode.of(indexCommand.courtCode));
+        for (var courtCode : courtCodes) {
+            if (shard.contains(courtCode)) {
+                indexCourt(courtCode, shard);
+            }
+        }
+    }
 
-        try (var file = new RandomAccessFile("index/lock", "rw")) {
+    /// Courts are indexed one by one, each into its own index under its own lock, so a court can be
+    /// re-indexed while the others are searched and indexed by other processes
+    private static void indexCourt(CourtCode courtCode, Shard shard) {
+        // runs sharded within courts write to their own index, so they do not wait for each other on the lock
+        var indexDirectory = shard.hasWholeCourts() ? Filenames.getIndexDir(courtCode) : Filenames.getIndexShardDir(courtCode, shard);
+        var lockFile = indexDirectory.resolve("lock");
+        FileUtils.createFileWithDirectories(lockFile.toString());
+
+        try (var file = new RandomAccessFile(lockFile.toFile(), "rw")) {
             while (file.getChannel().tryLock() == null) {
                 Thread.sleep(100);
             }
-            var directory = FSDirectory.open(Paths.get("index"));
-            var config = new IndexWriterConfig();
-            try (var writer = new IndexWriter(directory, config)) {
-
-                System.out.println("Indexing...");
-
-                var courtCode = indexCommand.courtCode.isEmpty() ? null : new CourtCode(indexCommand.courtCode);
-                int count = Processing.forEachAnalysedKw(courtCode, (kwNumber, analyzed, index, allCount) -> {
-                    var contentBuilder = new StringBuilder();
-
-                    var document = new Document();
-                    document.add(new StringField("księga", kwNumber.toCode(), TextField.Store.YES));
-                    contentBuilder.append(kwNumber).append(" ");
-                    analyzed.locations().forEach(location -> {
-                        if (location.voivodeship() != null) {
-                            location.voivodeship().values().forEach(value -> {
-                                document.add(new TextField("lokalizacja", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (location.district() != null) {
-                            location.district().values().forEach(value -> {
-                                document.add(new TextField("lokalizacja", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (location.commune() != null) {
-                            location.commune().values().forEach(value -> {
-                                document.add(new TextField("lokalizacja", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (location.city() != null) {
-                            location.city().values().forEach(value -> {
-                                document.add(new TextField("lokalizacja", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                    });
-                    analyzed.apartments().forEach(apartment -> {
-                        if (apartment.street() != null) {
-                            apartment.street().values().forEach(value -> {
-                                document.add(new TextField("lokal", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (apartment.buildingNumber() != null) {
-                            apartment.buildingNumber().values().forEach(value -> {
-                                document.add(new TextField("lokal", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (apartment.apartmentNumber() != null) {
-                            apartment.apartmentNumber().values().forEach(value -> {
-                                document.add(new TextField("lokal", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (apartment.purpose() != null) {
-                            apartment.purpose().values().forEach(value -> {
-                                document.add(new TextField("lokal", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (apartment.floor() != null) {
-                            apartment.floor().values().forEach(value -> {
-                                document.add(new TextField("lokal", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                    });
-                    analyzed.parcels().forEach(parcel -> {
-                        if (parcel.parcelId() != null) {
-                            parcel.parcelId().values().forEach(value -> {
-                                document.add(new TextField("działka", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (parcel.region() != null) {
-                            parcel.region().values().forEach(value -> {
-                                document.add(new TextField("działka", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
+            try (var indexer = new Indexer(indexDirectory)) {
+                System.out.println("Indexing into " + indexDirectory + "...");
+
+                var owners = new OwnerIndex.Builder();
+                // registers that are broken or fail to parse this time keep their documents
+                int count = Processing.forEachAnalysedKw(courtCode, shard, (kwNumber, analyzed, index, allCount) -> {
+                    indexer.index(kwNumber, analyzed);
+                    owners.add(kwNumber, analyzed);
+                }, indexer::keep);
+                var ownersFile = owners.write(Filenames.getOwnersDir(courtCode), shard);
+                System.out.println("Indexed " + owners.getKeyCount() + " owners into " + ownersFile);
+
+                // registers of the shard that were neither indexed nor kept in this run are gone
+                var deleted = indexer.deleteMissing(shard::contains);
+
+                System.out.println("Finished " + count + " registers: " + indexer.getIndexed() + " indexed, "
+                        + indexer.getUnchanged() + " unchanged, " + deleted + " deleted. Committing");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-                        if (parcel.parcelNumber() != null) {
-                            parcel.parcelNumber().values().forEach(value -> {
-                                document.add(new TextField("działka", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (parcel.usageType() != null) {
-                            parcel.usageType().values().forEach(value -> {
-                                document.add(new TextField("działka", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (parcel.street() != null) {
-                            parcel.street().values().forEach(value -> {
-                                document.add(new TextField("działka", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                    });
-
-                    analyzed.owners().forEach(owner -> {
-                        if (owner.name() != null) {
-                            owner.name().values().forEach(value -> {
-                                document.add(new TextField("właściciel", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (owner.surname() != null) {
-                            owner.surname().values().forEach(value -> {
-                                document.add(new TextField("właściciel", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (owner.pesel() != null) {
-                            owner.pesel().values().forEach(value -> {
-                                document.add(new TextField("właściciel", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                    });
-                    analyzed.authorizeds().forEach(authorized -> {
-                        if (authorized.name() != null) {
-                            authorized.name().values().forEach(value -> {
-                                document.add(new TextField("uprawniony", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (authorized.surname() != null) {
-                            authorized.surname().values().forEach(value -> {
-                                document.add(new TextField("uprawniony", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                        if (authorized.pesel() != null) {
-                            authorized.pesel().values().forEach(value -> {
-                                document.add(new TextField("uprawniony", value.value(), TextField.Store.NO));
-                                contentBuilder.append(value.value()).append(" ");
-                            });
-                        }
-                    });
+    private static List<CourtCode> downloadedCourts() {
+        var downloads = Paths.get(Filenames.KW_DIR);
+        if (!Files.isDirectory(downloads)) {
+            return List.of();
+        }
+        try (var courtDirectories = Files.list(downloads)) {
+            return courtDirectories
+                    .filter(Files::isDirectory)
+                    .map(directory -> directory.getFileName().toString())
+                    .filter(CourtCodeValidator::isValidCourtCode)
+                    .sorted()
+                    .map(CourtCode::of)
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list courts in " + downloads, e);
+        }
+    }
 
-                    // document.add(new TextField("content", serializer.serialize(parsed), TextField.Store.NO));
-                    document.add(new TextField("content", contentBuilder.toString(), TextField.Store.NO));
+    public static void mergeIndex(MergeIndexCommand mergeIndexCommand) {
+        var shardsDirectory = Paths.get(Filenames.INDEX_SHARDS_DIR);
+        if (!Files.isDirectory(shardsDirectory)) {
+            System.out.println("No sharded indexes in " + shardsDirectory);
+            return;
+        }
 
+        try (var courtDirectories = Files.list(shardsDirectory)) {
+            for (var courtDirectory : courtDirectories.filter(Files::isDirectory).sorted().toList()) {
+                var courtCode = courtDirectory.getFileName().toString();
+                if (CourtCodeValidator.isValidCourtCode(courtCode)) {
                     try {
-                        writer.updateDocument(new Term("księga", kwNumber.toCode()), document);
-                        if (index % 2000 == 0) {
-                            System.out.println("Indexed " + index + " documents. Committing");
-                            writer.commit();
+                        mergeCourtIndex(CourtCode.of(courtCode));
+                    } catch (IllegalStateException e) {
+                        System.err.println("Skipping " + courtCode + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /// Replaces documents of the shards in the index of the court with the indexes of the shards,
+    /// so registers deleted in shard runs are deleted from the index too, then removes the merged shard indexes
+    private static void mergeCourtIndex(CourtCode courtCode) {
+        var indexDirectory = Filenames.getIndexDir(courtCode);
+        var lockFile = indexDirectory.resolve("lock");
+        FileUtils.createFileWithDirectories(lockFile.toString());
+
+        Map<Shard, Path> shardDirectories;
+        try (var paths = Files.list(Filenames.getIndexShardsDir(courtCode))) {
+            shardDirectories = Shard.ofOutputs(paths.filter(Files::isDirectory).toList(), "", Shard.Space.LEDGER);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list shard indexes of " + courtCode, e);
+        }
+
+        var locks = new ArrayList<RandomAccessFile>();
+        var shardIndexes = new LinkedHashMap<Shard, Directory>();
+        try (var file = new RandomAccessFile(lockFile.toFile(), "rw")) {
+            while (file.getChannel().tryLock() == null) {
+                Thread.sleep(100);
+            }
+            // shards still being indexed are waited for
+            for (var shardDirectory : shardDirectories.values()) {
+                var shardLock = new RandomAccessFile(shardDirectory.resolve("lock").toFile(), "rw");
+                locks.add(shardLock);
+                while (shardLock.getChannel().tryLock() == null) {
+                    Thread.sleep(100);
+                }
+            }
+            for (var entry : shardDirectories.entrySet()) {
+                var shardIndex = FSDirectory.open(entry.getValue());
+                if (DirectoryReader.indexExists(shardIndex)) {
+                    shardIndexes.put(entry.getKey(), shardIndex);
+                } else {
+                    shardIndex.close();
+                }
+            }
+            if (shardIndexes.isEmpty()) {
+                System.out.println("No shard indexes of " + courtCode);
+                return;
+            }
+
+            try (var directory = FSDirectory.open(indexDirectory);
+                 var writer = new IndexWriter(directory, Indexer.writerConfig())) {
+                // addIndexes() does not replace documents, so drop all documents of the merged shards first,
+                // including the ones their runs deleted
+                var replaced = new ArrayList<Term>();
+                try (var reader = DirectoryReader.open(writer)) {
+                    var terms = MultiTerms.getTerms(reader, Indexer.KW_FIELD);
+                    if (terms != null) {
+                        var termsEnum = terms.iterator();
+                        for (var term = termsEnum.next(); term != null; term = termsEnum.next()) {
+                            var kwNumber = KWNumber.fromId(KWId.parse(term.utf8ToString()));
+                            if (shardIndexes.keySet().stream().anyMatch(shard -> shard.contains(kwNumber))) {
+                                replaced.add(new Term(Indexer.KW_FIELD, BytesRef.deepCopyOf(term)));
+                            }
                         }
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
                     }
-                });
+                }
+                writer.deleteDocuments(replaced.toArray(Term[]::new));
+                System.out.println("Replacing " + replaced.size() + " documents of shards " + shardIndexes.keySet().stream().map(Shard::getName).toList());
 
-                System.out.println("Finished " + count + " documents. Committing");
+                writer.addIndexes(shardIndexes.values().toArray(Directory[]::new));
                 writer.commit();
+                System.out.println("Merged " + shardIndexes.size() + " shards of " + courtCode + ", index has " + writer.getDocStats().numDocs + " documents");
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            return;
+        } finally {
+            for (var shardIndex : shardIndexes.values()) {
+                try {
+                    shardIndex.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close " + shardIndex + ": " + e.getMessage());
+                }
+            }
+            for (var lock : locks) {
+                try {
+                    lock.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to release shard lock: " + e.getMessage());
+                }
+            }
         }
 
+        // merged shards are in the index now, next runs of them start over, possibly with another shard count
+        for (var shard : shardIndexes.keySet()) {
+            FileUtils.deleteRecursively(shardDirectories.get(shard));
+        }
     }
 
     private static void printKwInfo(KWNumber kwNumber, boolean raw) {
-        ParsedRegister parsed;
-        try {
-            parsed = new RegisterParser(kwNumber.getCourtCode()).parse(kwNumber);
-        } catch (ParseException e) {
-            System.out.println("Skipping " + kwNumber + " due to parse error: " + e.getMessage());
-            return;
+        AnalysedRegister analysed;
+        try (var registerAnalyser = new RegisterAnalyser(kwNumber.getCourtCode())) {
+            analysed = registerAnalyser.getCached(kwNumber);
+            if (analysed == null) {
+                // not analysed yet, or its analysis is stale
+                RegisterParser.Parsed parsed;
+                try {
+                    parsed = new RegisterParser(kwNumber.getCourtCode()).parseHashed(kwNumber, SectionSelection.ALL);
+                } catch (ParseException e) {
+                    System.out.println("Skipping " + kwNumber + " due to parse error: " + e.getMessage());
+                    return;
+                }
+                analysed = registerAnalyser.analyse(kwNumber, parsed.register(), parsed.pagesHash());
+            }
         }
 
         if (raw) {
-            System.out.println(new ParsedRegisterSerialized(true).serialize(parsed));
-            return;
+            System.out.println(new AnalysedRegisterSerialized(true).serialize(analysed));
+        } else {
+            printAnalysed(kwNumber, analysed);
         }
+    }
 
-        var registerAnalyser = new RegisterAnalyser(kwNumber.getCourtCode());
-
-        var analysed = registerAnalyser.analyse(kwNumber, parsed);
-
+    private static void printAnalysed(KWNumber kwNumber, AnalysedRegister analysed) {
         System.out.println("Księga: " + kwNumber + " - " + analysed.basicInfo().registerType());
         for (var location : analysed.locations()) {
             System.out.println("    Lokalizacja " + location.number() + ": " + location.voivodeship() + ", " + location.district() + ", " + location.commune() + ", " + location.city());
@@ -661,28 +779,131 @@ public class Main {
     }
 
     public static void search(SearchCommand searchCommand) {
-        try (var analyzer = new StandardAnalyzer()) {
-            var parser = new QueryParser("content", analyzer);
-
-            var query = parser.parse(searchCommand.query);
+        if (searchCommand.stream) {
+            export(searchCommand);
+            return;
+        }
 
-            var directory = FSDirectory.open(Paths.get("index"));
-            var reader = DirectoryReader.open(directory);
-            var indexSearcher = new IndexSearcher(reader);
+        SearchResult result;
+        try {
+            result = new SearchClient(searchCommand.port).search(searchCommand.query, searchCommand.filter, searchCommand.facets, searchCommand.limit, searchCommand.after);
+            if (result == null) {
+                result = searchLocally(searchCommand);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
 
-            var hits = indexSearcher.search(query, 100).scoreDocs;
-            var storedFields = indexSearcher.storedFields();
+        for (var hit : result.hits()) {
+            var kwNumber = new KWNumber(hit.kw());
+            if (hit.analysed() == null) {
+                // not analysed yet
+                printKwInfo(kwNumber, searchCommand.raw);
+            } else if (searchCommand.raw) {
+                System.out.println(new AnalysedRegisterSerialized(true).serialize(hit.analysed()));
+            } else {
+                printAnalysed(kwNumber, hit.analysed());
+            }
+        }
 
-            for (var hit : hits) {
-                var document = storedFields.document(hit.doc);
-                var kwNumber = new KWNumber(document.get("księga"));
+        System.out.println("Found " + result.totalHits() + " KWs");
+        if (result.facets() != null) {
+            result.facets().forEach((field, counts) -> {
+                System.out.println("    " + field + ":");
+                counts.forEach((value, count) -> System.out.println("        " + value + ": " + count));
+            });
+        }
+        if (result.next() != null) {
+            System.out.println("Next page: --after '" + result.next() + "'");
+        }
+    }
 
-                printKwInfo(kwNumber, searchCommand.raw);
+    private static void export(SearchCommand searchCommand) {
+        try {
+            if (new SearchClient(searchCommand.port).export(searchCommand.query, searchCommand.filter, System.out)) {
+                return;
             }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
 
-        } catch (org.apache.lucene.queryparser.classic.ParseException | IOException e) {
+        var executor = IndexCatalog.newSearchExecutor();
+        try (var reader = new IndexCatalog(Paths.get(Filenames.INDEX_DIR)).openReader();
+             var storedAnalyses = new StoredAnalyses()) {
+            var query = IndexSearch.parse(searchCommand.query, searchCommand.filter);
+            IndexSearch.export(new IndexSearcher(reader, executor), query, storedAnalyses, System.out);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static SearchResult searchLocally(SearchCommand searchCommand) {
+        var executor = IndexCatalog.newSearchExecutor();
+        try (var reader = new IndexCatalog(Paths.get(Filenames.INDEX_DIR)).openReader();
+             var storedAnalyses = new StoredAnalyses()) {
+            var query = IndexSearch.parse(searchCommand.query, searchCommand.filter);
+            var sort = IndexSearch.sort(searchCommand.query);
+            return IndexSearch.search(new IndexSearcher(reader, executor), query, sort, searchCommand.limit, searchCommand.after, searchCommand.facets, storedAnalyses);
+        } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static void serve(ServeCommand serveCommand) {
+        var server = new SearchServer(Paths.get(Filenames.INDEX_DIR), Paths.get(Filenames.PARCELS_DIR), serveCommand.port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Serving searches of " + Filenames.INDEX_DIR + " on http://localhost:" + server.getPort() + "/search?q=");
+    }
+
+    public static void matchGroups(MatchGroupsCommand matchGroupsCommand) {
+        var groups = OwnerTypeSelector.loadGroups(Paths.get(matchGroupsCommand.groups));
+        try (var reader = new IndexCatalog(Paths.get(Filenames.INDEX_DIR)).openReader()) {
+            var matches = IndexSearch.matchGroups(new IndexSearcher(reader), groups);
+            matches.forEach((group, kwCodes) -> {
+                System.out.println(group + ": " + kwCodes.size() + " KWs");
+                kwCodes.forEach(code -> System.out.println("    " + new KWNumber(code)));
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void owners(OwnersCommand ownersCommand) {
+        var ownerIndex = OwnerIndex.open(Paths.get(Filenames.OWNERS_DIR));
+        var start = System.nanoTime();
+        List<KWNumber> kwNumbers;
+        if (ownersCommand.pesel != null) {
+            kwNumbers = ownerIndex.byPesel(ownersCommand.pesel);
+        } else if (ownersCommand.name != null) {
+            kwNumbers = ownerIndex.byName(ownersCommand.name);
+        } else if (ownersCommand.regon != null) {
+            kwNumbers = ownerIndex.byRegon(ownersCommand.regon);
+        } else {
+            System.err.println("One of --pesel, --name or --regon is required");
+            return;
         }
+        var micros = (System.nanoTime() - start) / 1000;
+
+        kwNumbers.forEach(System.out::println);
+        System.out.println("Found " + kwNumbers.size() + " KWs in " + micros + " µs");
+    }
+
+    public static void parcel(ParcelCommand parcelCommand) {
+        var parcelIndex = ParcelIndex.open(Paths.get(Filenames.PARCELS_DIR));
+        var start = System.nanoTime();
+        var kwNumbers = parcelIndex.byParcelId(parcelCommand.parcelId);
+        var micros = (System.nanoTime() - start) / 1000;
+
+        kwNumbers.forEach(System.out::println);
+        System.out.println("Found " + kwNumbers.size() + " KWs in " + micros + " µs");
     }
 
     public static void info(InfoCommand infoCommand) {
@@ -692,11 +913,57 @@ public class Main {
 
     private static void generateTeryt(GenerateTerytCommand generateTerytCommand) {
         var terytGuesser = new TerytAnalyser();
-        var courtCode = new CourtCode(generateTerytCommand.courtCode);
-        Processing.forEachAnalysedKw(courtCode, (kwNumber, analysed, index, allCount) -> {
+        var courtCode = CourtCode.of(generateTerytCommand.courtCode);
+        var shard = Shard.parse(generateTerytCommand.shard, generateTerytCommand.shardBy);
+        var parcels = new ParcelIndex.Builder();
+        Processing.forEachAnalysedKw(courtCode, shard, TerytAnalyser.SECTIONS, (kwNumber, analysed, index, allCount) -> {
             terytGuesser.learn(kwNumber, analysed);
+            parcels.add(kwNumber, analysed);
         });
+        var parcelsFile = parcels.write(Filenames.getParcelsDir(courtCode), shard);
+        System.out.println("Indexed " + parcels.getKeyCount() + " parcels into " + parcelsFile);
+
+        if (shard.isAll()) {
+            terytGuesser.writeMappings(courtCode);
+        } else {
+            // mappings are selected from counts of the whole court, see merge-teryt
+            var countsFile = Filenames.getTerytCountsFile(courtCode, shard);
+            terytGuesser.writeCounts(countsFile);
+            System.out.println("Written TERYT counts to " + countsFile);
+        }
+    }
+
+    private static void mergeTeryt(MergeTerytCommand mergeTerytCommand) {
+        var terytAnalyser = new TerytAnalyser();
+        var courtCode = CourtCode.of(mergeTerytCommand.courtCode);
 
-        terytGuesser.writeMappings(courtCode);
+        Map<Shard, Path> countFiles;
+        try (var paths = Files.list(Filenames.getTerytCountsDir(courtCode))) {
+            countFiles = Shard.ofOutputs(paths.toList(), ".csv", Shard.Space.LEDGER);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot list TERYT counts for " + courtCode, e);
+        }
+        if (countFiles.isEmpty()) {
+            System.err.println("No TERYT counts of " + courtCode + " to merge");
+            return;
+        }
+        var missing = Shard.missing(countFiles.keySet());
+        if (!missing.isEmpty() && !mergeTerytCommand.partial) {
+            System.err.println("Missing TERYT counts of shards " + missing.stream().map(Shard::getName).toList()
+                    + ", wait for them to finish or merge with --partial");
+            return;
+        }
+        for (var countFile : countFiles.values()) {
+            System.out.println("Merging " + countFile);
+            terytAnalyser.readCounts(countFile);
+        }
+
+        terytAnalyser.writeMappings(courtCode);
+
+        // counts are in the mappings now, so they are not added again with counts of a later run,
+        // counts of an incomplete merge are kept for the complete one
+        if (missing.isEmpty()) {
+            countFiles.values().forEach(FileUtils::deleteRecursively);
+        }
     }
 }
\ No newline at end of file
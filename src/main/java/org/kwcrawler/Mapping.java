@@ -10,6 +10,8 @@ import org.kwcrawler.analyser.AnalysedRegister.LegalOwner;
 import org.kwcrawler.analyser.AnalysedRegister.Owner;
 import org.kwcrawler.analyser.AnalysedRegister.Parcel;
 import org.kwcrawler.analyser.AnalysedRegister.TreasuryOwner;
+import org.kwcrawler.index.ParcelIndex;
+import org.kwcrawler.structure.Filenames;
 import org.kwcrawler.teryt.ParcelTeryt;
 import org.kwcrawler.teryt.TerytGuesser;
 import org.kwcrawler.teryt.TerytGuesser.GuessTerytResult.ParcelFound;
@@ -69,7 +71,7 @@ public class Mapping {
 
     public static void map(Main.MapCommand mapCommand) {
         createFileWithDirectories("map/lock");
-        var courtCode = new CourtCode(mapCommand.courtCode);
+        var courtCode = CourtCode.of(mapCommand.courtCode);
         var geometryDownloader = new GeometryDownloader(mapCommand.proxy);
 
         var csvParser = new CsvParser();
@@ -80,10 +82,14 @@ public class Mapping {
         var ownerTypeSelector = new OwnerTypeSelector();
         var cannotGuessCount = new AtomicInteger(0);
 
-        Processing.forEachAnalysedKw(courtCode, (kwNumber, analysed, index, allCount) -> {
+        var shard = Shard.parse(mapCommand.shard, mapCommand.shardBy);
+        var parcels = new ParcelIndex.Builder();
+
+        Processing.forEachAnalysedKw(courtCode, shard, (kwNumber, analysed, index, allCount) -> {
             if (index % 100 == 0) {
                 System.out.println("Processed " + index + "/" + allCount);
             }
+            parcels.add(kwNumber, analysed);
 
             analysed.parcels().forEach(parcel -> {
                 if (parcel.parcelId() == null) {
@@ -157,6 +163,8 @@ public class Mapping {
             });
         });
         System.out.println("Cannot guess teryt for " + cannotGuessCount.get() + " parcels");
+        var parcelsFile = parcels.write(Filenames.getParcelsDir(courtCode), shard);
+        System.out.println("Indexed " + parcels.getKeyCount() + " parcels into " + parcelsFile);
     }
 
     private static ParcelGeometry selectGeometry(KWNumber kwNumber, AnalysedRegister analysed,
@@ -214,13 +222,11 @@ public class Mapping {
                     } catch (NumberFormatException e) {
                         return false;
                     }
-                    var addedChange = analysed.changes().stream()
-                            .filter(change -> change.number() == addedIndex)
-                            .findFirst();
-                    if (addedChange.isEmpty()) {
+                    var addedChange = analysed.changes().byNumber(addedIndex);
+                    if (addedChange == null || addedChange.description() == null) {
                         return false;
                     }
-                    var addedChangeDescription = addedChange.get().description();
+                    var addedChangeDescription = addedChange.description();
 
                     var contains = addedChangeDescription.contains(" " + parcelWithSheetTeryt.sheet());
                     if (contains) {
@@ -6,44 +6,73 @@ import org.yaml.snakeyaml.Yaml;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 
 public class OwnerTypeSelector {
+    public static final Path GROUPS_FILE = Path.of("groups.yaml");
+
     private final Map<String, String> typeMapByPesel = new HashMap<>();
     private final Map<String, String> typeMapByName = new HashMap<>();
 
+    /// Group of people whose properties are tracked
+    ///
+    /// @param names names as written by [#personName]
+    public record Group(
+            String name,
+            List<String> names,
+            List<String> pesels
+    ) {
+    }
+
     public OwnerTypeSelector() {
+        for (var group : loadGroups(GROUPS_FILE)) {
+            for (var name : group.names()) {
+                typeMapByName.put(name, group.name());
+            }
+            for (var pesel : group.pesels()) {
+                typeMapByPesel.put(pesel, group.name());
+            }
+        }
+    }
+
+    /// Groups in the order of the file, e.g.
+    /// ```yaml
+    /// groups:
+    ///   friends:
+    ///     names:
+    ///     - "JAN KAZIMIERZ (LEOPOLD, STEFANIA)"
+    ///     pesels:
+    ///     - "80010112345"
+    /// ```
+    public static List<Group> loadGroups(Path path) {
         var yaml = new Yaml();
 
         // Load the YAML file
-        try (var inputStream = Files.newInputStream(Path.of("groups.yaml"))) {
+        try (var inputStream = Files.newInputStream(path)) {
             var yamlData = yaml.<Map<String, Map<String, Map<String, Object>>>>load(inputStream);
 
             // Navigate the YAML structure
-            var groups = yamlData.get("groups");
-            groups.forEach((groupName, groupDetails) -> {
+            var groups = new ArrayList<Group>();
+            yamlData.get("groups").forEach((groupName, groupDetails) -> {
                 var names = (List<String>) groupDetails.get("names");
-                if (names != null) {
-                    for (var name : names) {
-                        typeMapByName.put(name, groupName);
-                    }
-                }
-
                 var pesels = (List<String>) groupDetails.get("pesels");
-                if (pesels != null) {
-                    for (var pesel : pesels) {
-                        typeMapByPesel.put(pesel, groupName);
-                    }
-                }
+                groups.add(new Group(groupName, names != null ? names : List.of(), pesels != null ? pesels : List.of()));
             });
+            return groups;
         } catch (Exception e) {
             throw new RuntimeException("Failed to load the YAML file", e);
         }
     }
 
+    /// Name of a person with names of parents, as in groups, e.g. `JAN KAZIMIERZ (LEOPOLD, STEFANIA)`
+    public static String personName(AnalysedRegister.Owner owner) {
+        return owner.name().currentValue() + " " + owner.surname().currentValue() + " (" + owner.fatherName().currentValue() + ", " + owner.motherName().currentValue() + ")";
+    }
+
     public String selectOwnerType(KWNumber kwNumber, AnalysedRegister analysed, AnalysedRegister.Parcel parcel) {
         var owners = analysed.owners();
         var authorizeds = analysed.authorizeds();
@@ -56,7 +85,7 @@ public class OwnerTypeSelector {
                 return typeMapByPesel.get(pesel);
             }
 
-            var name = owner.name().currentValue() + " " + owner.surname().currentValue() + " (" + owner.fatherName().currentValue() + ", " + owner.motherName().currentValue() + ")";
+            var name = personName(owner);
             if (typeMapByName.containsKey(name)) {
                 return typeMapByName.get(name);
             }
@@ -5,12 +5,17 @@ import org.kwcrawler.analyser.AnalysedRegister;
 import org.kwcrawler.analyser.RegisterAnalyser;
 import org.kwcrawler.parser.ParsedRegister;
 import org.kwcrawler.parser.RegisterParser;
+import org.kwcrawler.parser.SectionSelection;
 import org.kwcrawler.structure.Filenames;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 public class Processing {
     public interface KwProcessor {
@@ -25,27 +30,70 @@ public class Processing {
         void process(KWNumber kwNumber, AnalysedRegister analysed, long index, long allCount);
     }
 
+    /// Gets registers that exist but were not processed, because their download is broken or they failed to parse.
+    /// Registers not found by the court are gone, they are not passed.
+    public interface KwSkipProcessor {
+        void skip(KWNumber kwNumber);
+    }
+
+    private static final KwSkipProcessor IGNORE_SKIPPED = kwNumber -> {};
+    private static final int STORED_BATCH_SIZE = 4096;
+
     public static int forEachKw(CourtCode courtCode, KwProcessor processor) {
+        return forEachKw(courtCode, Shard.ALL, processor);
+    }
+
+    public static int forEachKw(CourtCode courtCode, Shard shard, KwProcessor processor) {
+        return forEachKw(courtCode, shard, processor, IGNORE_SKIPPED);
+    }
+
+    public static int forEachKw(CourtCode courtCode, Shard shard, KwProcessor processor, KwSkipProcessor skipped) {
+        var count = new AtomicInteger();
+        forEachKw(courtCode, shard, countKw(courtCode, shard), count, kwNumber -> false, processor, skipped);
+        return count.get();
+    }
+
+    // registers with a summary page in the shard
+    private static long countKw(CourtCode courtCode, Shard shard) {
         var searchDirectory = courtCode == null ? Paths.get(Filenames.KW_DIR) : Filenames.getCourtDir(courtCode);
 
         try {
             System.out.println("Counting...");
             var allCount = Files.walk(searchDirectory)
                     .filter(path -> path.getFileName().toString().endsWith("-Summary.html"))
+                    .filter(path -> shard.isAll() || shard.contains(Filenames.getKwNumber(path)))
                     .count();
-            System.out.println("Processing " + allCount + " registers...");
-            var count = new AtomicInteger();
+            System.out.println("Processing " + allCount + " registers" + (shard.isAll() ? "" : " in shard " + shard) + "...");
+            return allCount;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // registers of the shard which are not done yet, counted on from `count`
+    private static void forEachKw(CourtCode courtCode, Shard shard, long allCount, AtomicInteger count, Predicate<KWNumber> done,
+                                  KwProcessor processor, KwSkipProcessor skipped) {
+        var searchDirectory = courtCode == null ? Paths.get(Filenames.KW_DIR) : Filenames.getCourtDir(courtCode);
+
+        try {
             Files.walk(searchDirectory)
                     .parallel()
                     .filter(Files::isRegularFile)
                     .filter(path -> path.getFileName().toString().endsWith("-Summary.html"))
                     .forEach(path -> {
-                        var currentCount = count.incrementAndGet();
-
                         var kwNumber = Filenames.getKwNumber(path);
+                        if (!shard.contains(kwNumber) || done.test(kwNumber)) {
+                            return;
+                        }
+
+                        var currentCount = count.incrementAndGet();
 
                         var downloadStatus = Downloader.getDownloadStatus(kwNumber);
-                        if (downloadStatus.notDownloadedOrBroken() || downloadStatus.notFound()) {
+                        if (downloadStatus.notFound()) {
+                            return;
+                        }
+                        if (downloadStatus.notDownloadedOrBroken()) {
+                            skipped.skip(kwNumber);
                             return;
                         }
 
@@ -55,16 +103,19 @@ public class Processing {
                             throw new RuntimeException("Error processing " + kwNumber, e);
                         }
                     });
-            return count.get();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     public static int forEachProcessedKw(CourtCode courtCode, KwProcessedProcessor processor) {
+        return forEachProcessedKw(courtCode, Shard.ALL, processor);
+    }
+
+    public static int forEachProcessedKw(CourtCode courtCode, Shard shard, KwProcessedProcessor processor) {
         var registerParser = new RegisterParser(courtCode);
 
-        return forEachKw(courtCode, (kwNumber, index, allCount) -> {
+        return forEachKw(courtCode, shard, (kwNumber, index, allCount) -> {
             ParsedRegister parsed;
             try {
                 parsed = registerParser.parse(kwNumber);
@@ -73,33 +124,83 @@ public class Processing {
                 return;
             }
             processor.process(kwNumber, parsed, index, allCount);
-        });
+        }, IGNORE_SKIPPED);
     }
 
     public static int forEachAnalysedKw(CourtCode courtCode, KwAnalysisProcessor processor) {
-        var registerParser = new RegisterParser(courtCode);
-        var registerAnalyser = new RegisterAnalyser(courtCode);
+        return forEachAnalysedKw(courtCode, Shard.ALL, processor);
+    }
 
-        return forEachKw(courtCode, (kwNumber, index, allCount) -> {
-            var cached = registerAnalyser.getCached(kwNumber);
+    public static int forEachAnalysedKw(CourtCode courtCode, Shard shard, KwAnalysisProcessor processor) {
+        return forEachAnalysedKw(courtCode, shard, RegisterAnalyser.SECTIONS, processor, IGNORE_SKIPPED);
+    }
 
-            if (cached != null) {
-                processor.process(kwNumber, cached, index, allCount);
-                return;
-            }
+    public static int forEachAnalysedKw(CourtCode courtCode, Shard shard, KwAnalysisProcessor processor, KwSkipProcessor skipped) {
+        return forEachAnalysedKw(courtCode, shard, RegisterAnalyser.SECTIONS, processor, skipped);
+    }
 
-            ParsedRegister parsed;
-            try {
-                parsed = registerParser.parse(kwNumber);
-            } catch (ParseException e) {
-                System.out.println("Skipping " + kwNumber + " due to parse error: " + e.getMessage());
-                return;
+    public static int forEachAnalysedKw(CourtCode courtCode, Shard shard, SectionSelection selection, KwAnalysisProcessor processor) {
+        return forEachAnalysedKw(courtCode, shard, selection, processor, IGNORE_SKIPPED);
+    }
+
+    /// Current stored analyses of the court are read first, in one pass over the store, without reading pages
+    /// of their registers again. The other registers are parsed only as far as `selection` goes. Their analysis
+    /// is stored only when the selection has everything the analyser reads, otherwise it would be stored incomplete.
+    /// Stored analyses are read only in the columns the selection needs.
+    public static int forEachAnalysedKw(CourtCode courtCode, Shard shard, SectionSelection selection, KwAnalysisProcessor processor, KwSkipProcessor skipped) {
+        var registerParser = new RegisterParser(courtCode);
+        var complete = selection.covers(RegisterAnalyser.SECTIONS);
+        var columns = RegisterAnalyser.columns(selection);
+        var allCount = countKw(courtCode, shard);
+        var count = new AtomicInteger();
+
+        var registerAnalyser = new RegisterAnalyser(courtCode);
+        try (registerAnalyser) {
+            var stored = new KWIdSet();
+            if (courtCode != null) {
+                // read on one thread, processed on many
+                var batch = new ArrayList<Map.Entry<KWNumber, AnalysedRegister>>(STORED_BATCH_SIZE);
+                stored = registerAnalyser.forEachCached(courtCode, kwNumber -> shard.contains(kwNumber) && Downloader.isDownloadedAndFound(kwNumber), columns, (kwNumber, analysed) -> {
+                    batch.add(Map.entry(kwNumber, analysed));
+                    if (batch.size() == STORED_BATCH_SIZE) {
+                        processStored(batch, processor, count, allCount);
+                    }
+                });
+                processStored(batch, processor, count, allCount);
+                System.out.println("Read " + stored.size() + " stored analyses");
             }
 
-            var analysed = registerAnalyser.analyse(kwNumber, parsed);
+            // registers without a current analysis at the pass over the store are new or changed since
+            var cached = stored;
+            forEachKw(courtCode, shard, allCount, count, kwNumber -> cached.contains(kwNumber.toId()), (kwNumber, index, all) -> {
+                RegisterParser.Parsed parsed;
+                try {
+                    parsed = registerParser.parseHashed(kwNumber, selection);
+                } catch (ParseException e) {
+                    System.out.println("Skipping " + kwNumber + " due to parse error: " + e.getMessage());
+                    skipped.skip(kwNumber);
+                    return;
+                }
+
+                var analysed = complete
+                        ? registerAnalyser.analyse(kwNumber, parsed.register(), parsed.pagesHash())
+                        : registerAnalyser.analyse(parsed.register());
+
+                processor.process(kwNumber, analysed, index, all);
+            }, skipped);
+        }
+        System.out.println("Analysed registers: " + registerAnalyser.getWriteStats());
+        return count.get();
+    }
 
-            processor.process(kwNumber, analysed, index, allCount);
+    private static void processStored(List<Map.Entry<KWNumber, AnalysedRegister>> batch, KwAnalysisProcessor processor, AtomicInteger count, long allCount) {
+        batch.parallelStream().forEach(entry -> {
+            try {
+                processor.process(entry.getKey(), entry.getValue(), count.incrementAndGet(), allCount);
+            } catch (Exception e) {
+                throw new RuntimeException("Error processing " + entry.getKey(), e);
+            }
         });
+        batch.clear();
     }
-
 }
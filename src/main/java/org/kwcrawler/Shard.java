@@ -0,0 +1,142 @@
+package org.kwcrawler;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/// Slice of the register space processed by a single process, e.g. `--shard 3/16`.
+/// Shards are numbered from 1, so `1/16` to `16/16` together cover everything.
+public record Shard(
+        int number,
+        int count,
+        Space space
+) {
+    public enum Space {
+        LEDGER, // split by ledger number, every court is spread over all shards
+        COURT   // split by court code, every court is processed by exactly one shard
+    }
+
+    public static final Shard ALL = new Shard(1, 1, Space.LEDGER);
+
+    private static final Pattern NAME = Pattern.compile("(\\d+)of(\\d+)");
+
+    public Shard {
+        if (count < 1 || number < 1 || number > count) {
+            throw new IllegalArgumentException("Invalid shard: " + number + "/" + count);
+        }
+    }
+
+    public static Shard parse(String spec, Space space) {
+        if (spec == null || spec.isEmpty()) {
+            return ALL;
+        }
+
+        var parts = spec.split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid shard format, expected for instance 3/16: " + spec);
+        }
+
+        try {
+            return new Shard(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), space);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid shard format, expected for instance 3/16: " + spec);
+        }
+    }
+
+    /// Shards of outputs of sharded runs, e.g. files or directories named `3of16` or `3of16.csv`, see [#getName].
+    /// Outputs that are not named after a shard are left out.
+    ///
+    /// @return outputs by shard, in order of shard numbers
+    /// @throws IllegalStateException when the outputs are of runs with different shard counts, e.g. `1of8` and `1of16`,
+    ///     which cover the same registers more than once
+    public static Map<Shard, Path> ofOutputs(List<Path> outputs, String extension, Space space) {
+        var byNumber = new TreeMap<Integer, Path>();
+        var count = 0;
+        for (var output : outputs) {
+            var name = output.getFileName().toString();
+            if (!name.endsWith(extension)) {
+                continue;
+            }
+            var matcher = NAME.matcher(name.substring(0, name.length() - extension.length()));
+            if (!matcher.matches()) {
+                continue;
+            }
+            var shard = new Shard(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), space);
+            if (count != 0 && count != shard.count()) {
+                throw new IllegalStateException("Outputs of runs with different shard counts: " + count + " and " + shard.count()
+                        + ", remove the outputs of the older run");
+            }
+            count = shard.count();
+            byNumber.put(shard.number(), output);
+        }
+
+        var shards = new LinkedHashMap<Shard, Path>();
+        for (var entry : byNumber.entrySet()) {
+            shards.put(new Shard(entry.getKey(), count, space), entry.getValue());
+        }
+        return shards;
+    }
+
+    /// Shards of the same run as `shards` which are not among them, e.g. `2of3` for `1of3` and `3of3`
+    ///
+    /// @param shards shards of outputs of one run, see [#ofOutputs]
+    /// @return missing shards in order of shard numbers, empty also when there are no shards at all
+    public static List<Shard> missing(Collection<Shard> shards) {
+        var missing = new ArrayList<Shard>();
+        if (shards.isEmpty()) {
+            return missing;
+        }
+        var any = shards.iterator().next();
+        for (int number = 1; number <= any.count(); number++) {
+            var shard = new Shard(number, any.count(), any.space());
+            if (!shards.contains(shard)) {
+                missing.add(shard);
+            }
+        }
+        return missing;
+    }
+
+    public boolean isAll() {
+        return count == 1;
+    }
+
+    public boolean contains(KWNumber kwNumber) {
+        if (isAll()) {
+            return true;
+        }
+
+        var value = switch (space) {
+            case LEDGER -> kwNumber.getLedgerNumberValue();
+            case COURT -> kwNumber.getCourtCode().getCode().hashCode();
+        };
+        return Math.floorMod(value, count) == number - 1;
+    }
+
+    /// Whether the shard has any registers of the court
+    public boolean contains(CourtCode courtCode) {
+        if (isAll() || space == Space.LEDGER) {
+            return true;
+        }
+        return Math.floorMod(courtCode.getCode().hashCode(), count) == number - 1;
+    }
+
+    /// Whether the shard has either all or none of the registers of every court
+    public boolean hasWholeCourts() {
+        return isAll() || space == Space.COURT;
+    }
+
+    /// Name used for per-shard output files and directories
+    public String getName() {
+        return number + "of" + count;
+    }
+
+    @Override
+    public String toString() {
+        return number + "/" + count + " (" + space.name().toLowerCase() + ")";
+    }
+}
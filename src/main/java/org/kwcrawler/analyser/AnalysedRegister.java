@@ -2,8 +2,14 @@ package org.kwcrawler.analyser;
 
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.FromStringDeserializer;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import org.kwcrawler.parser.ValueHistory;
 
+import java.time.LocalDate;
 import java.util.List;
 
 public record AnalysedRegister(
@@ -17,7 +23,7 @@ public record AnalysedRegister(
         List<TreasuryOwner> treasuryOwners,
         List<CommuneOwner> communeOwners,
         List<Owner> authorizeds,
-        List<Change> changes,
+        ChangeHistory changes,
         MigrationComment migrationComment
 ) {
 
@@ -127,12 +133,57 @@ public record AnalysedRegister(
         }
     }
 
+    /// Kind of the first document a change is based on, told by the fields filled in for it
+    public enum DocumentKind {
+        NOTARIAL_DEED,
+        ADMINISTRATIVE_DECISION,
+        COURT_RULING,
+        OTHER_DOCUMENT,
+        DESIGNATION_BASIS, // basis of designation or its correction
+        UNKNOWN
+    }
+
+    /// Entry of the register added or removed by a change
+    ///
+    /// @param section number of the section, e.g. `1.4.1`
+    /// @param item number of the item in the section, e.g. `2.`
+    public record EntryRef(
+            String section,
+            String item
+    ) {}
+
+    /// Application changing the register
+    ///
+    /// @param entries entries added or removed by the change, found only in sections read by the analysis,
+    /// which are [RegisterAnalyser#SECTIONS], so entries of other sections, e.g. of mortgages, are missing
     public record Change(
-            Integer number,
-            String date,
+            int number,
+            @JsonSerialize(using = ToStringSerializer.class)
+            @JsonDeserialize(using = DateDeserializer.class)
+            LocalDate date,
+            DocumentKind kind,
             String description,
-            String entity
-    ) {}
+            String entity,
+            List<EntryRef> entries
+    ) {
+        public Change withEntries(List<EntryRef> entries) {
+            return new Change(number, date, kind, description, entity, entries);
+        }
+    }
+
+    // dates as yyyy-MM-dd, without the java.time module of Jackson
+    public static class DateDeserializer extends FromStringDeserializer<LocalDate> {
+        private static final long serialVersionUID = 1L;
+
+        public DateDeserializer() {
+            super(LocalDate.class);
+        }
+
+        @Override
+        protected LocalDate _deserialize(String value, DeserializationContext context) {
+            return LocalDate.parse(value);
+        }
+    }
 
     public record MigrationComment(
             ValueHistory comment
@@ -0,0 +1,1026 @@
+package org.kwcrawler.analyser;
+
+
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.analyser.AnalysedRegister.Apartment;
+import org.kwcrawler.analyser.AnalysedRegister.Area;
+import org.kwcrawler.analyser.AnalysedRegister.BasicInfo;
+import org.kwcrawler.analyser.AnalysedRegister.Change;
+import org.kwcrawler.analyser.AnalysedRegister.CommuneOwner;
+import org.kwcrawler.analyser.AnalysedRegister.DocumentKind;
+import org.kwcrawler.analyser.AnalysedRegister.EntryRef;
+import org.kwcrawler.analyser.AnalysedRegister.LegalOwner;
+import org.kwcrawler.analyser.AnalysedRegister.Location;
+import org.kwcrawler.analyser.AnalysedRegister.MigrationComment;
+import org.kwcrawler.analyser.AnalysedRegister.Owner;
+import org.kwcrawler.analyser.AnalysedRegister.Parcel;
+import org.kwcrawler.analyser.AnalysedRegister.TreasuryOwner;
+import org.kwcrawler.parser.Value;
+import org.kwcrawler.parser.ValueHistory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/// Analysed registers of one court, stored column group by column group.
+///
+/// Every [Column] is an append-only file with the encoded part of each register, one after another,
+/// and `registers.idx` lists the offset and length of every register in each of them. A register is
+/// appended to the column files first and to the index last, so a register interrupted half-way is
+/// simply not there. Registers analysed again are appended again, the last index record wins.
+/// Appends lock the index file, so that processes of a sharded run can share the store of a court.
+/// Superseded registers are left in the files until the store is opened by the only process using it,
+/// which copies current registers into files of a new generation when most of the store is garbage.
+///
+/// A store opened with [#openReadOnly] sees registers stored until it was opened, it never writes and doesn't keep
+/// the store from being compacted, the files it reads stay readable after they are replaced.
+///
+/// Every register is stored with the [Origin] of its analysis, so that stale analyses can be recognised.
+/// Readers pass the columns they need, the others are not read and come back empty.
+public class AnalysedStore implements Closeable {
+    /// What a stored analysis was made from
+    ///
+    /// @param analyserVersion [RegisterAnalyser#ANALYSER_VERSION] at the time of the analysis
+    /// @param pagesStamp sizes and modification times of the source pages, see [SourcePages#stamp]
+    /// @param pagesHash contents of the source pages, see [SourcePages#contentHash]
+    public record Origin(
+            int analyserVersion,
+            long pagesStamp,
+            long pagesHash
+    ) {
+        public Origin withPagesStamp(long pagesStamp) {
+            return new Origin(analyserVersion, pagesStamp, pagesHash);
+        }
+    }
+
+    public enum Column {
+        BASIC,      // basic info, area and migration comment
+        LOCATIONS,
+        APARTMENTS,
+        PARCELS,
+        OWNERS,     // all kinds of owners and authorized persons
+        CHANGES
+    }
+
+    private static final int MAGIC = 0x4B574153; // "KWAS"
+    // version 4 adds the generation of column files to the header, stores of version 3 are of generation 0
+    private static final int FORMAT_VERSION = 4;
+    private static final int GENERATION_FORMAT_VERSION = 4;
+    private static final int OLDEST_FORMAT_VERSION = 3;
+    private static final String INDEX_FILE = "registers.idx";
+    private static final String USERS_FILE = "users.lock";
+
+    private static final Column[] COLUMNS = Column.values();
+    private static final int WINDOW_SIZE = 1 << 16;
+    // a store is compacted when more than half of it is garbage, and there is at least this much of it
+    private static final long MIN_COMPACTED_GARBAGE = 1 << 20;
+
+    // users of stores in this process by directory, guarded by itself
+    private static final Map<Path, Users> users = new HashMap<>();
+
+    private final Path dir;
+    private final boolean readOnly;
+    // null for read-only stores
+    private final Users storeUsers;
+    // replaced only by a compaction in the constructor
+    private FileChannel index;
+    private final FileChannel[] columns = new FileChannel[COLUMNS.length];
+    private int generation;
+    private int headerSize;
+
+    // register code -> row, rows are in the order registers were appended
+    private final Map<String, Integer> rows = new ConcurrentHashMap<>();
+    private volatile String[] codes = new String[1024];
+    private volatile long[] offsets = new long[1024 * COLUMNS.length];
+    private volatile int[] lengths = new int[1024 * COLUMNS.length];
+    private volatile int[] analyserVersions = new int[1024];
+    private volatile long[] pagesStamps = new long[1024];
+    private volatile long[] pagesHashes = new long[1024];
+    private volatile int rowCount;
+
+    public AnalysedStore(Path dir) {
+        this.dir = dir;
+        this.readOnly = false;
+        // stores are opened one at a time, so a compaction finishes before the store is opened again in this process
+        synchronized (users) {
+            try {
+                Files.createDirectories(dir);
+                storeUsers = Users.join(dir);
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot open analysed store in " + dir, e);
+            }
+            try {
+                index = FileChannel.open(dir.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                var lock = index.lock();
+                try {
+                    if (!readHeader()) {
+                        // written by another version, analyse again
+                        reset();
+                    }
+                    openColumns();
+                    readIndex();
+                } finally {
+                    lock.release();
+                }
+                if (storeUsers.isAlone()) {
+                    deleteOtherGenerations();
+                    if (hasMuchGarbage()) {
+                        compact();
+                    }
+                }
+                storeUsers.share();
+            } catch (IOException | RuntimeException e) {
+                closeChannels();
+                storeUsers.leave(dir);
+                throw new RuntimeException("Cannot open analysed store in " + dir, e);
+            }
+        }
+    }
+
+    private AnalysedStore(Path dir, boolean readOnly) {
+        this.dir = dir;
+        this.readOnly = readOnly;
+        this.storeUsers = null;
+        try {
+            index = FileChannel.open(dir.resolve(INDEX_FILE), StandardOpenOption.READ);
+            // waits for appends to finish
+            var lock = index.lock(0, Long.MAX_VALUE, true);
+            try {
+                // a store of another version is empty until analysed again
+                if (readHeader()) {
+                    openColumns();
+                    readIndex();
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            closeChannels();
+            throw new RuntimeException("Cannot open analysed store in " + dir, e);
+        }
+    }
+
+    /// Opens an existing store only for reading, e.g. for searches, which must not write to stores used by crawls
+    public static AnalysedStore openReadOnly(Path dir) {
+        return new AnalysedStore(dir, true);
+    }
+
+    /// Index of the store in `dir`, written by every append
+    static Path indexFile(Path dir) {
+        return dir.resolve(INDEX_FILE);
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public boolean contains(KWNumber kwNumber) {
+        return rows.containsKey(kwNumber.toCode());
+    }
+
+    /// @return origin of the stored analysis, or `null` when not stored
+    public Origin origin(KWNumber kwNumber) {
+        var row = rows.get(kwNumber.toCode());
+        if (row == null) {
+            return null;
+        }
+        return new Origin(analyserVersions[row], pagesStamps[row], pagesHashes[row]);
+    }
+
+    /// @return stored register with only `wanted` columns filled, or `null` when not stored
+    public AnalysedRegister get(KWNumber kwNumber, Set<Column> wanted) {
+        var row = rows.get(kwNumber.toCode());
+        if (row == null) {
+            return null;
+        }
+        var offsets = this.offsets;
+        var lengths = this.lengths;
+
+        var parts = new Parts();
+        try {
+            for (var column : wanted) {
+                var slot = row * COLUMNS.length + column.ordinal();
+                if (lengths[slot] > 0) {
+                    var buffer = ByteBuffer.allocate(lengths[slot]);
+                    readFully(columns[column.ordinal()], buffer, offsets[slot]);
+                    decode(column, buffer.flip(), parts);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read analysed register " + kwNumber, e);
+        }
+        return parts.toRegister();
+    }
+
+    /// Stored registers in the order they were written
+    public List<KWNumber> kwNumbers() {
+        var count = rowCount;
+        var codes = this.codes;
+
+        var kwNumbers = new ArrayList<KWNumber>(count);
+        for (int row = 0; row < count; row++) {
+            // skip registers written again later
+            if (rows.get(codes[row]) == row) {
+                kwNumbers.add(new KWNumber(codes[row]));
+            }
+        }
+        return kwNumbers;
+    }
+
+    /// Reads all stored registers in the order they were written, only `wanted` columns are read
+    public void forEach(Set<Column> wanted, BiConsumer<KWNumber, AnalysedRegister> consumer) {
+        forEach(wanted, kwNumber -> true, consumer);
+    }
+
+    /// Reads stored registers accepted by `filter` in the order they were written, only `wanted` columns are read,
+    /// columns of the others are skipped
+    public void forEach(Set<Column> wanted, Predicate<KWNumber> filter, BiConsumer<KWNumber, AnalysedRegister> consumer) {
+        var count = rowCount;
+        var codes = this.codes;
+        var offsets = this.offsets;
+        var lengths = this.lengths;
+
+        var readers = new ColumnReader[COLUMNS.length];
+        for (var column : wanted) {
+            readers[column.ordinal()] = new ColumnReader(columns[column.ordinal()]);
+        }
+
+        try {
+            for (int row = 0; row < count; row++) {
+                // skip registers written again later
+                if (rows.get(codes[row]) != row) {
+                    continue;
+                }
+                var kwNumber = new KWNumber(codes[row]);
+                if (!filter.test(kwNumber)) {
+                    continue;
+                }
+                var parts = new Parts();
+                for (var column : wanted) {
+                    var slot = row * COLUMNS.length + column.ordinal();
+                    if (lengths[slot] > 0) {
+                        decode(column, readers[column.ordinal()].read(offsets[slot], lengths[slot]), parts);
+                    }
+                }
+                consumer.accept(kwNumber, parts.toRegister());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read analysed registers", e);
+        }
+    }
+
+    /// Register with the origin of its analysis, to be stored
+    public record Stored(
+            KWNumber kwNumber,
+            AnalysedRegister register,
+            Origin origin
+    ) {}
+
+    public void put(KWNumber kwNumber, AnalysedRegister register, Origin origin) {
+        put(List.of(new Stored(kwNumber, register, origin)));
+    }
+
+    /// Stores registers together, with a single write to every file
+    public void put(List<Stored> batch) {
+        checkWritable();
+        var encoded = new byte[batch.size()][COLUMNS.length][];
+        for (int i = 0; i < batch.size(); i++) {
+            for (var column : COLUMNS) {
+                encoded[i][column.ordinal()] = encode(column, batch.get(i).register());
+            }
+        }
+
+        synchronized (this) {
+            try {
+                var lock = index.lock();
+                try {
+                    var rowOffsets = new long[batch.size()][COLUMNS.length];
+                    var rowLengths = new int[batch.size()][COLUMNS.length];
+                    for (var column : COLUMNS) {
+                        var channel = columns[column.ordinal()];
+                        var bytes = new ByteArrayOutputStream();
+                        var offset = channel.size();
+                        for (int i = 0; i < batch.size(); i++) {
+                            var registerBytes = encoded[i][column.ordinal()];
+                            rowOffsets[i][column.ordinal()] = offset + bytes.size();
+                            rowLengths[i][column.ordinal()] = registerBytes.length;
+                            bytes.write(registerBytes);
+                        }
+                        if (bytes.size() > 0) {
+                            writeFully(channel, ByteBuffer.wrap(bytes.toByteArray()), offset);
+                        }
+                    }
+
+                    var records = new ByteArrayOutputStream(128 * batch.size());
+                    try (var out = new DataOutputStream(records)) {
+                        for (int i = 0; i < batch.size(); i++) {
+                            writeRecord(out, batch.get(i).kwNumber().toCode(), batch.get(i).origin(), rowOffsets[i], rowLengths[i]);
+                        }
+                    }
+                    writeFully(index, ByteBuffer.wrap(records.toByteArray()), index.size());
+
+                    for (int i = 0; i < batch.size(); i++) {
+                        addRow(batch.get(i).kwNumber().toCode(), batch.get(i).origin(), rowOffsets[i], rowLengths[i]);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot write analysed registers", e);
+            }
+        }
+    }
+
+    /// Replaces the origin of a stored register without writing the register again,
+    /// e.g. when its pages were downloaded again with the same content
+    public void putOrigin(KWNumber kwNumber, Origin origin) {
+        checkWritable();
+        var code = kwNumber.toCode();
+        synchronized (this) {
+            var row = rows.get(code);
+            if (row == null) {
+                throw new IllegalArgumentException("Not stored: " + kwNumber);
+            }
+            var from = row * COLUMNS.length;
+            var rowOffsets = Arrays.copyOfRange(offsets, from, from + COLUMNS.length);
+            var rowLengths = Arrays.copyOfRange(lengths, from, from + COLUMNS.length);
+            try {
+                var lock = index.lock();
+                try {
+                    var record = new ByteArrayOutputStream(128);
+                    try (var out = new DataOutputStream(record)) {
+                        writeRecord(out, code, origin, rowOffsets, rowLengths);
+                    }
+                    writeFully(index, ByteBuffer.wrap(record.toByteArray()), index.size());
+                    addRow(code, origin, rowOffsets, rowLengths);
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot write analysed register " + kwNumber, e);
+            }
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, String code, Origin origin, long[] rowOffsets, int[] rowLengths) throws IOException {
+        var codeBytes = code.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(codeBytes.length);
+        out.write(codeBytes);
+        out.writeInt(origin.analyserVersion());
+        out.writeLong(origin.pagesStamp());
+        out.writeLong(origin.pagesHash());
+        for (int column = 0; column < COLUMNS.length; column++) {
+            out.writeLong(rowOffsets[column]);
+            out.writeInt(rowLengths[column]);
+        }
+    }
+
+    private void addRow(String code, Origin origin, long[] rowOffsets, int[] rowLengths) {
+        var row = rowCount;
+        ensureCapacity(row + 1);
+        System.arraycopy(rowOffsets, 0, offsets, row * COLUMNS.length, COLUMNS.length);
+        System.arraycopy(rowLengths, 0, lengths, row * COLUMNS.length, COLUMNS.length);
+        analyserVersions[row] = origin.analyserVersion();
+        pagesStamps[row] = origin.pagesStamp();
+        pagesHashes[row] = origin.pagesHash();
+        codes[row] = code;
+        rowCount = row + 1;
+        rows.put(code, row);
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("Analysed store opened read-only: " + dir);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (storeUsers == null) {
+            closeChannels();
+            return;
+        }
+        synchronized (users) {
+            try {
+                closeChannels();
+            } finally {
+                storeUsers.leave(dir);
+            }
+        }
+    }
+
+    private void closeChannels() {
+        try {
+            if (index != null) {
+                index.close();
+            }
+            for (var column : columns) {
+                if (column != null) {
+                    column.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /// Reads the generation of column files
+    ///
+    /// @return `false` when the index is of an unknown version
+    private boolean readHeader() throws IOException {
+        var header = ByteBuffer.allocate(12);
+        var read = index.read(header, 0);
+        header.flip();
+        var version = read >= 8 ? header.getInt(4) : 0;
+        if (read < 8 || header.getInt(0) != MAGIC || version < OLDEST_FORMAT_VERSION || version > FORMAT_VERSION
+                || (version >= GENERATION_FORMAT_VERSION && read < 12)) {
+            return false;
+        }
+        generation = version >= GENERATION_FORMAT_VERSION ? header.getInt(8) : 0;
+        headerSize = version >= GENERATION_FORMAT_VERSION ? 12 : 8;
+        return true;
+    }
+
+    private void openColumns() throws IOException {
+        for (var column : COLUMNS) {
+            var file = dir.resolve(columnFile(column, generation));
+            columns[column.ordinal()] = readOnly
+                    ? FileChannel.open(file, StandardOpenOption.READ)
+                    : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    // files of generation 0 keep the names of stores of version 3
+    private static String columnFile(Column column, int generation) {
+        var name = column.name().toLowerCase(Locale.ROOT);
+        return generation == 0 ? name + ".col" : name + "." + generation + ".col";
+    }
+
+    private void readIndex() throws IOException {
+        var size = index.size();
+        var buffer = ByteBuffer.allocate(Math.toIntExact(size));
+        readFully(index, buffer, 0);
+        buffer.flip().position(headerSize);
+
+        var valid = buffer.position();
+        try {
+            var rowOffsets = new long[COLUMNS.length];
+            var rowLengths = new int[COLUMNS.length];
+            while (buffer.hasRemaining()) {
+                var codeBytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(codeBytes);
+                var origin = new Origin(buffer.getInt(), buffer.getLong(), buffer.getLong());
+                for (int column = 0; column < COLUMNS.length; column++) {
+                    rowOffsets[column] = buffer.getLong();
+                    rowLengths[column] = buffer.getInt();
+                }
+                addRow(new String(codeBytes, StandardCharsets.UTF_8), origin, rowOffsets, rowLengths);
+                valid = buffer.position();
+            }
+        } catch (RuntimeException e) {
+            // last record written only partially, appended records have to start after the last whole one
+            if (!readOnly) {
+                index.truncate(valid);
+            }
+        }
+    }
+
+    private void reset() throws IOException {
+        index.truncate(0);
+        generation = 0;
+        headerSize = 12;
+        for (var column : COLUMNS) {
+            try (var channel = FileChannel.open(dir.resolve(columnFile(column, generation)), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+            }
+        }
+        writeFully(index, header(generation), 0);
+    }
+
+    private static ByteBuffer header(int generation) {
+        return ByteBuffer.allocate(12).putInt(MAGIC).putInt(FORMAT_VERSION).putInt(generation).flip();
+    }
+
+    /// Whether registers analysed again and replaced origins take more than half of the files
+    private boolean hasMuchGarbage() throws IOException {
+        var columnsSize = 0L;
+        for (var column : columns) {
+            columnsSize += column.size();
+        }
+        var liveSize = 0L;
+        for (var row : rows.values()) {
+            for (int column = 0; column < COLUMNS.length; column++) {
+                liveSize += lengths[row * COLUMNS.length + column];
+            }
+        }
+        var records = rowCount;
+        var indexGarbage = records == 0 ? 0 : (index.size() - headerSize) * (records - rows.size()) / records;
+        var garbage = columnsSize - liveSize + indexGarbage;
+        return garbage >= MIN_COMPACTED_GARBAGE && garbage * 2 > columnsSize + index.size();
+    }
+
+    /// Copies the latest version of every register into column files of the next generation and writes
+    /// their index next to the index, which then replaces it at once, so the store is whole at any point.
+    /// Only done by the only user of the store, others would keep reading and appending to the replaced files.
+    private void compact() throws IOException {
+        var next = generation + 1;
+        var live = new ArrayList<Integer>(rows.values());
+        live.sort(null);
+        System.out.println("Compacting analysed store " + dir + ": " + live.size() + " of " + rowCount + " registers are current");
+
+        var newOffsets = new long[live.size() * COLUMNS.length];
+        var newLengths = new int[live.size() * COLUMNS.length];
+        for (var column : COLUMNS) {
+            var source = columns[column.ordinal()];
+            try (var target = FileChannel.open(dir.resolve(columnFile(column, next)),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                var position = 0L;
+                for (int i = 0; i < live.size(); i++) {
+                    var slot = live.get(i) * COLUMNS.length + column.ordinal();
+                    newOffsets[i * COLUMNS.length + column.ordinal()] = position;
+                    newLengths[i * COLUMNS.length + column.ordinal()] = lengths[slot];
+                    for (var copied = 0L; copied < lengths[slot]; ) {
+                        copied += source.transferTo(offsets[slot] + copied, lengths[slot] - copied, target);
+                    }
+                    position += lengths[slot];
+                }
+                target.force(true);
+            }
+        }
+
+        var compactedIndex = dir.resolve(INDEX_FILE + ".tmp");
+        var liveCodes = new String[live.size()];
+        var origins = new Origin[live.size()];
+        try (var target = FileChannel.open(compactedIndex, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            var records = new ByteArrayOutputStream(128 * live.size());
+            try (var out = new DataOutputStream(records)) {
+                for (int i = 0; i < live.size(); i++) {
+                    int row = live.get(i);
+                    liveCodes[i] = codes[row];
+                    origins[i] = new Origin(analyserVersions[row], pagesStamps[row], pagesHashes[row]);
+                    var from = i * COLUMNS.length;
+                    writeRecord(out, liveCodes[i], origins[i], Arrays.copyOfRange(newOffsets, from, from + COLUMNS.length),
+                            Arrays.copyOfRange(newLengths, from, from + COLUMNS.length));
+                }
+            }
+            writeFully(target, header(next), 0);
+            writeFully(target, ByteBuffer.wrap(records.toByteArray()), 12);
+            target.force(true);
+        }
+        Files.move(compactedIndex, dir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        closeChannels();
+        for (var column : COLUMNS) {
+            Files.deleteIfExists(dir.resolve(columnFile(column, generation)));
+        }
+        generation = next;
+        headerSize = 12;
+        index = FileChannel.open(dir.resolve(INDEX_FILE), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        openColumns();
+
+        rows.clear();
+        rowCount = 0;
+        for (int i = 0; i < live.size(); i++) {
+            var from = i * COLUMNS.length;
+            addRow(liveCodes[i], origins[i], Arrays.copyOfRange(newOffsets, from, from + COLUMNS.length),
+                    Arrays.copyOfRange(newLengths, from, from + COLUMNS.length));
+        }
+    }
+
+    /// Deletes column files left by a compaction interrupted before or after its index replaced the previous one
+    private void deleteOtherGenerations() throws IOException {
+        var current = new HashSet<Path>();
+        for (var column : COLUMNS) {
+            current.add(dir.resolve(columnFile(column, generation)));
+        }
+        try (var files = Files.list(dir)) {
+            for (var file : files.filter(file -> file.getFileName().toString().endsWith(".col")).toList()) {
+                if (!current.contains(file)) {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.deleteIfExists(dir.resolve(INDEX_FILE + ".tmp"));
+    }
+
+    /// Processes using a store, in every process every store holds a shared lock of [#USERS_FILE] while open.
+    /// A process which gets the lock exclusively is the only one using the store, so it may compact it.
+    /// Opening takes a gate lock first, until the lock is shared, so that no other process gets the lock
+    /// exclusively in between. Stores opened more than once in a process share the lock of the first one.
+    private static final class Users {
+        private final FileChannel channel;
+        private FileLock lock;
+        private FileLock gate;
+        private int count = 1;
+
+        private Users(FileChannel channel, FileLock lock, FileLock gate) {
+            this.channel = channel;
+            this.lock = lock;
+            this.gate = gate;
+        }
+
+        // called with the monitor of users held
+        static Users join(Path dir) throws IOException {
+            var key = dir.toAbsolutePath().normalize();
+            var joined = users.get(key);
+            if (joined != null) {
+                joined.count++;
+                return joined;
+            }
+            var channel = FileChannel.open(key.resolve(USERS_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                var gate = channel.lock(1, 1, false);
+                var exclusive = channel.tryLock(0, 1, false);
+                joined = new Users(channel, exclusive != null ? exclusive : channel.lock(0, 1, true), gate);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            users.put(key, joined);
+            return joined;
+        }
+
+        /// Whether no other store uses the directory, in this process or any other
+        boolean isAlone() {
+            return count == 1 && !lock.isShared();
+        }
+
+        /// Lets other processes open the store
+        void share() throws IOException {
+            if (gate == null) {
+                return;
+            }
+            if (!lock.isShared()) {
+                lock.release();
+                lock = channel.lock(0, 1, true);
+            }
+            gate.release();
+            gate = null;
+        }
+
+        void leave(Path dir) {
+            if (--count > 0) {
+                return;
+            }
+            users.remove(dir.toAbsolutePath().normalize());
+            try {
+                // closing the channel releases its locks
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot release analysed store in " + dir, e);
+            }
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (count > codes.length) {
+            var capacity = Math.max(count, codes.length * 2);
+            offsets = Arrays.copyOf(offsets, capacity * COLUMNS.length);
+            lengths = Arrays.copyOf(lengths, capacity * COLUMNS.length);
+            analyserVersions = Arrays.copyOf(analyserVersions, capacity);
+            pagesStamps = Arrays.copyOf(pagesStamps, capacity);
+            pagesHashes = Arrays.copyOf(pagesHashes, capacity);
+            codes = Arrays.copyOf(codes, capacity);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            var read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + channel);
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /// Reads a column sequentially through a window, so that a scan doesn't read every register separately
+    private static class ColumnReader {
+        private final FileChannel channel;
+        private ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE).flip();
+        private long windowStart;
+
+        ColumnReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer read(long offset, int length) throws IOException {
+            if (offset < windowStart || offset + length > windowStart + window.limit()) {
+                if (window.capacity() < length) {
+                    window = ByteBuffer.allocate(length);
+                }
+                window.clear();
+                var read = channel.read(window, offset);
+                while (read >= 0 && window.position() < length) {
+                    read = channel.read(window, offset + window.position());
+                }
+                if (window.position() < length) {
+                    throw new IOException("Unexpected end of " + channel);
+                }
+                window.flip();
+                windowStart = offset;
+            }
+            return window.slice(Math.toIntExact(offset - windowStart), length);
+        }
+    }
+
+    // parts of a register read from its columns
+    private static class Parts {
+        private BasicInfo basicInfo;
+        private List<Location> locations = List.of();
+        private List<Apartment> apartments = List.of();
+        private List<Parcel> parcels = List.of();
+        private Area area;
+        private List<Owner> owners = List.of();
+        private List<LegalOwner> legalOwners = List.of();
+        private List<TreasuryOwner> treasuryOwners = List.of();
+        private List<CommuneOwner> communeOwners = List.of();
+        private List<Owner> authorizeds = List.of();
+        private ChangeHistory changes = ChangeHistory.of(List.of());
+        private MigrationComment migrationComment;
+
+        AnalysedRegister toRegister() {
+            return new AnalysedRegister(basicInfo, locations, apartments, parcels, area, owners, legalOwners, treasuryOwners, communeOwners, authorizeds, changes, migrationComment);
+        }
+    }
+
+    /// Whole register in the encoding of the columns, for keeping it outside the store, e.g. in the search index
+    public static byte[] toBytes(AnalysedRegister register) {
+        var bytes = new ByteArrayOutputStream(512);
+        try (var out = new DataOutputStream(bytes)) {
+            for (var column : COLUMNS) {
+                var encoded = encode(column, register);
+                writeCount(out, encoded.length);
+                out.write(encoded);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot serialize analysed register", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /// Reverse of [#toBytes]
+    public static AnalysedRegister fromBytes(ByteBuffer in) {
+        var parts = new Parts();
+        for (var column : COLUMNS) {
+            var length = readCount(in);
+            if (length > 0) {
+                decode(column, in.slice(in.position(), length), parts);
+                in.position(in.position() + length);
+            }
+        }
+        return parts.toRegister();
+    }
+
+    private static final int HAS_BASIC_INFO = 1;
+    private static final int HAS_AREA = 2;
+    private static final int HAS_MIGRATION_COMMENT = 4;
+
+    // empty array when the register has nothing in the column
+    private static byte[] encode(Column column, AnalysedRegister register) {
+        var bytes = new ByteArrayOutputStream(256);
+        try (var out = new DataOutputStream(bytes)) {
+            switch (column) {
+                case BASIC -> {
+                    var flags = (register.basicInfo() != null ? HAS_BASIC_INFO : 0)
+                            | (register.area() != null ? HAS_AREA : 0)
+                            | (register.migrationComment() != null ? HAS_MIGRATION_COMMENT : 0);
+                    if (flags == 0) {
+                        return new byte[0];
+                    }
+                    out.writeByte(flags);
+                    if (register.basicInfo() != null) {
+                        writeHistory(out, register.basicInfo().registerType());
+                    }
+                    if (register.area() != null) {
+                        writeHistory(out, register.area().area());
+                    }
+                    if (register.migrationComment() != null) {
+                        writeHistory(out, register.migrationComment().comment());
+                    }
+                }
+                case LOCATIONS -> {
+                    if (register.locations().isEmpty()) {
+                        return new byte[0];
+                    }
+                    writeList(out, register.locations(), location -> new ValueHistory[]{
+                            location.number(), location.voivodeship(), location.district(), location.commune(), location.city()});
+                }
+                case APARTMENTS -> {
+                    if (register.apartments().isEmpty()) {
+                        return new byte[0];
+                    }
+                    writeList(out, register.apartments(), apartment -> new ValueHistory[]{
+                            apartment.street(), apartment.buildingNumber(), apartment.apartmentNumber(), apartment.purpose(), apartment.floor()});
+                }
+                case PARCELS -> {
+                    if (register.parcels().isEmpty()) {
+                        return new byte[0];
+                    }
+                    writeList(out, register.parcels(), parcel -> new ValueHistory[]{
+                            parcel.parcelId(), parcel.parcelNumber(), parcel.regionNumber(), parcel.region(), parcel.location(), parcel.street(), parcel.usageType()});
+                }
+                case OWNERS -> {
+                    if (register.owners().isEmpty() && register.legalOwners().isEmpty() && register.treasuryOwners().isEmpty()
+                            && register.communeOwners().isEmpty() && register.authorizeds().isEmpty()) {
+                        return new byte[0];
+                    }
+                    writeList(out, register.owners(), AnalysedStore::ownerHistories);
+                    writeList(out, register.legalOwners(), owner -> new ValueHistory[]{owner.name(), owner.place(), owner.regon()});
+                    writeList(out, register.treasuryOwners(), owner -> new ValueHistory[]{owner.name(), owner.place(), owner.regon(), owner.role()});
+                    writeList(out, register.communeOwners(), owner -> new ValueHistory[]{owner.name(), owner.place(), owner.regon()});
+                    writeList(out, register.authorizeds(), AnalysedStore::ownerHistories);
+                }
+                case CHANGES -> {
+                    if (register.changes().isEmpty()) {
+                        return new byte[0];
+                    }
+                    writeCount(out, register.changes().size());
+                    for (var change : register.changes()) {
+                        writeCount(out, change.number());
+                        // days since 1970 + 1, so that 0 stands for no date
+                        out.writeLong(change.date() == null ? 0 : change.date().toEpochDay() + 1);
+                        out.writeByte(change.kind().ordinal());
+                        writeString(out, change.description());
+                        writeString(out, change.entity());
+                        writeCount(out, change.entries().size());
+                        for (var entry : change.entries()) {
+                            writeString(out, entry.section());
+                            writeString(out, entry.item());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot serialize analysed register", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void decode(Column column, ByteBuffer in, Parts parts) {
+        switch (column) {
+            case BASIC -> {
+                var flags = in.get();
+                if ((flags & HAS_BASIC_INFO) != 0) {
+                    parts.basicInfo = new BasicInfo(readHistory(in));
+                }
+                if ((flags & HAS_AREA) != 0) {
+                    parts.area = new Area(readHistory(in));
+                }
+                if ((flags & HAS_MIGRATION_COMMENT) != 0) {
+                    parts.migrationComment = new MigrationComment(readHistory(in));
+                }
+            }
+            case LOCATIONS -> parts.locations = readList(in, 5, h -> new Location(h[0], h[1], h[2], h[3], h[4]));
+            case APARTMENTS -> parts.apartments = readList(in, 5, h -> new Apartment(h[0], h[1], h[2], h[3], h[4]));
+            case PARCELS -> parts.parcels = readList(in, 7, h -> new Parcel(h[0], h[1], h[2], h[3], h[4], h[5], h[6]));
+            case OWNERS -> {
+                parts.owners = readList(in, 5, h -> new Owner(h[0], h[1], h[2], h[3], h[4]));
+                parts.legalOwners = readList(in, 3, h -> new LegalOwner(h[0], h[1], h[2]));
+                parts.treasuryOwners = readList(in, 4, h -> new TreasuryOwner(h[0], h[1], h[2], h[3]));
+                parts.communeOwners = readList(in, 3, h -> new CommuneOwner(h[0], h[1], h[2]));
+                parts.authorizeds = readList(in, 5, h -> new Owner(h[0], h[1], h[2], h[3], h[4]));
+            }
+            case CHANGES -> {
+                var count = readCount(in);
+                var changes = new ArrayList<Change>(count);
+                var kinds = DocumentKind.values();
+                for (int i = 0; i < count; i++) {
+                    var number = readCount(in);
+                    var epochDay = in.getLong();
+                    var kind = kinds[in.get()];
+                    var description = readString(in);
+                    var entity = readString(in);
+                    var entries = new EntryRef[readCount(in)];
+                    for (int e = 0; e < entries.length; e++) {
+                        entries[e] = new EntryRef(readString(in), readString(in));
+                    }
+                    changes.add(new Change(number, epochDay == 0 ? null : LocalDate.ofEpochDay(epochDay - 1), kind, description, entity, List.of(entries)));
+                }
+                parts.changes = ChangeHistory.of(changes);
+            }
+        }
+    }
+
+    private static ValueHistory[] ownerHistories(Owner owner) {
+        return new ValueHistory[]{owner.name(), owner.surname(), owner.fatherName(), owner.motherName(), owner.pesel()};
+    }
+
+    private static <T> void writeList(DataOutputStream out, List<T> list, Function<T, ValueHistory[]> histories) throws IOException {
+        writeCount(out, list.size());
+        for (var item : list) {
+            for (var history : histories.apply(item)) {
+                writeHistory(out, history);
+            }
+        }
+    }
+
+    private static <T> List<T> readList(ByteBuffer in, int fields, Function<ValueHistory[], T> constructor) {
+        var count = readCount(in);
+        var list = new ArrayList<T>(count);
+        for (int i = 0; i < count; i++) {
+            var histories = new ValueHistory[fields];
+            for (int field = 0; field < fields; field++) {
+                histories[field] = readHistory(in);
+            }
+            list.add(constructor.apply(histories));
+        }
+        return list;
+    }
+
+    // count + 1, so that 0 stands for null
+    private static void writeHistory(DataOutputStream out, ValueHistory history) throws IOException {
+        if (history == null) {
+            writeCount(out, 0);
+            return;
+        }
+        writeCount(out, history.values().size() + 1);
+        for (var value : history.values()) {
+            writeString(out, value.addedIndex());
+            writeString(out, value.removedIndex());
+            writeString(out, value.value());
+        }
+    }
+
+    private static ValueHistory readHistory(ByteBuffer in) {
+        var count = readCount(in);
+        if (count == 0) {
+            return null;
+        }
+        var values = new ArrayList<Value>(count - 1);
+        for (int i = 1; i < count; i++) {
+            values.add(new Value(readString(in), readString(in), readString(in)));
+        }
+        return ValueHistory.of(values);
+    }
+
+    // variable length, 7 bits per byte
+    private static void writeCount(DataOutputStream out, int count) throws IOException {
+        while ((count & ~0x7F) != 0) {
+            out.writeByte((count & 0x7F) | 0x80);
+            count >>>= 7;
+        }
+        out.writeByte(count);
+    }
+
+    private static int readCount(ByteBuffer in) {
+        var count = 0;
+        var shift = 0;
+        int b;
+        do {
+            b = in.get() & 0xFF;
+            count |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return count;
+    }
+
+    // length + 1, so that 0 stands for null
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeCount(out, 0);
+            return;
+        }
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeCount(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        var length = readCount(in);
+        if (length == 0) {
+            return null;
+        }
+        var bytes = new byte[length - 1];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package org.kwcrawler.analyser;
+
+
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.analyser.AnalysedStore.Origin;
+import org.kwcrawler.analyser.AnalysedStore.Stored;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// Writes analysed registers and new origins of stored ones to their stores in a single background thread,
+/// in batches, so that the threads analysing registers don't wait for the disk.
+///
+/// The queue is bounded, when the writer falls behind [#write] blocks until there is room.
+/// [#close] returns only after everything queued is written.
+class AnalysedStoreWriter implements AutoCloseable {
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int BATCH_SIZE = 512;
+
+    // the register of `stored` is null when only its origin is replaced
+    private record Pending(AnalysedStore store, Stored stored) {}
+
+    // queued after the last register, stops the writer
+    private static final Pending END = new Pending(null, null);
+
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong written = new AtomicLong();
+    private volatile Throwable failure;
+
+    AnalysedStoreWriter() {
+        thread = new Thread(this::run, "analysed-store-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void write(AnalysedStore store, Stored stored) {
+        enqueue(new Pending(store, stored));
+        maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    /// Queues [AnalysedStore#putOrigin] of a stored register
+    void writeOrigin(AnalysedStore store, KWNumber kwNumber, Origin origin) {
+        write(store, new Stored(kwNumber, null, origin));
+    }
+
+    /// Registers waiting to be written
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    int getQueueCapacity() {
+        return QUEUE_CAPACITY;
+    }
+
+    long getWritten() {
+        return written.get();
+    }
+
+    @Override
+    public void close() {
+        if (thread.isAlive()) {
+            enqueue(END);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while writing analysed registers", e);
+            }
+        }
+        checkFailure();
+    }
+
+    private void enqueue(Pending pending) {
+        try {
+            while (!queue.offer(pending, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing analysed register", e);
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new RuntimeException("Writing analysed registers failed", failure);
+        }
+    }
+
+    private void run() {
+        var batch = new ArrayList<Pending>(BATCH_SIZE);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+
+                var end = batch.removeIf(pending -> pending == END);
+                write(batch);
+                batch.clear();
+                if (end) {
+                    return;
+                }
+            }
+        } catch (Throwable e) {
+            // reported to the analysing threads by the next write, or by close
+            failure = e;
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        // registers of several courts may be queued together
+        var byStore = new LinkedHashMap<AnalysedStore, List<Stored>>();
+        for (var pending : batch) {
+            if (pending.stored().register() == null) {
+                // before registers of the batch, a register analysed again has a newer origin anyway
+                pending.store().putOrigin(pending.stored().kwNumber(), pending.stored().origin());
+            } else {
+                byStore.computeIfAbsent(pending.store(), store -> new ArrayList<>()).add(pending.stored());
+            }
+        }
+        byStore.forEach(AnalysedStore::put);
+        byStore.values().forEach(registers -> written.addAndGet(registers.size()));
+    }
+}
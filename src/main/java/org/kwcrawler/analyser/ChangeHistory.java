@@ -0,0 +1,109 @@
+package org.kwcrawler.analyser;
+
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.kwcrawler.analyser.AnalysedRegister.Change;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/// Changes of a register ordered by number, with lookups by number and by date.
+///
+/// Serialized as the plain list of changes.
+public final class ChangeHistory implements Iterable<Change> {
+    private static final ChangeHistory EMPTY = new ChangeHistory(List.of());
+
+    private final List<Change> changes;
+    private final int[] numbers;
+    // changes with a date, ordered by it
+    private final Change[] byDate;
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public ChangeHistory(List<Change> changes) {
+        this.changes = changes.stream()
+                .sorted(Comparator.comparingInt(Change::number))
+                .toList();
+        this.numbers = this.changes.stream()
+                .mapToInt(Change::number)
+                .toArray();
+        this.byDate = this.changes.stream()
+                .filter(change -> change.date() != null)
+                .sorted(Comparator.comparing(Change::date))
+                .toArray(Change[]::new);
+    }
+
+    public static ChangeHistory of(List<Change> changes) {
+        return changes.isEmpty() ? EMPTY : new ChangeHistory(changes);
+    }
+
+    @JsonValue
+    public List<Change> list() {
+        return changes;
+    }
+
+    public Stream<Change> stream() {
+        return changes.stream();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    @Override
+    public Iterator<Change> iterator() {
+        return changes.iterator();
+    }
+
+    /// @return change with the number, or `null` when there is none
+    public Change byNumber(int number) {
+        var index = Arrays.binarySearch(numbers, number);
+        return index < 0 ? null : changes.get(index);
+    }
+
+    /// Changes dated from `from` to `to`, both inclusive, ordered by date
+    public List<Change> between(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return List.of();
+        }
+        return Arrays.asList(byDate).subList(firstNotBefore(from), firstNotBefore(to.plusDays(1)));
+    }
+
+    private int firstNotBefore(LocalDate date) {
+        var low = 0;
+        var high = byDate.length;
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (byDate[middle].date().isBefore(date)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ChangeHistory other && changes.equals(other.changes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(changes);
+    }
+
+    @Override
+    public String toString() {
+        return changes.toString();
+    }
+}
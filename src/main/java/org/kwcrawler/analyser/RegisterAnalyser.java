@@ -2,55 +2,186 @@ package org.kwcrawler.analyser;
 
 
 import org.kwcrawler.CourtCode;
+import org.kwcrawler.KWIdSet;
 import org.kwcrawler.KWNumber;
+import org.kwcrawler.NumberUtils;
 import org.kwcrawler.analyser.AnalysedRegister.Apartment;
 import org.kwcrawler.analyser.AnalysedRegister.Area;
 import org.kwcrawler.analyser.AnalysedRegister.BasicInfo;
 import org.kwcrawler.analyser.AnalysedRegister.Change;
 import org.kwcrawler.analyser.AnalysedRegister.CommuneOwner;
+import org.kwcrawler.analyser.AnalysedRegister.DocumentKind;
+import org.kwcrawler.analyser.AnalysedRegister.EntryRef;
 import org.kwcrawler.analyser.AnalysedRegister.LegalOwner;
 import org.kwcrawler.analyser.AnalysedRegister.Location;
 import org.kwcrawler.analyser.AnalysedRegister.MigrationComment;
 import org.kwcrawler.analyser.AnalysedRegister.Owner;
 import org.kwcrawler.analyser.AnalysedRegister.Parcel;
 import org.kwcrawler.analyser.AnalysedRegister.TreasuryOwner;
+import org.kwcrawler.analyser.AnalysedStore.Column;
+import org.kwcrawler.analyser.AnalysedStore.Origin;
+import org.kwcrawler.analyser.AnalysedStore.Stored;
 import org.kwcrawler.parser.ParsedRegister;
 import org.kwcrawler.parser.ParsedRegister.Page;
 import org.kwcrawler.parser.ParsedRegister.Page.Section;
-import org.kwcrawler.parser.ParsedRegisterSerialized;
+import org.kwcrawler.parser.RegisterParser;
+import org.kwcrawler.parser.SectionSelection;
+import org.kwcrawler.structure.Chapter;
 import org.kwcrawler.structure.Filenames;
 
-import java.io.IOException;
-import java.nio.file.Files;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 
-import static java.util.Map.Entry.comparingByKey;
+public class RegisterAnalyser implements AutoCloseable {
+    /// Bump whenever the analysis changes, stored analyses of other versions are made again
+    public static final int ANALYSER_VERSION = 3;
 
-public class RegisterAnalyser {
-    private final AnalysedRegisterSerialized registerSerialized = new AnalysedRegisterSerialized(false);
+    // titles of analysed sections
+    public static final String BASIC_INFO = "Rubryka 0.1 - Informacje podstawowe";
+    public static final String LOCATIONS = "Rubryka 1.3 - Położenie";
+    public static final String APARTMENTS = "Podrubryka 1.4.4 - Lokal";
+    public static final String TREASURY_OWNERS = "Podrubryka 2.2.2 - Skarb Państwa";
+    public static final String COMMUNE_OWNERS = "Podrubryka 2.2.3 - Jednostka samorządu terytorialnego (związek międzygminny)";
+    public static final String LEGAL_OWNERS = "Podrubryka 2.2.4 - Inna osoba prawna lub jednostka organizacyjna niebędąca osobą prawną";
+    public static final String OWNERS = "Podrubryka 2.2.5 - Osoba fizyczna";
+    public static final String AUTHORIZEDS = "Podrubryka 2.5.5 - Osoba fizyczna";
+    public static final String PARCELS = "Rubryka 1.4 - Oznaczenie";
+    public static final String AREA = "Rubryka 1.5 - Obszar";
+    public static final String MIGRATION_COMMENT = "Rubryka 1.9 - Komentarz";
+    public static final String APPLICATIONS = "WNIOSKI I PODSTAWY WPISÓW W KSIĘDZE WIECZYSTEJ";
+
+    /// Sections read by [#analyse], applications are in every chapter
+    public static final SectionSelection SECTIONS = new SectionSelection(
+            Set.of(Chapter.all()),
+            Set.of(BASIC_INFO, LOCATIONS, APARTMENTS, TREASURY_OWNERS, COMMUNE_OWNERS, LEGAL_OWNERS, OWNERS, AUTHORIZEDS, PARCELS, AREA, MIGRATION_COMMENT, APPLICATIONS)
+    );
+
+    private static final Pattern DATE_PATTERN = Pattern.compile("(?:(\\d{1,2})\\.(\\d{1,2})\\.(\\d{4}))|(?:(\\d{4})-(\\d{1,2})-(\\d{1,2}))");
+    private static final Pattern SECTION_NUMBER_PATTERN = Pattern.compile("^\\S+ (\\d+(?:\\.\\d+)*) - ");
+
+    // stores by court code, a register is stored in the store of its own court
+    private final Map<String, AnalysedStore> stores = new ConcurrentHashMap<>();
+    private final AnalysedStoreWriter writer = new AnalysedStoreWriter();
 
     public RegisterAnalyser(CourtCode courtCode) {
-        Filenames.getAnalysedDir(courtCode).toFile().mkdirs();
+    }
+
+    /// Columns holding what is analysed from the selected sections
+    public static Set<Column> columns(SectionSelection selection) {
+        if (selection.sections() == null) {
+            return EnumSet.allOf(Column.class);
+        }
+        var columns = EnumSet.noneOf(Column.class);
+        for (var section : selection.sections()) {
+            switch (section) {
+                case BASIC_INFO, AREA, MIGRATION_COMMENT -> columns.add(Column.BASIC);
+                case LOCATIONS -> columns.add(Column.LOCATIONS);
+                case APARTMENTS -> columns.add(Column.APARTMENTS);
+                case PARCELS -> columns.add(Column.PARCELS);
+                case TREASURY_OWNERS, COMMUNE_OWNERS, LEGAL_OWNERS, OWNERS, AUTHORIZEDS -> columns.add(Column.OWNERS);
+                case APPLICATIONS -> columns.add(Column.CHANGES);
+                default -> {}
+            }
+        }
+        return columns;
     }
 
     public AnalysedRegister getCached(KWNumber kwNumber) {
-        var path = Filenames.getAnalysedFilename(kwNumber);
-        if (path.toFile().exists()) {
-            String json;
-            try {
-                json = Files.readString(path);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+        return getCached(kwNumber, EnumSet.allOf(Column.class));
+    }
+
+    /// @return stored analysis with only `columns` read, or `null` when the register was not analysed yet,
+    /// was analysed by another version or its pages changed since
+    public AnalysedRegister getCached(KWNumber kwNumber, Set<Column> columns) {
+        var store = store(kwNumber.getCourtCode());
+        return isCurrent(store, kwNumber) ? store.get(kwNumber, columns) : null;
+    }
+
+    /// Passes current stored analyses of registers of the court accepted by `filter`, with only `columns` read,
+    /// like [#getCached] of each of them but much faster: pages of the registers are checked in parallel,
+    /// then the analyses are read in one pass in the order they are stored.
+    ///
+    /// @param filter called from many threads
+    /// @return registers passed to the consumer
+    public KWIdSet forEachCached(CourtCode courtCode, Predicate<KWNumber> filter, Set<Column> columns, BiConsumer<KWNumber, AnalysedRegister> consumer) {
+        var store = store(courtCode);
+        var current = new KWIdSet();
+        store.kwNumbers().parallelStream()
+                .filter(kwNumber -> filter.test(kwNumber) && isCurrent(store, kwNumber))
+                .forEach(kwNumber -> {
+                    synchronized (current) {
+                        current.add(kwNumber.toId());
+                    }
+                });
+        store.forEach(columns, kwNumber -> current.contains(kwNumber.toId()), consumer);
+        return current;
+    }
+
+    // whether the register was analysed by this version from its pages as they are now
+    private boolean isCurrent(AnalysedStore store, KWNumber kwNumber) {
+        var origin = store.origin(kwNumber);
+        if (origin == null || origin.analyserVersion() != ANALYSER_VERSION) {
+            return false;
+        }
+
+        var pages = SourcePages.of(kwNumber);
+        var stamp = SourcePages.stamp(pages);
+        if (stamp != origin.pagesStamp()) {
+            if (SourcePages.contentHash(pages) != origin.pagesHash()) {
+                return false;
             }
-            return registerSerialized.deserialize(json);
+            // downloaded again, but the same, recorded in the background like analyses
+            writer.writeOrigin(store, kwNumber, origin.withPagesStamp(stamp));
+        }
+        return true;
+    }
+
+    /// Analyses the register and stores its analysis
+    ///
+    /// @param pagesHash hash of the pages the register was parsed from, see [RegisterParser#parseHashed],
+    /// so they are not read again
+    public AnalysedRegister analyse(KWNumber kwNumber, ParsedRegister parsedRegister, long pagesHash) {
+        var origin = new Origin(ANALYSER_VERSION, SourcePages.stamp(SourcePages.of(kwNumber)), pagesHash);
+
+        var analysedRegister = analyse(parsedRegister);
+        writer.write(store(kwNumber.getCourtCode()), new Stored(kwNumber, analysedRegister, origin));
+        return analysedRegister;
+    }
+
+    /// Summary of background writes of analyses, e.g. to see whether the disk keeps up
+    public String getWriteStats() {
+        return "written " + writer.getWritten() + " analysed registers, write queue depth "
+                + writer.getQueueDepth() + " (max " + writer.getMaxQueueDepth() + " of " + writer.getQueueCapacity() + ")";
+    }
+
+    private AnalysedStore store(CourtCode courtCode) {
+        return stores.computeIfAbsent(courtCode.getCode(), code -> new AnalysedStore(Filenames.getAnalysedDir(courtCode)));
+    }
+
+    /// Waits until all analyses are written
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } finally {
+            stores.values().forEach(AnalysedStore::close);
+            stores.clear();
         }
-        return null;
     }
 
-    public AnalysedRegister analyse(KWNumber kwNumber, ParsedRegister parsedRegister) {
+    /// Analyses without storing the result, for registers parsed only partially
+    public AnalysedRegister analyse(ParsedRegister parsedRegister) {
         BasicInfo basicInfo = null;
         List<Location> locations = List.of();
         List<Apartment> apartments = List.of();
@@ -67,18 +198,18 @@ public class RegisterAnalyser {
         for (Page page : parsedRegister.pages()) {
             for (Section section : page.sections()) {
                 switch (section.title()) {
-                    case "Rubryka 0.1 - Informacje podstawowe" -> basicInfo = parseBasicInfo(section);
-                    case "Rubryka 1.3 - Położenie" -> locations = parseLocations(section);
-                    case "Podrubryka 1.4.4 - Lokal" -> apartments = parseApartments(section);
-                    case "Podrubryka 2.2.2 - Skarb Państwa" -> treasuryOwners = parseTreasuryOwners(section);
-                    case "Podrubryka 2.2.3 - Jednostka samorządu terytorialnego (związek międzygminny)" -> communeOwners = parseCommuneOwners(section);
-                    case "Podrubryka 2.2.4 - Inna osoba prawna lub jednostka organizacyjna niebędąca osobą prawną" -> legalOwners = parseLegalOwners(section);
-                    case "Podrubryka 2.2.5 - Osoba fizyczna" -> owners = parseOwners(section);
-                    case "Podrubryka 2.5.5 - Osoba fizyczna" -> authorizeds = parseOwners(section);
-                    case "Rubryka 1.4 - Oznaczenie" -> parcels = parseParcels(section);
-                    case "Rubryka 1.5 - Obszar" -> area = parseArea(section);
-                    case "Rubryka 1.9 - Komentarz" -> migrationComment = parseMigrationComments(section);
-                    case "WNIOSKI I PODSTAWY WPISÓW W KSIĘDZE WIECZYSTEJ" -> parseChanges(section, changes);
+                    case BASIC_INFO -> basicInfo = parseBasicInfo(section);
+                    case LOCATIONS -> locations = parseLocations(section);
+                    case APARTMENTS -> apartments = parseApartments(section);
+                    case TREASURY_OWNERS -> treasuryOwners = parseTreasuryOwners(section);
+                    case COMMUNE_OWNERS -> communeOwners = parseCommuneOwners(section);
+                    case LEGAL_OWNERS -> legalOwners = parseLegalOwners(section);
+                    case OWNERS -> owners = parseOwners(section);
+                    case AUTHORIZEDS -> authorizeds = parseOwners(section);
+                    case PARCELS -> parcels = parseParcels(section);
+                    case AREA -> area = parseArea(section);
+                    case MIGRATION_COMMENT -> migrationComment = parseMigrationComments(section);
+                    case APPLICATIONS -> parseChanges(section, changes);
                     default -> {
                         //System.out.println("Skipped section: " + section.title());
                     }
@@ -86,21 +217,22 @@ public class RegisterAnalyser {
             }
         }
 
-        // convert changes to list sorted by number
-        var changeList = changes.entrySet().stream()
-                .sorted(comparingByKey())
-                .map(Map.Entry::getValue)
-                .toList();
+        // entries added or removed by every change, only of analysed sections, so that they don't depend on
+        // whether the register was parsed whole or only its analysed sections
+        var entries = new HashMap<Integer, Set<EntryRef>>();
+        for (Page page : parsedRegister.pages()) {
+            for (Section section : page.sections()) {
+                if (SECTIONS.contains(section.title()) && !section.title().equals(APPLICATIONS)) {
+                    collectChangedEntries(section, changes, entries);
+                }
+            }
+        }
 
-        var analysedRegister = new AnalysedRegister(basicInfo, locations, apartments, parcels, area, owners, legalOwners, treasuryOwners, communeOwners, authorizeds, changeList, migrationComment);
+        var changeList = changes.values().stream()
+                .map(change -> change.withEntries(List.copyOf(entries.getOrDefault(change.number(), Set.of()))))
+                .toList();
 
-        var json = registerSerialized.serialize(analysedRegister);
-        try {
-            Files.writeString(Filenames.getAnalysedFilename(kwNumber), json);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        return analysedRegister;
+        return new AnalysedRegister(basicInfo, locations, apartments, parcels, area, owners, legalOwners, treasuryOwners, communeOwners, authorizeds, ChangeHistory.of(changeList), migrationComment);
     }
 
     private static BasicInfo parseBasicInfo(Section section) {
@@ -212,14 +344,73 @@ public class RegisterAnalyser {
         changeNumbers.stream()
                 .map(i -> new Change(
                         i,
-                        section.getChangeValue(i, new String[]{"3. Data sporządzenia", "2. Data sporządzenia", "3. Data wydania", "3. Data wydania orzeczenia"}),
-                        section.getChangeValue(i, new String[]{"1. Tytuł aktu", "1. Podstawa oznaczenia (sprostowania)", "1. Wskazanie podstawy", "1. Rodzaj i przedmiot orzeczenia"}),
-                        section.getChangeValue(i, new String[]{"3. Nazwa organu", "Notariusz", "4. Wystawca", "4. Nazwa sądu"})
+                        parseDate(section.getChangeValue(i, new String[]{"3. Data sporządzenia", "2. Data sporządzenia", "3. Data wydania", "3. Data wydania orzeczenia"})),
+                        parseDocumentKind(section.getChangeFields(i)),
+                        emptyToNull(section.getChangeValue(i, new String[]{"1. Tytuł aktu", "1. Podstawa oznaczenia (sprostowania)", "1. Wskazanie podstawy", "1. Rodzaj i przedmiot orzeczenia"})),
+                        emptyToNull(section.getChangeValue(i, new String[]{"3. Nazwa organu", "Notariusz", "4. Wystawca", "4. Nazwa sądu"})),
+                        List.of()
                 ))
                 .filter(change -> change.date() != null || change.description() != null || change.entity() != null)
                 .forEach(change -> changes.put(change.number(), change));
     }
 
+    // first date in the text, registers use both 22.10.2003 and 2003-10-22
+    private static LocalDate parseDate(String text) {
+        var matcher = DATE_PATTERN.matcher(text);
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            if (matcher.group(1) != null) {
+                return LocalDate.of(Integer.parseInt(matcher.group(3)), Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(1)));
+            }
+            return LocalDate.of(Integer.parseInt(matcher.group(4)), Integer.parseInt(matcher.group(5)), Integer.parseInt(matcher.group(6)));
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static DocumentKind parseDocumentKind(Set<String> fields) {
+        if (fields.contains("Notariusz")) {
+            return DocumentKind.NOTARIAL_DEED;
+        } else if (fields.contains("3. Nazwa organu")) {
+            return DocumentKind.ADMINISTRATIVE_DECISION;
+        } else if (fields.contains("4. Nazwa sądu") || fields.contains("1. Rodzaj i przedmiot orzeczenia")) {
+            return DocumentKind.COURT_RULING;
+        } else if (fields.contains("4. Wystawca") || fields.contains("1. Wskazanie podstawy")) {
+            return DocumentKind.OTHER_DOCUMENT;
+        } else if (fields.contains("1. Podstawa oznaczenia (sprostowania)")) {
+            return DocumentKind.DESIGNATION_BASIS;
+        }
+        return DocumentKind.UNKNOWN;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void collectChangedEntries(Section section, Map<Integer, Change> changes, Map<Integer, Set<EntryRef>> entries) {
+        var sectionNumber = sectionNumber(section.title());
+        for (var entry : section.entries()) {
+            if (entry.keys() == null || entry.keys().isEmpty() || entry.value() == null) {
+                continue;
+            }
+            var ref = new EntryRef(sectionNumber, entry.keys().getFirst());
+            for (var index : new String[]{entry.value().addedIndex(), entry.value().removedIndex()}) {
+                var number = NumberUtils.parseIntOrNull(index);
+                if (number != null && changes.containsKey(number)) {
+                    entries.computeIfAbsent(number, n -> new LinkedHashSet<>()).add(ref);
+                }
+            }
+        }
+    }
+
+    // "Podrubryka 1.4.1 - Działka ewidencyjna" -> "1.4.1"
+    private static String sectionNumber(String title) {
+        var matcher = SECTION_NUMBER_PATTERN.matcher(title);
+        return matcher.find() ? matcher.group(1) : title;
+    }
+
     private static MigrationComment parseMigrationComments(Section section) {
         return new MigrationComment(section.getValue("A: Wpisy lub części wpisów, ujawnione w księdze wieczystej w toku migracji, które zawierają treść nie objętą strukturą księgi wieczystej lub projekty wpisów przeniesione z dotychczasowej księgi wieczystej"));
     }
@@ -0,0 +1,77 @@
+package org.kwcrawler.analyser;
+
+
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.parser.PagesHash;
+import org.kwcrawler.structure.Chapter;
+import org.kwcrawler.structure.Filenames;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+
+/// Downloaded pages a register is analysed from, and cheap ways to tell whether they changed.
+///
+/// The stamp is made of sizes and modification times only, it changes also when a page is downloaded
+/// again with the same content. The content hash reads the pages, so it is checked only when the stamp differs.
+public final class SourcePages {
+    private SourcePages() {
+    }
+
+    public static List<Path> of(KWNumber kwNumber) {
+        return Arrays.stream(Chapter.all())
+                .map(chapter -> Filenames.getFilename(kwNumber, chapter))
+                .toList();
+    }
+
+    /// Mix of sizes and modification times of the pages, a missing page counts as empty
+    public static long stamp(List<Path> pages) {
+        var stamp = 1L;
+        for (var page : pages) {
+            long size = -1;
+            long modified = 0;
+            try {
+                var attributes = Files.readAttributes(page, BasicFileAttributes.class);
+                size = attributes.size();
+                modified = attributes.lastModifiedTime().toMillis();
+            } catch (NoSuchFileException e) {
+                // missing page
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot read attributes of " + page, e);
+            }
+            stamp = stamp * 31 + size;
+            stamp = stamp * 31 + modified;
+        }
+        return stamp;
+    }
+
+    /// [PagesHash] of the contents of all pages, read again, pages read for parsing are hashed
+    /// by [org.kwcrawler.parser.RegisterParser#parseHashed]
+    public static long contentHash(List<Path> pages) {
+        var hash = new PagesHash();
+        var buffer = ByteBuffer.allocate(1 << 16);
+        for (var page : pages) {
+            long size = -1;
+            try (var channel = FileChannel.open(page, StandardOpenOption.READ)) {
+                size = 0;
+                while (channel.read(buffer.clear()) >= 0) {
+                    size += buffer.position();
+                    hash.update(buffer.flip());
+                }
+            } catch (NoSuchFileException e) {
+                // missing page
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot read " + page, e);
+            }
+            hash.endPage(size);
+        }
+        return hash.get();
+    }
+}
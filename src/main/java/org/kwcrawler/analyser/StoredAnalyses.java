@@ -0,0 +1,107 @@
+package org.kwcrawler.analyser;
+
+
+import org.kwcrawler.CourtCode;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.analyser.AnalysedStore.Column;
+import org.kwcrawler.structure.Filenames;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/// Current analyses of registers of all courts, read-only, for searches of registers indexed without them.
+///
+/// Unlike [RegisterAnalyser#getCached] nothing is ever written, so searches don't lock or grow stores used by crawls.
+/// Stores are opened read-only when first needed and see registers stored until then, [#refresh] opens again
+/// the ones that changed since. Stores replaced by a refresh are closed by the next one, so lookups that
+/// started before it can finish.
+public class StoredAnalyses implements Closeable {
+    private record Opened(AnalysedStore store, long stamp) {}
+
+    // stores by court, the store is null when the court has none
+    private final Map<CourtCode, Opened> stores = new ConcurrentHashMap<>();
+    private final List<AnalysedStore> replaced = new ArrayList<>();
+
+    /// @return current analysis of the register, or `null` when it was not analysed yet,
+    /// was analysed by another version or its pages changed since
+    public AnalysedRegister get(KWNumber kwNumber) {
+        var store = stores.computeIfAbsent(kwNumber.getCourtCode(), StoredAnalyses::open).store();
+        if (store == null) {
+            return null;
+        }
+        var origin = store.origin(kwNumber);
+        if (origin == null || origin.analyserVersion() != RegisterAnalyser.ANALYSER_VERSION) {
+            return null;
+        }
+        var pages = SourcePages.of(kwNumber);
+        // pages downloaded again with the same content are still current, only their stamp is not recorded
+        if (SourcePages.stamp(pages) != origin.pagesStamp() && SourcePages.contentHash(pages) != origin.pagesHash()) {
+            return null;
+        }
+        return store.get(kwNumber, EnumSet.allOf(Column.class));
+    }
+
+    /// Opens again stores written since they were opened
+    ///
+    /// @return `true` when any store changed
+    public synchronized boolean refresh() {
+        replaced.forEach(AnalysedStore::close);
+        replaced.clear();
+
+        var changed = false;
+        for (var entry : stores.entrySet()) {
+            var courtCode = entry.getKey();
+            if (stamp(Filenames.getAnalysedDir(courtCode)) == entry.getValue().stamp()) {
+                continue;
+            }
+            var opened = open(courtCode);
+            stores.put(courtCode, opened);
+            if (entry.getValue().store() != null) {
+                replaced.add(entry.getValue().store());
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    @Override
+    public synchronized void close() {
+        replaced.forEach(AnalysedStore::close);
+        replaced.clear();
+        for (var opened : stores.values()) {
+            if (opened.store() != null) {
+                opened.store().close();
+            }
+        }
+        stores.clear();
+    }
+
+    private static Opened open(CourtCode courtCode) {
+        var dir = Filenames.getAnalysedDir(courtCode);
+        // stamped before opening, so that registers stored in between are seen by the next refresh
+        var stamp = stamp(dir);
+        return new Opened(stamp != 0 ? AnalysedStore.openReadOnly(dir) : null, stamp);
+    }
+
+    // size, modification time and identity of the index of the store, which every write and compaction change, 0 when there is none
+    private static long stamp(Path dir) {
+        try {
+            var attributes = Files.readAttributes(AnalysedStore.indexFile(dir), BasicFileAttributes.class);
+            return Objects.hash(attributes.size(), attributes.lastModifiedTime(), attributes.fileKey()) | 1L;
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read analysed store in " + dir, e);
+        }
+    }
+}
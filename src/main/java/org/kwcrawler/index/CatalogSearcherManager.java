@@ -0,0 +1,126 @@
+package org.kwcrawler.index;
+
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/// Searchers over all courts of an [IndexCatalog], like [org.apache.lucene.search.SearcherManager] of a single index.
+///
+/// Every court has its own reader, a refresh reopens only the courts whose index changed, picks up new courts
+/// and drops removed ones, so a court being re-indexed does not affect searches of the others.
+/// The directory of a removed court is closed with its last reader, once searches holding it are released.
+/// Searchers run slices of segments of all courts concurrently on the given executor, they are [FacetedSearcher]s,
+/// so ordinals of facet values are made once per refresh.
+public class CatalogSearcherManager extends ReferenceManager<IndexSearcher> {
+    private final IndexCatalog catalog;
+    private final Executor executor;
+
+    // only changed under the refresh lock of the ReferenceManager, and on close
+    private Map<String, DirectoryReader> readers = new TreeMap<>();
+    private final Map<String, Directory> directories = new HashMap<>();
+
+    public CatalogSearcherManager(IndexCatalog catalog, Executor executor) throws IOException {
+        this.catalog = catalog;
+        this.executor = executor;
+        current = reopen(true);
+    }
+
+    @Override
+    protected void decRef(IndexSearcher reference) throws IOException {
+        reference.getIndexReader().decRef();
+    }
+
+    @Override
+    protected IndexSearcher refreshIfNeeded(IndexSearcher referenceToRefresh) throws IOException {
+        return reopen(false);
+    }
+
+    @Override
+    protected boolean tryIncRef(IndexSearcher reference) {
+        return reference.getIndexReader().tryIncRef();
+    }
+
+    @Override
+    protected int getRefCount(IndexSearcher reference) {
+        return reference.getIndexReader().getRefCount();
+    }
+
+    @Override
+    protected synchronized void afterClose() throws IOException {
+        // searchers acquired before may still be searching, directories are closed with their last readers
+        for (var court : readers.entrySet()) {
+            IndexCatalog.closeWithLastReader(court.getValue(), directories.get(court.getKey()));
+            court.getValue().decRef();
+        }
+        readers.clear();
+        directories.clear();
+    }
+
+    /// @return searcher over current readers of courts, or `null` when none of them changed and `force` is not set
+    private synchronized IndexSearcher reopen(boolean force) throws IOException {
+        var next = new TreeMap<String, DirectoryReader>();
+        var changed = false;
+        try {
+            for (var courtCode : catalog.courts()) {
+                var reader = readers.get(courtCode);
+                if (reader == null) {
+                    var directory = directories.get(courtCode);
+                    if (directory == null) {
+                        directory = FSDirectory.open(catalog.directory(courtCode));
+                        next.put(courtCode, IndexCatalog.open(directory));
+                        directories.put(courtCode, directory);
+                    } else {
+                        next.put(courtCode, DirectoryReader.open(directory));
+                    }
+                    changed = true;
+                } else {
+                    var newReader = DirectoryReader.openIfChanged(reader);
+                    if (newReader != null) {
+                        next.put(courtCode, newReader);
+                        changed = true;
+                    } else {
+                        reader.incRef();
+                        next.put(courtCode, reader);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            for (var reader : next.values()) {
+                reader.decRef();
+            }
+            throw e;
+        }
+        changed |= !next.keySet().equals(readers.keySet());
+
+        if (!changed && !force) {
+            for (var reader : next.values()) {
+                reader.decRef();
+            }
+            return null;
+        }
+
+        // searchers hold their own references of readers of courts, replaced ones stay open until they are released
+        var searcher = new FacetedSearcher(new MultiReader(next.values().toArray(IndexReader[]::new), false), executor);
+        for (var removed : readers.keySet()) {
+            if (!next.containsKey(removed)) {
+                IndexCatalog.closeWithLastReader(readers.get(removed), directories.remove(removed));
+            }
+        }
+        for (var reader : readers.values()) {
+            reader.decRef();
+        }
+        readers = next;
+        return searcher;
+    }
+}
@@ -0,0 +1,54 @@
+package org.kwcrawler.index;
+
+
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/// Searcher which keeps ordinals of facet values of its reader for all facet counts it is used for.
+///
+/// The ordinals take a pass over all facet values of the reader. A reader of many courts has no cache key
+/// to keep them by, so they are kept by the searcher, which [CatalogSearcherManager] hands out until a refresh.
+public class FacetedSearcher extends IndexSearcher {
+    private volatile SortedSetDocValuesReaderState facetsState;
+    private volatile boolean facetsStateMade;
+
+    public FacetedSearcher(IndexReader reader) {
+        super(reader);
+    }
+
+    public FacetedSearcher(IndexReader reader, Executor executor) {
+        super(reader, executor);
+    }
+
+    /// Ordinals of facet values across segments of the reader, made on first use
+    ///
+    /// @return `null` when no register of the reader has facets
+    public SortedSetDocValuesReaderState facetsState() throws IOException {
+        if (!facetsStateMade) {
+            synchronized (this) {
+                if (!facetsStateMade) {
+                    facetsState = facetsState(getIndexReader());
+                    facetsStateMade = true;
+                }
+            }
+        }
+        return facetsState;
+    }
+
+    /// Ordinals of facet values across segments of the reader, made again on every call
+    ///
+    /// @return `null` when no register of the reader has facets
+    static SortedSetDocValuesReaderState facetsState(IndexReader reader) throws IOException {
+        if (FieldInfos.getMergedFieldInfos(reader).fieldInfo(FacetsConfig.DEFAULT_INDEX_FIELD_NAME) == null) {
+            return null;
+        }
+        return new DefaultSortedSetDocValuesReaderState(reader, RegisterFields.FACETS_CONFIG);
+    }
+}
@@ -0,0 +1,81 @@
+package org.kwcrawler.index;
+
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.ngram.EdgeNGramTokenFilter;
+import org.apache.lucene.analysis.ngram.NGramTokenFilter;
+import org.apache.lucene.analysis.pattern.PatternReplaceFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/// Splits text like [org.apache.lucene.analysis.standard.StandardAnalyzer], then lowercases and folds
+/// diacritics of the terms, so "Miedźno", "MIEDŹNO" and "Miedzno" are the same term.
+///
+/// Names and places are indexed once more in a `<field>.prefix` field, with edge n-grams of their terms,
+/// so type-ahead prefix queries are answered by a single term instead of enumerating all terms with the prefix.
+/// Only the [#INDEXING] analyzer splits them into n-grams, queries of the prefix field are looked up as they are.
+/// Terms shorter than [#MIN_GRAM] or longer than [#MAX_GRAM] are indexed whole as well.
+///
+/// They are also indexed in a `<field>.gram` field, with bigrams of their terms padded with [#GRAM_PADDING],
+/// e.g. `_k ko ow wa al l_` for "Kowal", so fuzzy queries are answered by looking up the bigrams of the query term.
+/// The field is split the same way by both analyzers, queries are split into bigrams as well.
+public final class FoldingAnalyzer extends Analyzer {
+    public static final String PREFIX_SUFFIX = ".prefix";
+    public static final int MIN_GRAM = 2;
+    public static final int MAX_GRAM = 12;
+
+    public static final String GRAM_SUFFIX = ".gram";
+    /// Size of n-grams of the gram field, a single edit of a term changes at most this many of them
+    public static final int GRAM_SIZE = 2;
+    public static final String GRAM_PADDING = "_";
+    private static final Pattern TERM_BOUNDS = Pattern.compile("^|$");
+
+    /// Fields of names and places, with a prefix and a gram field
+    public static final Set<String> NAME_FIELDS = Set.of("lokalizacja", "właściciel", "uprawniony");
+
+    public static final FoldingAnalyzer INDEXING = new FoldingAnalyzer(true);
+    public static final FoldingAnalyzer SEARCHING = new FoldingAnalyzer(false);
+
+    private final boolean indexing;
+
+    private FoldingAnalyzer(boolean indexing) {
+        // components differ between fields, the default strategy would reuse the first ones for all of them
+        super(PER_FIELD_REUSE_STRATEGY);
+        this.indexing = indexing;
+    }
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        var tokenizer = new StandardTokenizer();
+        TokenStream stream = new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer));
+        if (indexing && fieldName.endsWith(PREFIX_SUFFIX)) {
+            stream = new EdgeNGramTokenFilter(stream, MIN_GRAM, MAX_GRAM, true);
+        } else if (fieldName.endsWith(GRAM_SUFFIX)) {
+            // padded, so the first and the last letter are in as many bigrams as the others
+            stream = new PatternReplaceFilter(stream, TERM_BOUNDS, GRAM_PADDING, true);
+            stream = new NGramTokenFilter(stream, GRAM_SIZE);
+        }
+        return new TokenStreamComponents(tokenizer, stream);
+    }
+
+    // used by the query parser for prefix, wildcard and fuzzy terms
+    @Override
+    protected TokenStream normalize(String fieldName, TokenStream in) {
+        return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+    }
+
+    /// Lowercases and folds the text like terms, without splitting it
+    public static String fold(String text) {
+        var lowercase = text.toLowerCase(Locale.ROOT).toCharArray();
+        // a character folds to at most 4
+        var folded = new char[lowercase.length * 4];
+        var length = ASCIIFoldingFilter.foldToASCII(lowercase, 0, folded, 0, lowercase.length);
+        return new String(folded, 0, length);
+    }
+}
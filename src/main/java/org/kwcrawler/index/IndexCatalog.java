@@ -0,0 +1,106 @@
+package org.kwcrawler.index;
+
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.kwcrawler.CourtCodeValidator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/// Indexes of courts, one per court code in a directory named by it, e.g. `index/GL1G`.
+///
+/// Courts are indexed independently, each under its own lock, and searched together through a [MultiReader].
+/// The catalog is the directory itself: a court is listed once its index has its first commit.
+public class IndexCatalog {
+    private final Path root;
+
+    public IndexCatalog(Path root) {
+        this.root = root;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Path directory(String courtCode) {
+        return root.resolve(courtCode);
+    }
+
+    /// Court codes with a committed index, sorted
+    public List<String> courts() {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (var directories = Files.list(root)) {
+            var courts = new ArrayList<String>();
+            for (var directory : directories.filter(Files::isDirectory).sorted().toList()) {
+                var courtCode = directory.getFileName().toString();
+                if (CourtCodeValidator.isValidCourtCode(courtCode) && hasIndex(directory)) {
+                    courts.add(courtCode);
+                }
+            }
+            return courts;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list court indexes in " + root, e);
+        }
+    }
+
+    /// Reader of all court indexes, closing it closes the readers of the courts and their directories
+    public IndexReader openReader() throws IOException {
+        var readers = new ArrayList<IndexReader>();
+        try {
+            for (var courtCode : courts()) {
+                var directory = FSDirectory.open(directory(courtCode));
+                readers.add(open(directory));
+                closeWithLastReader(readers.getLast(), directory);
+            }
+        } catch (IOException e) {
+            for (var reader : readers) {
+                reader.close();
+            }
+            throw e;
+        }
+        return new MultiReader(readers.toArray(IndexReader[]::new), true);
+    }
+
+    /// Reader of the directory, the directory is closed when the reader can't be opened
+    static DirectoryReader open(Directory directory) throws IOException {
+        try {
+            return DirectoryReader.open(directory);
+        } catch (IOException | RuntimeException e) {
+            directory.close();
+            throw e;
+        }
+    }
+
+    /// Closes the directory once the reader, the last one of the directory, is closed
+    static void closeWithLastReader(IndexReader reader, Directory directory) {
+        reader.getReaderCacheHelper().addClosedListener(key -> directory.close());
+    }
+
+    /// Pool of a daemon thread per processor for [org.apache.lucene.search.IndexSearcher]s to search segments concurrently
+    public static ExecutorService newSearchExecutor() {
+        var threads = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            var thread = new Thread(runnable, "index-search-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static boolean hasIndex(Path directory) throws IOException {
+        try (var fsDirectory = FSDirectory.open(directory)) {
+            return DirectoryReader.indexExists(fsDirectory);
+        }
+    }
+}
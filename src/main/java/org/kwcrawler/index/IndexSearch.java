@@ -0,0 +1,377 @@
+package org.kwcrawler.index;
+
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.facet.FacetsCollectorManager;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldCollectorManager;
+import org.apache.lucene.util.BytesRef;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.OwnerTypeSelector.Group;
+import org.kwcrawler.analyser.StoredAnalyses;
+import org.kwcrawler.index.SearchResult.Hit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/// Searches of the index, the same for the `search` command and [SearchServer]
+public final class IndexSearch {
+    static final ObjectMapper JSON = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    /// Best matching first, registers with the same score by KW code, so pages don't overlap
+    public static final Sort BY_RELEVANCE = new Sort(SortField.FIELD_SCORE, new SortField(Indexer.KW_FIELD, SortField.Type.STRING));
+    /// By KW code from doc values, without computing scores
+    public static final Sort BY_KW = new Sort(new SortField(Indexer.KW_FIELD, SortField.Type.STRING));
+
+    private static final Set<String> HIT_FIELDS = Set.of(Indexer.KW_FIELD, Indexer.ANALYSED_FIELD);
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    private IndexSearch() {
+    }
+
+    /// @throws IllegalArgumentException when the query has invalid syntax
+    public static Query parse(String query) {
+        return parse(query, QueryParser.Operator.OR);
+    }
+
+    /// Query matching `query`, or all registers when it is empty, restricted to registers matching `filter`.
+    /// The filter does not affect the order of hits and all of its terms have to match,
+    /// e.g. `gmina:MIEDŹNO obszar:[1 TO *] własność:LEGAL_ENTITY`.
+    ///
+    /// @param filter `null` when not filtered
+    /// @throws IllegalArgumentException when the query or the filter has invalid syntax
+    public static Query parse(String query, String filter) {
+        var builder = new BooleanQuery.Builder();
+        builder.add(query == null || query.isBlank() ? new MatchAllDocsQuery() : parse(query), BooleanClause.Occur.MUST);
+        if (filter != null && !filter.isBlank()) {
+            builder.add(parse(filter, QueryParser.Operator.AND), BooleanClause.Occur.FILTER);
+        }
+        return builder.build();
+    }
+
+    private static Query parse(String query, QueryParser.Operator operator) {
+        try {
+            // parsers are not thread safe, but cheap to create
+            var parser = new RegisterQueryParser();
+            parser.setDefaultOperator(operator);
+            return parser.parse(query);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid query: " + e.getMessage(), e);
+        }
+    }
+
+    /// Order of hits of the query, relevance is not worth computing when all registers match
+    public static Sort sort(String query) {
+        return query == null || query.isBlank() ? BY_KW : BY_RELEVANCE;
+    }
+
+    /// A page of hits, the next one is searched with [SearchResult#next] of this one as `after`.
+    /// Cursors hold sort values rather than document ids, so they stay valid when the index changes.
+    ///
+    /// @param sort [#BY_RELEVANCE] or [#BY_KW]
+    /// @param after cursor of the previous page, `null` for the first one
+    /// @param facets whether to count values of [RegisterFields#FACETS] of all matching registers
+    /// @param storedAnalyses source of analyses of registers indexed without them
+    /// @throws IllegalArgumentException when the limit is not positive or the cursor is invalid for the sort
+    public static SearchResult search(IndexSearcher searcher, Query query, Sort sort, int limit, String after, boolean facets, StoredAnalyses storedAnalyses) throws IOException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit has to be positive: " + limit);
+        }
+        // all matches are counted, the default threshold would only tell there are more than a thousand
+        var topDocs = searcher.search(query, new TopFieldCollectorManager(sort, limit, parseCursor(sort, after), Integer.MAX_VALUE));
+        var storedFields = searcher.storedFields();
+
+        var hits = new ArrayList<Hit>(topDocs.scoreDocs.length);
+        for (var scoreDoc : topDocs.scoreDocs) {
+            hits.add(hit(storedFields.document(scoreDoc.doc, HIT_FIELDS), storedAnalyses));
+        }
+        var next = topDocs.scoreDocs.length == limit ? cursor(topDocs.scoreDocs[limit - 1]) : null;
+        return new SearchResult(topDocs.totalHits.value(), hits, next, facets ? countFacets(searcher, query) : null);
+    }
+
+    /// @return the register, or `null` when it is not indexed
+    public static Hit kw(IndexSearcher searcher, KWNumber kwNumber, StoredAnalyses storedAnalyses) throws IOException {
+        var result = search(searcher, new TermQuery(new Term(Indexer.KW_FIELD, kwNumber.toCode())), BY_KW, 1, null, false, storedAnalyses);
+        return result.hits().isEmpty() ? null : result.hits().getFirst();
+    }
+
+    /// Writes all matching registers as JSON of [Hit]s, a line each, ordered by KW code.
+    /// Hits are read a page at a time, so memory does not grow with their number.
+    ///
+    /// @return number of registers written
+    public static long export(IndexSearcher searcher, Query query, StoredAnalyses storedAnalyses, OutputStream out) throws IOException {
+        var storedFields = searcher.storedFields();
+        var count = 0L;
+        FieldDoc after = null;
+        while (true) {
+            var topDocs = searcher.search(query, new TopFieldCollectorManager(BY_KW, EXPORT_PAGE_SIZE, after, EXPORT_PAGE_SIZE));
+            for (var scoreDoc : topDocs.scoreDocs) {
+                out.write(JSON.writeValueAsBytes(hit(storedFields.document(scoreDoc.doc, HIT_FIELDS), storedAnalyses)));
+                out.write('\n');
+            }
+            count += topDocs.scoreDocs.length;
+            if (topDocs.scoreDocs.length < EXPORT_PAGE_SIZE) {
+                out.flush();
+                return count;
+            }
+            after = (FieldDoc) topDocs.scoreDocs[EXPORT_PAGE_SIZE - 1];
+        }
+    }
+
+    private static Hit hit(Document document, StoredAnalyses storedAnalyses) {
+        var code = document.get(Indexer.KW_FIELD);
+        var analysed = Indexer.analysed(document);
+        if (analysed == null) {
+            analysed = storedAnalyses.get(new KWNumber(code));
+        }
+        return new Hit(code, analysed);
+    }
+
+    /// `<score>:<KW code>` of hits by relevance, `<KW code>` of hits by KW
+    private static String cursor(ScoreDoc scoreDoc) {
+        var fields = ((FieldDoc) scoreDoc).fields;
+        var code = ((BytesRef) fields[fields.length - 1]).utf8ToString();
+        return fields.length == 1 ? code : fields[0] + ":" + code;
+    }
+
+    private static FieldDoc parseCursor(Sort sort, String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        // KW codes are unique, so no hit has the same sort values as the cursor and its document id does not matter
+        if (!sort.needsScores()) {
+            return new FieldDoc(Integer.MAX_VALUE, Float.NaN, new Object[]{new BytesRef(cursor)});
+        }
+        var separator = cursor.indexOf(':');
+        try {
+            var score = Float.parseFloat(cursor.substring(0, Math.max(separator, 0)));
+            return new FieldDoc(Integer.MAX_VALUE, score, new Object[]{score, new BytesRef(cursor.substring(separator + 1))});
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor of hits by relevance: " + cursor, e);
+        }
+    }
+
+    /// Counts by value of each facet field, most frequent first, from [RegisterFields#FACETS_CONFIG] facets.
+    /// Ordinals of facet values are made once per [FacetedSearcher], and on every call for other searchers.
+    static Map<String, Map<String, Integer>> countFacets(IndexSearcher searcher, Query query) throws IOException {
+        var state = searcher instanceof FacetedSearcher facetedSearcher
+                ? facetedSearcher.facetsState()
+                : FacetedSearcher.facetsState(searcher.getIndexReader());
+        var counts = state != null ? new SortedSetDocValuesFacetCounts(state, searcher.search(query, new FacetsCollectorManager())) : null;
+
+        var sorted = new LinkedHashMap<String, Map<String, Integer>>();
+        for (var field : RegisterFields.FACETS) {
+            var fieldCounts = new LinkedHashMap<String, Integer>();
+            // dimensions without any value in the index have no range of ordinals
+            var result = counts != null && state.getOrdRange(field) != null ? counts.getAllChildren(field) : null;
+            if (result != null) {
+                Arrays.stream(result.labelValues)
+                        .sorted(Comparator.comparing((LabelAndValue labelValue) -> labelValue.value.intValue()).reversed().thenComparing(labelValue -> labelValue.label))
+                        .forEach(labelValue -> fieldCounts.put(labelValue.label, labelValue.value.intValue()));
+            }
+            sorted.put(field, fieldCounts);
+        }
+        return sorted;
+    }
+
+    /// KW codes of registers of people of each group, by name with names of parents or by PESEL, in a single pass
+    /// over the index. All names and PESELs of all groups make one query of two sets of terms, groups of each
+    /// matching register are found by ordinals of the terms in doc values of its segment.
+    ///
+    /// @return KWs by group name, in the order of groups
+    public static Map<String, SortedSet<String>> matchGroups(IndexSearcher searcher, List<Group> groups) throws IOException {
+        var groupsByTerm = new LinkedHashMap<String, Map<BytesRef, List<String>>>();
+        groupsByTerm.put(RegisterFields.PERSON, new HashMap<>());
+        groupsByTerm.put(RegisterFields.PESEL, new HashMap<>());
+        var matches = new LinkedHashMap<String, SortedSet<String>>();
+        for (var group : groups) {
+            matches.put(group.name(), new TreeSet<>());
+            for (var name : group.names()) {
+                groupsByTerm.get(RegisterFields.PERSON).computeIfAbsent(new BytesRef(name.toUpperCase(Locale.ROOT)), term -> new ArrayList<>()).add(group.name());
+            }
+            for (var pesel : group.pesels()) {
+                groupsByTerm.get(RegisterFields.PESEL).computeIfAbsent(new BytesRef(pesel), term -> new ArrayList<>()).add(group.name());
+            }
+        }
+
+        var builder = new BooleanQuery.Builder();
+        groupsByTerm.forEach((field, terms) -> {
+            if (!terms.isEmpty()) {
+                builder.add(new TermInSetQuery(field, terms.keySet()), BooleanClause.Occur.SHOULD);
+            }
+        });
+        var query = builder.build();
+        if (query.clauses().isEmpty()) {
+            return matches;
+        }
+
+        var fields = List.copyOf(groupsByTerm.keySet());
+        var weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.COMPLETE_NO_SCORES, 1);
+        for (var leaf : searcher.getIndexReader().leaves()) {
+            var bulkScorer = weight.bulkScorer(leaf);
+            if (bulkScorer == null) {
+                continue;
+            }
+
+            var kwCodes = DocValues.getSorted(leaf.reader(), Indexer.KW_FIELD);
+            var docValues = new SortedSetDocValues[fields.size()];
+            var groupsByOrdinal = new ArrayList<Map<Long, List<String>>>(fields.size());
+            for (var i = 0; i < fields.size(); i++) {
+                docValues[i] = DocValues.getSortedSet(leaf.reader(), fields.get(i));
+                var fieldGroups = new HashMap<Long, List<String>>();
+                for (var entry : groupsByTerm.get(fields.get(i)).entrySet()) {
+                    var ordinal = docValues[i].lookupTerm(entry.getKey());
+                    if (ordinal >= 0) {
+                        fieldGroups.put(ordinal, entry.getValue());
+                    }
+                }
+                groupsByOrdinal.add(fieldGroups);
+            }
+
+            bulkScorer.score(new LeafCollector() {
+                @Override
+                public void setScorer(Scorable scorer) {
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    if (!kwCodes.advanceExact(doc)) {
+                        return;
+                    }
+                    var code = kwCodes.lookupOrd(kwCodes.ordValue()).utf8ToString();
+                    for (var i = 0; i < docValues.length; i++) {
+                        if (docValues[i].advanceExact(doc)) {
+                            for (var j = 0; j < docValues[i].docValueCount(); j++) {
+                                var groupNames = groupsByOrdinal.get(i).get(docValues[i].nextOrd());
+                                if (groupNames != null) {
+                                    groupNames.forEach(groupName -> matches.get(groupName).add(code));
+                                }
+                            }
+                        }
+                    }
+                }
+            }, leaf.reader().getLiveDocs(), 0, DocIdSetIterator.NO_MORE_DOCS);
+        }
+        return matches;
+    }
+
+    /// Parses queries of [RegisterFields] as typed queries, prefix queries of names and places,
+    /// like `właściciel:kowal*`, as a single term of their prefix field, and fuzzy queries of them,
+    /// like `właściciel:kowalsky~`, as bigrams of their gram field
+    private static class RegisterQueryParser extends QueryParser {
+        RegisterQueryParser() {
+            super("content", FoldingAnalyzer.SEARCHING);
+            // fuzzy queries of other fields are left for typos, diacritics are folded already, so their first letter can be trusted
+            setFuzzyPrefixLength(1);
+        }
+
+        @Override
+        protected Query getFieldQuery(String field, String queryText, boolean quoted) throws ParseException {
+            var query = typed(() -> RegisterFields.fieldQuery(field, queryText));
+            return query != null ? query : super.getFieldQuery(field, queryText, quoted);
+        }
+
+        @Override
+        protected Query getRangeQuery(String field, String part1, String part2, boolean startInclusive, boolean endInclusive) throws ParseException {
+            var query = typed(() -> RegisterFields.rangeQuery(field, part1, part2, startInclusive, endInclusive));
+            return query != null ? query : super.getRangeQuery(field, part1, part2, startInclusive, endInclusive);
+        }
+
+        @Override
+        protected Query getPrefixQuery(String field, String termStr) throws ParseException {
+            if (FoldingAnalyzer.NAME_FIELDS.contains(field)) {
+                var prefix = getAnalyzer().normalize(field, termStr);
+                var length = prefix.utf8ToString().length();
+                if (length >= FoldingAnalyzer.MIN_GRAM && length <= FoldingAnalyzer.MAX_GRAM) {
+                    return new TermQuery(new Term(field + FoldingAnalyzer.PREFIX_SUFFIX, prefix));
+                }
+            }
+            return super.getPrefixQuery(field, termStr);
+        }
+
+        /// Registers sharing enough bigrams with the term to be within the edit distance of it, best matching first.
+        /// Every edit changes at most [FoldingAnalyzer#GRAM_SIZE] bigrams, so no register with a similar term is missed,
+        /// but bigrams of other terms of the field count as well. Terms too short to leave a bigram after the edits
+        /// are looked up by a [FuzzyQuery].
+        @Override
+        protected Query getFuzzyQuery(String field, String termStr, float minSimilarity) throws ParseException {
+            if (FoldingAnalyzer.NAME_FIELDS.contains(field)) {
+                var term = getAnalyzer().normalize(field, termStr).utf8ToString();
+                var edits = FuzzyQuery.floatToEdits(minSimilarity, term.codePointCount(0, term.length()));
+                var grams = grams(field + FoldingAnalyzer.GRAM_SUFFIX, term);
+                var minimumMatching = grams.size() - edits * FoldingAnalyzer.GRAM_SIZE;
+                if (minimumMatching > 0) {
+                    var builder = new BooleanQuery.Builder();
+                    for (var gram : grams) {
+                        builder.add(new TermQuery(new Term(field + FoldingAnalyzer.GRAM_SUFFIX, gram)), BooleanClause.Occur.SHOULD);
+                    }
+                    return builder.setMinimumNumberShouldMatch(minimumMatching).build();
+                }
+            }
+            return super.getFuzzyQuery(field, termStr, minSimilarity);
+        }
+
+        private Set<String> grams(String field, String text) throws ParseException {
+            var grams = new LinkedHashSet<String>();
+            try (var stream = getAnalyzer().tokenStream(field, text)) {
+                var termAttribute = stream.addAttribute(CharTermAttribute.class);
+                stream.reset();
+                while (stream.incrementToken()) {
+                    grams.add(termAttribute.toString());
+                }
+                stream.end();
+            } catch (IOException e) {
+                throw new ParseException("Cannot split " + text + " into n-grams: " + e.getMessage());
+            }
+            return grams;
+        }
+
+        private static Query typed(Supplier<Query> typedQuery) throws ParseException {
+            try {
+                return typedQuery.get();
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException as well
+                throw new ParseException(e.getMessage());
+            }
+        }
+    }
+}
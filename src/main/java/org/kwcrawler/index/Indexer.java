@@ -0,0 +1,360 @@
+package org.kwcrawler.index;
+
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.kwcrawler.KWId;
+import org.kwcrawler.KWIdMap;
+import org.kwcrawler.KWIdSet;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.analyser.AnalysedRegister;
+import org.kwcrawler.analyser.AnalysedStore;
+import org.kwcrawler.analyser.RegisterAnalyser;
+import org.kwcrawler.parser.ValueHistory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/// Adds registers to a Lucene index from any number of threads.
+///
+/// Documents are built and added by the calling threads, [IndexWriter] is thread safe, so indexing scales
+/// with the threads processing registers. Nothing waits for a commit: they are made only at checkpoints,
+/// every [#COMMIT_INTERVAL] by a background thread and on [#close]. Searches see what was committed,
+/// there are no near-real-time readers, whose refreshes would flush small segments out of the RAM buffer.
+///
+/// Indexing is incremental: every document keeps a hash of its content and the analyser version it was
+/// made with, registers whose document would not change are skipped, and [#deleteMissing] drops the ones
+/// that were neither indexed again nor kept with [#keep].
+public class Indexer implements AutoCloseable {
+    /// KW code, also in sorted doc values, so hits can be ordered by it without collecting scores
+    public static final String KW_FIELD = "księga";
+    public static final String CONTENT_HASH_FIELD = "contentHash";
+    public static final String ANALYSER_VERSION_FIELD = "analyserVersion";
+    /// Stored [AnalysedStore#toBytes] of the register, so hits are shown without reading its pages
+    public static final String ANALYSED_FIELD = "analysed";
+
+    /// Bump when the same fields are indexed differently, e.g. with another analyzer,
+    /// changes of the fields themselves already change the content hash
+    private static final int DOCUMENT_VERSION = 4;
+
+    private static final double RAM_BUFFER_MB = 256;
+    private static final Duration COMMIT_INTERVAL = Duration.ofMinutes(5);
+
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final ScheduledExecutorService checkpoints;
+    // fingerprints of documents of the index when it was opened by KW id, removed when their register is indexed again,
+    // a primitive map, so a court of millions of registers doesn't take gigabytes of strings; guarded by itself
+    private final KWIdMap previous;
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+
+    // document without a hash, or no document, never equal to a current one
+    private static final long UNKNOWN = 0;
+
+    public Indexer(Path indexDirectory) {
+        try {
+            directory = FSDirectory.open(indexDirectory);
+            writer = new IndexWriter(directory, writerConfig());
+            previous = readIndexed(writer);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open index " + indexDirectory, e);
+        }
+
+        checkpoints = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "index-checkpoints");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpoints.scheduleWithFixedDelay(this::checkpoint, COMMIT_INTERVAL.toMillis(), COMMIT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /// Configuration for bulk indexing: a large RAM buffer so segments are flushed rarely,
+    /// and a merge policy that lets more segments pile up before merging them in the background
+    public static IndexWriterConfig writerConfig() {
+        var mergePolicy = new TieredMergePolicy();
+        mergePolicy.setSegmentsPerTier(20);
+        mergePolicy.setFloorSegmentMB(16);
+        mergePolicy.setNoCFSRatio(0);
+
+        var mergeScheduler = new ConcurrentMergeScheduler();
+        mergeScheduler.setDefaultMaxMergesAndThreads(false);
+
+        return new IndexWriterConfig(FoldingAnalyzer.INDEXING)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                .setRAMBufferSizeMB(RAM_BUFFER_MB)
+                .setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH)
+                .setMergePolicy(mergePolicy)
+                .setMergeScheduler(mergeScheduler)
+                .setCommitOnClose(false);
+    }
+
+    /// Adds the register, replacing the document it had before, unless that document has the same content
+    ///
+    /// @return `false` when the document was up to date
+    public boolean index(KWNumber kwNumber, AnalysedRegister analysed) {
+        var code = kwNumber.toCode();
+        var document = document(kwNumber, analysed);
+        var contentHash = contentHash(document);
+        var current = fingerprint(RegisterAnalyser.ANALYSER_VERSION, contentHash);
+
+        long before;
+        synchronized (previous) {
+            before = previous.remove(kwNumber.toId(), UNKNOWN);
+        }
+        if (current == before) {
+            unchanged.incrementAndGet();
+            return false;
+        }
+
+        document.add(new NumericDocValuesField(ANALYSER_VERSION_FIELD, RegisterAnalyser.ANALYSER_VERSION));
+        document.add(new NumericDocValuesField(CONTENT_HASH_FIELD, contentHash));
+        try {
+            writer.updateDocument(new Term(KW_FIELD, code), document);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to index " + code, e);
+        }
+        indexed.incrementAndGet();
+        return true;
+    }
+
+    /// Keeps the document of a register that could not be indexed again, e.g. because its pages failed to parse,
+    /// so that [#deleteMissing] doesn't delete it
+    public void keep(KWNumber kwNumber) {
+        synchronized (previous) {
+            previous.remove(kwNumber.toId(), UNKNOWN);
+        }
+    }
+
+    /// Deletes documents of registers in `scope` which were in the index when it was opened,
+    /// but have not been passed to [#index] or [#keep] since
+    ///
+    /// @param scope registers the run went over, documents outside of it are kept
+    /// @return number of deleted documents
+    public int deleteMissing(Predicate<KWNumber> scope) {
+        var missing = new ArrayList<Term>();
+        synchronized (previous) {
+            var kwIds = new KWIdSet();
+            previous.forEach((kwId, fingerprint) -> {
+                if (scope.test(KWNumber.fromId(kwId))) {
+                    kwIds.add(kwId);
+                }
+            });
+            kwIds.forEach(kwId -> {
+                previous.remove(kwId, UNKNOWN);
+                missing.add(new Term(KW_FIELD, KWId.toCode(kwId)));
+            });
+        }
+        try {
+            writer.deleteDocuments(missing.toArray(Term[]::new));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete missing registers from index", e);
+        }
+        return missing.size();
+    }
+
+    /// @return register stored in the document, or `null` when it was indexed without it
+    public static AnalysedRegister analysed(Document document) {
+        var bytes = document.getBinaryValue(ANALYSED_FIELD);
+        if (bytes == null) {
+            return null;
+        }
+        return AnalysedStore.fromBytes(ByteBuffer.wrap(bytes.bytes, bytes.offset, bytes.length));
+    }
+
+    public long getIndexed() {
+        return indexed.get();
+    }
+
+    /// Registers skipped because their document was up to date
+    public long getUnchanged() {
+        return unchanged.get();
+    }
+
+    /// Makes everything indexed so far durable
+    public void commit() {
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to commit index", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        checkpoints.shutdownNow();
+        try {
+            checkpoints.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try (directory; writer) {
+            writer.commit();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close index", e);
+        }
+    }
+
+    private void checkpoint() {
+        System.out.println("Indexed " + indexed.get() + " documents. Committing");
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            System.out.println("Failed to commit index: " + e.getMessage());
+        }
+    }
+
+    // analyser version and content hash of a document in one long, equal for equal documents
+    private static long fingerprint(int analyserVersion, long contentHash) {
+        return contentHash * 0x9E3779B97F4A7C15L + analyserVersion;
+    }
+
+    private static KWIdMap readIndexed(IndexWriter writer) throws IOException {
+        var indexed = new KWIdMap();
+        try (var reader = DirectoryReader.open(writer)) {
+            for (var leaf : reader.leaves()) {
+                var leafReader = leaf.reader();
+                var terms = leafReader.terms(KW_FIELD);
+                if (terms == null) {
+                    continue;
+                }
+
+                // doc values iterate only forwards, terms are in KW order, so read them all up front
+                var byDoc = new long[leafReader.maxDoc()];
+                var analyserVersions = DocValues.getNumeric(leafReader, ANALYSER_VERSION_FIELD);
+                var contentHashes = DocValues.getNumeric(leafReader, CONTENT_HASH_FIELD);
+                for (var doc = analyserVersions.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = analyserVersions.nextDoc()) {
+                    if (contentHashes.advanceExact(doc)) {
+                        byDoc[doc] = fingerprint((int) analyserVersions.longValue(), contentHashes.longValue());
+                    }
+                }
+
+                var liveDocs = leafReader.getLiveDocs();
+                var termsEnum = terms.iterator();
+                for (var term = termsEnum.next(); term != null; term = termsEnum.next()) {
+                    var docs = termsEnum.postings(null);
+                    for (var doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+                        if (liveDocs == null || liveDocs.get(doc)) {
+                            // documents indexed before hashes were stored are always reindexed
+                            indexed.put(KWId.parse(term.utf8ToString()), byDoc[doc], UNKNOWN);
+                        }
+                    }
+                }
+            }
+        }
+        return indexed;
+    }
+
+    /// 64-bit FNV-1a over names and values of the fields
+    static long contentHash(Document document) {
+        var hash = 0xcbf29ce484222325L ^ DOCUMENT_VERSION;
+        for (var field : document.getFields()) {
+            hash = hash(hash, field.name());
+            hash = hash(hash, field.stringValue());
+            var bytes = field.binaryValue();
+            if (bytes != null) {
+                for (var i = bytes.offset; i < bytes.offset + bytes.length; i++) {
+                    hash = (hash ^ (bytes.bytes[i] & 0xFF)) * 0x100000001b3L;
+                }
+            }
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return hash * 0x100000001b3L;
+        }
+        for (var i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        // separator, so that moving characters between fields changes the hash
+        return (hash ^ 0xffff) * 0x100000001b3L;
+    }
+
+    static Document document(KWNumber kwNumber, AnalysedRegister analysed) {
+        var content = new StringBuilder();
+
+        var document = new Document();
+        document.add(new StringField(KW_FIELD, kwNumber.toCode(), TextField.Store.YES));
+        document.add(new SortedDocValuesField(KW_FIELD, new BytesRef(kwNumber.toCode())));
+        content.append(kwNumber.toCode()).append(" ");
+        analysed.locations().forEach(location -> {
+            add(document, content, "lokalizacja", location.voivodeship());
+            add(document, content, "lokalizacja", location.district());
+            add(document, content, "lokalizacja", location.commune());
+            add(document, content, "lokalizacja", location.city());
+        });
+        analysed.apartments().forEach(apartment -> {
+            add(document, content, "lokal", apartment.street());
+            add(document, content, "lokal", apartment.buildingNumber());
+            add(document, content, "lokal", apartment.apartmentNumber());
+            add(document, content, "lokal", apartment.purpose());
+            add(document, content, "lokal", apartment.floor());
+        });
+        analysed.parcels().forEach(parcel -> {
+            add(document, content, "działka", parcel.parcelId());
+            add(document, content, "działka", parcel.region());
+            add(document, content, "działka", parcel.parcelNumber());
+            add(document, content, "działka", parcel.usageType());
+            add(document, content, "działka", parcel.street());
+        });
+        analysed.owners().forEach(owner -> {
+            add(document, content, "właściciel", owner.name());
+            add(document, content, "właściciel", owner.surname());
+            add(document, content, "właściciel", owner.pesel());
+        });
+        analysed.authorizeds().forEach(authorized -> {
+            add(document, content, "uprawniony", authorized.name());
+            add(document, content, "uprawniony", authorized.surname());
+            add(document, content, "uprawniony", authorized.pesel());
+        });
+
+        document.add(new TextField("content", content.toString(), TextField.Store.NO));
+        RegisterFields.add(document, kwNumber, analysed);
+        document.add(new StoredField(ANALYSED_FIELD, AnalysedStore.toBytes(analysed)));
+        try {
+            return RegisterFields.FACETS_CONFIG.build(document);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to build facets of " + kwNumber, e);
+        }
+    }
+
+    private static void add(Document document, StringBuilder content, String field, ValueHistory history) {
+        if (history == null) {
+            return;
+        }
+        var name = FoldingAnalyzer.NAME_FIELDS.contains(field);
+        for (var value : history.values()) {
+            document.add(new TextField(field, value.value(), TextField.Store.NO));
+            if (name) {
+                document.add(new TextField(field + FoldingAnalyzer.PREFIX_SUFFIX, value.value(), TextField.Store.NO));
+                document.add(new TextField(field + FoldingAnalyzer.GRAM_SUFFIX, value.value(), TextField.Store.NO));
+            }
+            content.append(value.value()).append(" ");
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package org.kwcrawler.index;
+
+
+import org.kwcrawler.Shard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/// Registers by 64-bit keys, hashes of what registers are looked up by, like their owners or parcels.
+/// Registers are [org.kwcrawler.KWNumber#toId]s.
+///
+/// A file holds sorted keys, the first key of each bucket of the top bits of keys, the start of registers
+/// of each key, and sorted registers of all keys one after another. Keys are uniform hashes and there are
+/// about [#KEYS_PER_BUCKET] of them in a bucket, so a lookup reads a bucket and a few keys next to each other,
+/// in constant time. Files are memory-mapped, they are not read into the heap.
+///
+/// Every court, or shard of a court, has its own file. A file may list tags of its keys, e.g. districts
+/// of parcels, and a lookup of a tagged key goes only through files with the tag, and files without tags.
+/// Other lookups go through all files, at the cost of a bucket read in each of them.
+public class KeyIndex {
+    private static final int MAGIC = 0x4B574B49; // "KWKI"
+    // version 2 adds tags after the header, files of version 1 have none
+    private static final int FORMAT_VERSION = 2;
+    private static final int UNTAGGED_FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int UNTAGGED_HEADER_SIZE = 24;
+    private static final int KEYS_PER_BUCKET = 4;
+    private static final Pattern SHARD_FILE = Pattern.compile("\\d+of(\\d+)\\.bin");
+
+    private final List<Segment> segments;
+
+    // tags are sorted, empty when the file has none
+    private record Segment(int[] tags, int bucketBits, IntBuffer buckets, LongBuffer keys, IntBuffer starts, LongBuffer kwIds) {}
+
+    private KeyIndex(List<Segment> segments) {
+        this.segments = segments;
+    }
+
+    /// Maps all files in the directory and its subdirectories
+    public static KeyIndex open(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return new KeyIndex(List.of());
+        }
+        try (var files = Files.walk(directory)) {
+            var segments = new ArrayList<Segment>();
+            for (var file : files.filter(path -> path.getFileName().toString().endsWith(".bin")).sorted().toList()) {
+                segments.add(map(file));
+            }
+            return new KeyIndex(segments);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open index in " + directory, e);
+        }
+    }
+
+    /// Stamp of files in the directory, it changes when a file is written, see [Builder#write]
+    public static long stamp(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        try (var files = Files.walk(directory)) {
+            var stamp = 0L;
+            for (var file : files.filter(path -> path.getFileName().toString().endsWith(".bin")).toList()) {
+                stamp = stamp * 31 + file.hashCode();
+                stamp = stamp * 31 + Files.getLastModifiedTime(file).toMillis();
+            }
+            return stamp;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list index in " + directory, e);
+        }
+    }
+
+    /// @return sorted registers of the key in all files
+    public long[] lookup(long key) {
+        return lookup(key, -1);
+    }
+
+    /// @param tag tag of the key, see [Builder#addTag], or -1 to go through all files
+    /// @return sorted registers of the key in files with the tag or without tags
+    public long[] lookup(long key, int tag) {
+        var kwIds = new long[0];
+        for (var segment : segments) {
+            if (tag >= 0 && segment.tags().length > 0 && Arrays.binarySearch(segment.tags(), tag) < 0) {
+                continue;
+            }
+            var found = find(segment, key);
+            if (found < 0) {
+                continue;
+            }
+            var start = segment.starts().get(found);
+            var end = segment.starts().get(found + 1);
+            var length = kwIds.length;
+            kwIds = Arrays.copyOf(kwIds, length + end - start);
+            segment.kwIds().get(start, kwIds, length, end - start);
+        }
+        // courts are in separate files, so registers don't repeat, but shards of a court may overlap
+        Arrays.sort(kwIds);
+        return Arrays.stream(kwIds).distinct().toArray();
+    }
+
+    /// FNV-1a of the kind and the identity, mixed so that all bits of keys are uniform
+    public static long key(char kind, String identity) {
+        var hash = (0xcbf29ce484222325L ^ kind) * 0x100000001b3L;
+        for (var i = 0; i < identity.length(); i++) {
+            hash = (hash ^ identity.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private static int find(Segment segment, long key) {
+        var bucket = bucket(key, segment.bucketBits());
+        var end = segment.buckets().get(bucket + 1);
+        for (var i = segment.buckets().get(bucket); i < end; i++) {
+            if (segment.keys().get(i) == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // keys are sorted as unsigned, so buckets of their top bits follow each other
+    private static int bucket(long key, int bucketBits) {
+        return bucketBits == 0 ? 0 : (int) (key >>> (64 - bucketBits));
+    }
+
+    private static Segment map(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Index too large to map: " + file);
+            }
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            var version = buffer.limit() >= UNTAGGED_HEADER_SIZE ? buffer.getInt(4) : 0;
+            if (buffer.limit() < UNTAGGED_HEADER_SIZE || buffer.getInt(0) != MAGIC
+                    || (version != FORMAT_VERSION && version != UNTAGGED_FORMAT_VERSION)) {
+                throw new IOException("Not an index of version " + FORMAT_VERSION + ": " + file);
+            }
+            var keyCount = buffer.getInt(8);
+            var bucketBits = buffer.getInt(12);
+            var kwIdCount = Math.toIntExact(buffer.getLong(16));
+            var tags = new int[version == FORMAT_VERSION ? buffer.getInt(24) : 0];
+
+            var layout = new Layout(version == FORMAT_VERSION ? HEADER_SIZE : UNTAGGED_HEADER_SIZE, tags.length, keyCount, bucketBits, kwIdCount);
+            buffer.slice(layout.tagsStart(), 4 * tags.length).asIntBuffer().get(tags);
+            return new Segment(
+                    tags,
+                    bucketBits,
+                    buffer.slice(layout.bucketsStart(), 4 * ((1 << bucketBits) + 1)).asIntBuffer(),
+                    buffer.slice(layout.keysStart(), 8 * keyCount).asLongBuffer(),
+                    buffer.slice(layout.startsStart(), 4 * (keyCount + 1)).asIntBuffer(),
+                    buffer.slice(layout.kwIdsStart(), 8 * kwIdCount).asLongBuffer());
+        }
+    }
+
+    /// Offsets of parts of a file, longs are aligned to 8 bytes
+    private record Layout(int headerSize, int tagCount, int keyCount, int bucketBits, int kwIdCount) {
+        int tagsStart() {
+            return headerSize;
+        }
+
+        int bucketsStart() {
+            return tagsStart() + 4 * tagCount;
+        }
+
+        int keysStart() {
+            return align(bucketsStart() + 4 * ((1 << bucketBits) + 1));
+        }
+
+        int startsStart() {
+            return keysStart() + 8 * keyCount;
+        }
+
+        int kwIdsStart() {
+            return align(startsStart() + 4 * (keyCount + 1));
+        }
+
+        int size() {
+            return kwIdsStart() + 8 * kwIdCount;
+        }
+
+        private static int align(int offset) {
+            return (offset + 7) & ~7;
+        }
+    }
+
+    /// Collects registers of keys in an open-addressing map of primitive keys to growing arrays of registers,
+    /// thread safe, registers are added by the threads processing them
+    public static class Builder {
+        private long[] slotKeys = new long[1 << 12];
+        // index of registers of the key in kwIds plus one, 0 for an empty slot
+        private int[] slotLists = new int[1 << 12];
+        private long[][] kwIds = new long[1 << 11][];
+        private int[] kwIdCounts = new int[1 << 11];
+        private int keyCount;
+        private final BitSet tags = new BitSet();
+
+        public synchronized void add(long key, long kwId) {
+            var slot = slot(key);
+            if (slotLists[slot] == 0) {
+                if (keyCount == kwIds.length) {
+                    kwIds = Arrays.copyOf(kwIds, keyCount * 2);
+                    kwIdCounts = Arrays.copyOf(kwIdCounts, keyCount * 2);
+                }
+                slotKeys[slot] = key;
+                slotLists[slot] = keyCount + 1;
+                kwIds[keyCount] = new long[2];
+                keyCount++;
+                if (keyCount * 2 > slotKeys.length) {
+                    rehash();
+                    slot = slot(key);
+                }
+            }
+            var list = slotLists[slot] - 1;
+            if (kwIdCounts[list] == kwIds[list].length) {
+                kwIds[list] = Arrays.copyOf(kwIds[list], kwIds[list].length * 2);
+            }
+            kwIds[list][kwIdCounts[list]++] = kwId;
+        }
+
+        /// Marks keys added with the tag, they have to be looked up with it, see [KeyIndex#lookup(long, int)].
+        /// Once any tag is added, keys looked up with another tag are not looked up in the file.
+        public synchronized void addTag(int tag) {
+            tags.set(tag);
+        }
+
+        public synchronized int getKeyCount() {
+            return keyCount;
+        }
+
+        /// Writes the index of registers of a court in the shard into the directory of the court, see [#write(Path)].
+        /// An index of the whole court replaces indexes of shards within it from earlier runs, and an index
+        /// of a shard replaces indexes of runs with another shard count, which would cover registers twice.
+        ///
+        /// @return the written file
+        public Path write(Path directory, Shard shard) {
+            var file = directory.resolve(shard.getName() + ".bin");
+            write(file);
+            try (var files = Files.list(directory)) {
+                for (var other : files.filter(path -> !path.equals(file)).toList()) {
+                    var matcher = SHARD_FILE.matcher(other.getFileName().toString());
+                    // files of other shards of this run may be being written
+                    if (shard.hasWholeCourts() || (matcher.matches() && Integer.parseInt(matcher.group(1)) != shard.count())) {
+                        Files.delete(other);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to delete stale indexes in " + directory, e);
+            }
+            return file;
+        }
+
+        /// Writes the index to a temporary file first and moves it over the file, so readers never see it half-written
+        public synchronized void write(Path file) {
+            var keys = new long[keyCount];
+            for (int slot = 0, i = 0; slot < slotKeys.length; slot++) {
+                if (slotLists[slot] != 0) {
+                    keys[i++] = slotKeys[slot];
+                }
+            }
+            sortUnsigned(keys);
+
+            var starts = new int[keyCount + 1];
+            var sortedLists = new long[keyCount][];
+            for (var i = 0; i < keyCount; i++) {
+                var list = slotLists[slot(keys[i])] - 1;
+                // a register may have the same key twice, e.g. an owner who is an authorized person as well
+                sortedLists[i] = Arrays.stream(kwIds[list], 0, kwIdCounts[list]).sorted().distinct().toArray();
+                starts[i + 1] = starts[i] + sortedLists[i].length;
+            }
+
+            var bucketBits = 0;
+            while ((1 << bucketBits) * KEYS_PER_BUCKET < keyCount) {
+                bucketBits++;
+            }
+            var buckets = new int[(1 << bucketBits) + 1];
+            for (int bucket = 0, i = 0; bucket < buckets.length; bucket++) {
+                while (i < keyCount && bucket(keys[i], bucketBits) < bucket) {
+                    i++;
+                }
+                buckets[bucket] = i;
+            }
+            buckets[buckets.length - 1] = keyCount;
+
+            var sortedTags = tags.stream().toArray();
+            var layout = new Layout(HEADER_SIZE, sortedTags.length, keyCount, bucketBits, starts[keyCount]);
+            var buffer = ByteBuffer.allocate(layout.size());
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(keyCount).putInt(bucketBits).putLong(starts[keyCount]).putInt(sortedTags.length);
+            buffer.position(layout.tagsStart());
+            for (var tag : sortedTags) {
+                buffer.putInt(tag);
+            }
+            for (var bucket : buckets) {
+                buffer.putInt(bucket);
+            }
+            buffer.position(layout.keysStart());
+            for (var key : keys) {
+                buffer.putLong(key);
+            }
+            for (var start : starts) {
+                buffer.putInt(start);
+            }
+            buffer.position(layout.kwIdsStart());
+            for (var list : sortedLists) {
+                for (var kwId : list) {
+                    buffer.putLong(kwId);
+                }
+            }
+
+            try {
+                Files.createDirectories(file.toAbsolutePath().getParent());
+                var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.write(temporary, buffer.array());
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write index " + file, e);
+            }
+        }
+
+        private static void sortUnsigned(long[] keys) {
+            // flipping the sign bit orders signed as unsigned
+            for (var i = 0; i < keys.length; i++) {
+                keys[i] ^= Long.MIN_VALUE;
+            }
+            Arrays.sort(keys);
+            for (var i = 0; i < keys.length; i++) {
+                keys[i] ^= Long.MIN_VALUE;
+            }
+        }
+
+        /// Slot of the key, or the empty slot where it would go
+        private int slot(long key) {
+            var mask = slotKeys.length - 1;
+            var slot = (int) key & mask;
+            while (slotLists[slot] != 0 && slotKeys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void rehash() {
+            var oldKeys = slotKeys;
+            var oldLists = slotLists;
+            slotKeys = new long[oldKeys.length * 2];
+            slotLists = new int[oldLists.length * 2];
+            for (var slot = 0; slot < oldKeys.length; slot++) {
+                if (oldLists[slot] != 0) {
+                    var newSlot = slot(oldKeys[slot]);
+                    slotKeys[newSlot] = oldKeys[slot];
+                    slotLists[newSlot] = oldLists[slot];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.kwcrawler.index;
+
+
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.Shard;
+import org.kwcrawler.OwnerTypeSelector;
+import org.kwcrawler.analyser.AnalysedRegister;
+import org.kwcrawler.parser.ValueHistory;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/// Registers of each owner, by PESEL, by name with names of parents or by REGON, for looking up everything
+/// a person or a company owns without searching and analysing registers.
+///
+/// Owners are keyed by a hash of their kind and identity in a [KeyIndex], names are folded like in the search index.
+/// Only current owners are indexed, authorized people count as owners.
+public class OwnerIndex {
+    private final KeyIndex keyIndex;
+
+    private OwnerIndex(KeyIndex keyIndex) {
+        this.keyIndex = keyIndex;
+    }
+
+    /// Maps all files in the directory and its subdirectories, one per court
+    public static OwnerIndex open(Path directory) {
+        return new OwnerIndex(KeyIndex.open(directory));
+    }
+
+    public List<KWNumber> byPesel(String pesel) {
+        return lookup(peselKey(pesel));
+    }
+
+    /// @param personName name as written by [OwnerTypeSelector#personName], case and diacritics are ignored
+    public List<KWNumber> byName(String personName) {
+        return lookup(nameKey(personName));
+    }
+
+    public List<KWNumber> byRegon(String regon) {
+        return lookup(regonKey(regon));
+    }
+
+    private List<KWNumber> lookup(long key) {
+        return Arrays.stream(keyIndex.lookup(key)).mapToObj(KWNumber::fromId).toList();
+    }
+
+    static long peselKey(String pesel) {
+        return KeyIndex.key('P', pesel.strip());
+    }
+
+    static long nameKey(String personName) {
+        return KeyIndex.key('N', FoldingAnalyzer.fold(personName.strip().replaceAll("\\s+", " ")));
+    }
+
+    static long regonKey(String regon) {
+        return KeyIndex.key('R', regon.strip());
+    }
+
+    /// Collects owners of registers, thread safe, registers are added by the threads processing them
+    public static class Builder {
+        private final KeyIndex.Builder keys = new KeyIndex.Builder();
+
+        public void add(KWNumber kwNumber, AnalysedRegister analysed) {
+            var kwId = kwNumber.toId();
+            for (var owner : Stream.concat(analysed.owners().stream(), analysed.authorizeds().stream()).toList()) {
+                current(owner.pesel()).forEach(pesel -> keys.add(peselKey(pesel), kwId));
+                if (RegisterFields.hasSingleName(owner)) {
+                    keys.add(nameKey(OwnerTypeSelector.personName(owner)), kwId);
+                }
+            }
+            analysed.legalOwners().forEach(owner -> current(owner.regon()).forEach(regon -> keys.add(regonKey(regon), kwId)));
+            analysed.treasuryOwners().forEach(owner -> current(owner.regon()).forEach(regon -> keys.add(regonKey(regon), kwId)));
+            analysed.communeOwners().forEach(owner -> current(owner.regon()).forEach(regon -> keys.add(regonKey(regon), kwId)));
+        }
+
+        public int getKeyCount() {
+            return keys.getKeyCount();
+        }
+
+        /// @return the written file
+        /// @see KeyIndex.Builder#write(Path, Shard)
+        public Path write(Path directory, Shard shard) {
+            return keys.write(directory, shard);
+        }
+
+        private static List<String> current(ValueHistory history) {
+            return history == null ? List.of() : history.currentValues();
+        }
+    }
+}
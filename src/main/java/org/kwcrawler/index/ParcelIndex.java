@@ -0,0 +1,83 @@
+package org.kwcrawler.index;
+
+
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.Shard;
+import org.kwcrawler.analyser.AnalysedRegister;
+import org.kwcrawler.teryt.ParcelTeryt;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/// Registers of each parcel by its TERYT id, e.g. `040701_1.0007.123/4`, in a [KeyIndex].
+///
+/// Parcels removed from registers are indexed as well, so registers a parcel used to be in are found too.
+/// Parcels with a map sheet, e.g. `040701_1.0007.AR_791.5/22`, are indexed with and without it,
+/// so they are found by either id. Files are tagged with districts of their parcels, so a parcel is looked up
+/// only in files of courts with parcels in its district.
+public class ParcelIndex {
+    private final KeyIndex keyIndex;
+
+    private ParcelIndex(KeyIndex keyIndex) {
+        this.keyIndex = keyIndex;
+    }
+
+    /// Maps all files in the directory and its subdirectories, one per court
+    public static ParcelIndex open(Path directory) {
+        return new ParcelIndex(KeyIndex.open(directory));
+    }
+
+    public List<KWNumber> byParcelId(String parcelId) {
+        var parcelTeryt = ParcelTeryt.fromParcelId(parcelId.strip());
+        var kwIds = keyIndex.lookup(parcelKey(parcelId), parcelTeryt != null ? districtTag(parcelTeryt) : -1);
+        return Arrays.stream(kwIds).mapToObj(KWNumber::fromId).toList();
+    }
+
+    private static long parcelKey(String parcelId) {
+        var parcelTeryt = ParcelTeryt.fromParcelId(parcelId.strip());
+        return KeyIndex.key('T', parcelTeryt != null ? parcelTeryt.toCode() : parcelId.strip());
+    }
+
+    // voivodeship and district codes of the TERYT, e.g. 2406 of 240601_2.0001.55
+    private static int districtTag(ParcelTeryt parcelTeryt) {
+        return Integer.parseInt(parcelTeryt.voivodeshipCode() + parcelTeryt.districtCode());
+    }
+
+    /// Collects parcels of registers, thread safe, registers are added by the threads processing them
+    public static class Builder {
+        private final KeyIndex.Builder keys = new KeyIndex.Builder();
+
+        public void add(KWNumber kwNumber, AnalysedRegister analysed) {
+            var kwId = kwNumber.toId();
+            for (var parcel : analysed.parcels()) {
+                if (parcel.parcelId() == null) {
+                    continue;
+                }
+                for (var value : parcel.parcelId().values()) {
+                    if (value.isEmpty()) {
+                        continue;
+                    }
+                    keys.add(parcelKey(value.value()), kwId);
+                    var parcelTeryt = ParcelTeryt.fromParcelId(value.value().strip());
+                    if (parcelTeryt != null) {
+                        keys.addTag(districtTag(parcelTeryt));
+                    }
+                    if (parcelTeryt != null && parcelTeryt.sheet() != null) {
+                        keys.add(KeyIndex.key('T', parcelTeryt.toCodeWithoutSheet()), kwId);
+                    }
+                }
+            }
+        }
+
+        public int getKeyCount() {
+            return keys.getKeyCount();
+        }
+
+        /// @return the written file
+        /// @see KeyIndex.Builder#write(Path, Shard)
+        public Path write(Path directory, Shard shard) {
+            return keys.write(directory, shard);
+        }
+    }
+}
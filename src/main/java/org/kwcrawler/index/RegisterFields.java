@@ -0,0 +1,255 @@
+package org.kwcrawler.index;
+
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.OwnerTypeSelector;
+import org.kwcrawler.analyser.AnalysedRegister;
+import org.kwcrawler.parser.ValueHistory;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/// Typed fields of register documents, next to the full-text ones, for filtering and facet counts.
+/// Only current values are indexed, removed ones don't describe the register anymore.
+///
+/// Keyword fields hold values as they are in registers, in uppercase. Queries of them are uppercased
+/// and looked up as a single term, queries of the numeric fields are point queries, see [#fieldQuery].
+public final class RegisterFields {
+    public static final String REGISTER_TYPE = "typ";
+    /// TERYT of communes of parcels, e.g. `241201_1`
+    public static final String TERYT = "teryt";
+    /// TERYT of regions of parcels, e.g. `241201_1.0001`
+    public static final String REGION = "obręb";
+    public static final String PESEL = "pesel";
+    /// Owners and authorized people with names of their parents, as in groups, e.g. `JAN KAZIMIERZ (LEOPOLD, STEFANIA)`
+    public static final String PERSON = "osoba";
+    public static final String REGON = "regon";
+    /// [OwnerKind] of the owners
+    public static final String OWNER_KIND = "własność";
+    public static final String VOIVODESHIP = "województwo";
+    public static final String DISTRICT = "powiat";
+    public static final String COMMUNE = "gmina";
+
+    public static final String LEDGER_NUMBER = "numer";
+    /// Area in hectares
+    public static final String AREA = "obszar";
+    /// Dates of changes, queried as `yyyy-MM-dd`
+    public static final String CHANGE_DATE = "zmiana";
+
+    /// Fields with counts of values in search results, also indexed as facet dimensions of [#FACETS_CONFIG]
+    public static final List<String> FACETS = List.of(VOIVODESHIP, DISTRICT, COMMUNE);
+    /// Facets of registers, every dimension may have more values, e.g. a register of parcels in two communes
+    public static final FacetsConfig FACETS_CONFIG = facetsConfig();
+
+    private static final Set<String> KEYWORDS = Set.of(REGISTER_TYPE, TERYT, REGION, PESEL, PERSON, REGON, OWNER_KIND, VOIVODESHIP, DISTRICT, COMMUNE);
+
+    private static final Pattern AREA_PATTERN = Pattern.compile("(\\d+(?:,\\d+)?)\\s*(HA|M2)");
+
+    public enum OwnerKind {
+        PERSON,
+        LEGAL_ENTITY,
+        TREASURY,
+        COMMUNE
+    }
+
+    private RegisterFields() {
+    }
+
+    static void add(Document document, KWNumber kwNumber, AnalysedRegister analysed) {
+        document.add(new IntPoint(LEDGER_NUMBER, kwNumber.getLedgerNumberValue()));
+
+        if (analysed.basicInfo() != null) {
+            addKeywords(document, REGISTER_TYPE, current(analysed.basicInfo().registerType()));
+        }
+
+        var voivodeships = new LinkedHashSet<String>();
+        var districts = new LinkedHashSet<String>();
+        var communes = new LinkedHashSet<String>();
+        for (var location : analysed.locations()) {
+            voivodeships.addAll(current(location.voivodeship()));
+            districts.addAll(current(location.district()));
+            communes.addAll(current(location.commune()));
+        }
+        addKeywordsWithFacets(document, VOIVODESHIP, voivodeships);
+        addKeywordsWithFacets(document, DISTRICT, districts);
+        addKeywordsWithFacets(document, COMMUNE, communes);
+
+        var teryts = new LinkedHashSet<String>();
+        var regions = new LinkedHashSet<String>();
+        for (var parcel : analysed.parcels()) {
+            for (var parcelId : current(parcel.parcelId())) {
+                // <commune>.<region>.<parcel number>, the number may have dots as well, e.g. AR_1.12
+                var parts = parcelId.split("\\.");
+                if (parts.length >= 3) {
+                    teryts.add(parts[0]);
+                    regions.add(parts[0] + "." + parts[1]);
+                }
+            }
+        }
+        addKeywords(document, TERYT, teryts);
+        addKeywords(document, REGION, regions);
+
+        // in doc values as well, so matches of groups are told apart without reading stored fields
+        var pesels = new LinkedHashSet<String>();
+        var persons = new LinkedHashSet<String>();
+        for (var owner : Stream.concat(analysed.owners().stream(), analysed.authorizeds().stream()).toList()) {
+            pesels.addAll(current(owner.pesel()));
+            if (hasSingleName(owner)) {
+                persons.add(OwnerTypeSelector.personName(owner));
+            }
+        }
+        addKeywordsWithDocValues(document, PESEL, pesels);
+        addKeywordsWithDocValues(document, PERSON, persons);
+
+        var regons = new LinkedHashSet<String>();
+        analysed.legalOwners().forEach(owner -> regons.addAll(current(owner.regon())));
+        analysed.treasuryOwners().forEach(owner -> regons.addAll(current(owner.regon())));
+        analysed.communeOwners().forEach(owner -> regons.addAll(current(owner.regon())));
+        addKeywords(document, REGON, regons);
+
+        var ownerKinds = new LinkedHashSet<String>();
+        if (!analysed.owners().isEmpty()) {
+            ownerKinds.add(OwnerKind.PERSON.name());
+        }
+        if (!analysed.legalOwners().isEmpty()) {
+            ownerKinds.add(OwnerKind.LEGAL_ENTITY.name());
+        }
+        if (!analysed.treasuryOwners().isEmpty()) {
+            ownerKinds.add(OwnerKind.TREASURY.name());
+        }
+        if (!analysed.communeOwners().isEmpty()) {
+            ownerKinds.add(OwnerKind.COMMUNE.name());
+        }
+        addKeywords(document, OWNER_KIND, ownerKinds);
+
+        if (analysed.area() != null) {
+            for (var area : current(analysed.area().area())) {
+                var hectares = parseHectares(area);
+                if (hectares != null) {
+                    document.add(new DoublePoint(AREA, hectares));
+                }
+            }
+        }
+
+        for (var change : analysed.changes()) {
+            if (change.date() != null) {
+                document.add(new LongPoint(CHANGE_DATE, change.date().toEpochDay()));
+            }
+        }
+    }
+
+    /// @return query of the value of a typed field, or `null` when the field is not typed
+    /// @throws IllegalArgumentException when the value is not valid for the field
+    static Query fieldQuery(String field, String value) {
+        if (KEYWORDS.contains(field)) {
+            return new TermQuery(new Term(field, value.toUpperCase(Locale.ROOT)));
+        }
+        return rangeQuery(field, value, value, true, true);
+    }
+
+    /// @param lower `null` when unbounded
+    /// @param upper `null` when unbounded
+    /// @return query of values of a numeric field in the range, or `null` when the field is not numeric
+    /// @throws IllegalArgumentException when a bound is not valid for the field
+    static Query rangeQuery(String field, String lower, String upper, boolean lowerInclusive, boolean upperInclusive) {
+        try {
+            return switch (field) {
+                case LEDGER_NUMBER -> IntPoint.newRangeQuery(field,
+                        lower == null ? Integer.MIN_VALUE : Integer.parseInt(lower) + (lowerInclusive ? 0 : 1),
+                        upper == null ? Integer.MAX_VALUE : Integer.parseInt(upper) - (upperInclusive ? 0 : 1));
+                case AREA -> DoublePoint.newRangeQuery(field,
+                        lower == null ? Double.NEGATIVE_INFINITY : nextUpUnless(lowerInclusive, parseDouble(lower)),
+                        upper == null ? Double.POSITIVE_INFINITY : nextDownUnless(upperInclusive, parseDouble(upper)));
+                case CHANGE_DATE -> LongPoint.newRangeQuery(field,
+                        lower == null ? Long.MIN_VALUE : LocalDate.parse(lower).toEpochDay() + (lowerInclusive ? 0 : 1),
+                        upper == null ? Long.MAX_VALUE : LocalDate.parse(upper).toEpochDay() - (upperInclusive ? 0 : 1));
+                default -> null;
+            };
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date of " + field + ", expected yyyy-MM-dd: " + e.getParsedString(), e);
+        }
+    }
+
+    /// @return area in hectares, or `null` when it is not in hectares or square meters
+    static Double parseHectares(String area) {
+        var matcher = AREA_PATTERN.matcher(area);
+        if (!matcher.find()) {
+            return null;
+        }
+        var value = parseDouble(matcher.group(1));
+        return matcher.group(2).equals("M2") ? value / 10_000 : value;
+    }
+
+    private static double parseDouble(String value) {
+        return Double.parseDouble(value.replace(',', '.'));
+    }
+
+    private static double nextUpUnless(boolean inclusive, double value) {
+        return inclusive ? value : Math.nextUp(value);
+    }
+
+    private static double nextDownUnless(boolean inclusive, double value) {
+        return inclusive ? value : Math.nextDown(value);
+    }
+
+    /// Whether the person has a single current name, surname and names of parents, as names of groups do
+    static boolean hasSingleName(AnalysedRegister.Owner owner) {
+        return current(owner.name()).size() == 1 && current(owner.surname()).size() == 1
+                && current(owner.fatherName()).size() <= 1 && current(owner.motherName()).size() <= 1;
+    }
+
+    private static List<String> current(ValueHistory history) {
+        return history == null ? List.of() : history.currentValues();
+    }
+
+    private static void addKeywords(Document document, String field, Iterable<String> values) {
+        for (var value : values) {
+            if (value != null && !value.isEmpty()) {
+                document.add(new StringField(field, value, StringField.Store.NO));
+            }
+        }
+    }
+
+    // facet fields are turned into doc values by FacetsConfig#build
+    private static void addKeywordsWithFacets(Document document, String field, Iterable<String> values) {
+        for (var value : values) {
+            if (value != null && !value.isEmpty()) {
+                document.add(new StringField(field, value, StringField.Store.NO));
+                document.add(new SortedSetDocValuesFacetField(field, value));
+            }
+        }
+    }
+
+    private static FacetsConfig facetsConfig() {
+        var config = new FacetsConfig();
+        FACETS.forEach(field -> config.setMultiValued(field, true));
+        return config;
+    }
+
+    private static void addKeywordsWithDocValues(Document document, String field, Iterable<String> values) {
+        for (var value : values) {
+            if (value != null && !value.isEmpty()) {
+                document.add(new StringField(field, value, StringField.Store.NO));
+                document.add(new SortedSetDocValuesField(field, new BytesRef(value)));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.kwcrawler.index;
+
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.time.Duration;
+
+/// Client of a [SearchServer] running on localhost, connections are kept open between requests
+public class SearchClient {
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectTimeout(Duration.ofMillis(500))
+            .readTimeout(Duration.ofMinutes(1))
+            .build();
+    private final int port;
+
+    public SearchClient(int port) {
+        this.port = port;
+    }
+
+    /// @return result of the query, or `null` when no server is running
+    /// @throws IllegalArgumentException when the server rejects the query
+    public SearchResult search(String query, int limit) {
+        return search(query, null, false, limit, null);
+    }
+
+    /// @param after [SearchResult#next] of the previous page, `null` for the first one
+    /// @return result of the query, or `null` when no server is running
+    /// @throws IllegalArgumentException when the server rejects the query
+    /// @see IndexSearch#parse(String, String)
+    public SearchResult search(String query, String filter, boolean facets, int limit, String after) {
+        var url = url("search")
+                .addQueryParameter("q", query)
+                .addQueryParameter("filter", filter)
+                .addQueryParameter("facets", String.valueOf(facets))
+                .addQueryParameter("limit", String.valueOf(limit))
+                .addQueryParameter("after", after)
+                .build();
+
+        try (var response = httpClient.newCall(new Request.Builder().url(url).build()).execute()) {
+            var body = response.body().bytes();
+            checkStatus(response.code(), body);
+            return IndexSearch.JSON.readValue(body, SearchResult.class);
+        } catch (ConnectException e) {
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to search on server at port " + port, e);
+        }
+    }
+
+    /// Copies all matching registers as newline delimited JSON to `out` as the server streams them
+    ///
+    /// @return `false` when no server is running
+    /// @throws IllegalArgumentException when the server rejects the query
+    /// @see IndexSearch#export
+    public boolean export(String query, String filter, OutputStream out) {
+        var url = url("export")
+                .addQueryParameter("q", query)
+                .addQueryParameter("filter", filter)
+                .build();
+
+        try (var response = httpClient.newCall(new Request.Builder().url(url).build()).execute()) {
+            if (!response.isSuccessful()) {
+                checkStatus(response.code(), response.body().bytes());
+            }
+            response.body().byteStream().transferTo(out);
+            out.flush();
+            return true;
+        } catch (ConnectException e) {
+            return false;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to export from server at port " + port, e);
+        }
+    }
+
+    private HttpUrl.Builder url(String path) {
+        return new HttpUrl.Builder()
+                .scheme("http")
+                .host("localhost")
+                .port(port)
+                .addPathSegment(path);
+    }
+
+    private static void checkStatus(int status, byte[] body) throws IOException {
+        if (status == 400) {
+            throw new IllegalArgumentException(IndexSearch.JSON.readTree(body).path("error").asText());
+        }
+        if (status < 200 || status >= 300) {
+            throw new RuntimeException("Search server failed with " + status + ": " + new String(body));
+        }
+    }
+}
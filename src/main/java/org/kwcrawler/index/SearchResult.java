@@ -0,0 +1,26 @@
+package org.kwcrawler.index;
+
+
+import org.kwcrawler.analyser.AnalysedRegister;
+
+import java.util.List;
+import java.util.Map;
+
+/// Registers matching a query, best first, as sent by [SearchServer]
+///
+/// @param totalHits number of all matching registers, [#hits] has at most the requested limit of them
+/// @param next cursor of the next page of hits, `null` when this page is not full, so there are no more of them
+/// @param facets counts of registers by value of each [RegisterFields#FACETS] field, `null` when not requested
+public record SearchResult(
+        long totalHits,
+        List<Hit> hits,
+        String next,
+        Map<String, Map<String, Integer>> facets
+) {
+    /// @param analysed `null` when the register is neither in the index nor in the analysed store
+    public record Hit(
+            String kw,
+            AnalysedRegister analysed
+    ) {
+    }
+}
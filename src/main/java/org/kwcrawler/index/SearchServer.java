@@ -0,0 +1,295 @@
+package org.kwcrawler.index;
+
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
+import org.kwcrawler.KWId;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.analyser.StoredAnalyses;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/// Serves searches of the index over HTTP on localhost, so they don't pay for starting the JVM
+/// and opening the index every time.
+///
+/// - `GET /search?q=<query>&filter=<query>&facets=<true|false>&limit=<n>&after=<cursor>` - [SearchResult] of the query,
+///   see [IndexSearch#parse(String, String)], all parameters are optional, `after` is [SearchResult#next] of the previous page
+/// - `GET /export?q=<query>&filter=<query>` - all matching [SearchResult.Hit]s as newline delimited JSON,
+///   streamed as they are read, see [IndexSearch#export]
+/// - `GET /kw?number=<KW code>` - [SearchResult.Hit] of the register, 404 when it is not indexed
+/// - `GET /parcel?id=<TERYT id>` - [SearchResult] of registers the parcel is or was in, see [ParcelIndex]
+///
+/// Every request runs in its own virtual thread over a shared [CatalogSearcherManager] of indexes of all courts,
+/// refreshed every [#REFRESH_INTERVAL] to see what index runs committed, like the parcel index and [StoredAnalyses]. Segments are searched concurrently
+/// on a pool of a thread per processor. Responses are cached until the next refresh that finds a change.
+public class SearchServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 7480;
+    public static final int DEFAULT_LIMIT = 100;
+
+    private static final Duration REFRESH_INTERVAL = Duration.ofSeconds(1);
+    private static final int CACHE_SIZE = 256;
+
+    private record Response(int status, byte[] body) {}
+
+    private final CatalogSearcherManager searcherManager;
+    private final Path parcelsRoot;
+    private volatile ParcelIndex parcelIndex;
+    private volatile long parcelsStamp;
+    private final StoredAnalyses storedAnalyses = new StoredAnalyses();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService searchExecutor = IndexCatalog.newSearchExecutor();
+    private final ScheduledExecutorService refresher;
+
+    // responses by request URI, least recently used first
+    private final Map<String, Response> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Response> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    // bumped when the cache is cleared, responses made over an older searcher are not cached
+    private long cacheGeneration;
+
+    /// @param indexRoot directory of indexes of courts, see [IndexCatalog]
+    /// @param parcelsRoot directory of parcel indexes of courts, see [ParcelIndex]
+    public SearchServer(Path indexRoot, Path parcelsRoot, int port) {
+        this.parcelsRoot = parcelsRoot;
+        parcelsStamp = KeyIndex.stamp(parcelsRoot);
+        parcelIndex = ParcelIndex.open(parcelsRoot);
+        try {
+            searcherManager = new CatalogSearcherManager(new IndexCatalog(indexRoot), searchExecutor);
+            searcherManager.addListener(new ReferenceManager.RefreshListener() {
+                @Override
+                public void beforeRefresh() {
+                }
+
+                @Override
+                public void afterRefresh(boolean didRefresh) {
+                    if (didRefresh) {
+                        synchronized (cache) {
+                            cache.clear();
+                            cacheGeneration++;
+                        }
+                    }
+                }
+            });
+
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to start search server on " + indexRoot, e);
+        }
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "search-server-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL.toMillis(), REFRESH_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /// Port the server listens on, the actual one when started with port 0
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+        refresher.shutdownNow();
+        storedAnalyses.close();
+        try {
+            searcherManager.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close search server", e);
+        } finally {
+            searchExecutor.shutdown();
+        }
+    }
+
+    private void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            System.out.println("Failed to refresh index searcher: " + e.getMessage());
+        }
+        try {
+            var stamp = KeyIndex.stamp(parcelsRoot);
+            if (stamp != parcelsStamp) {
+                parcelIndex = ParcelIndex.open(parcelsRoot);
+                parcelsStamp = stamp;
+                synchronized (cache) {
+                    cache.clear();
+                    cacheGeneration++;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Failed to refresh parcel index: " + e.getMessage());
+        }
+        try {
+            if (storedAnalyses.refresh()) {
+                synchronized (cache) {
+                    cache.clear();
+                    cacheGeneration++;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Failed to refresh analysed stores: " + e.getMessage());
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            var uri = exchange.getRequestURI();
+            if (!exchange.getRequestMethod().equals("GET")) {
+                send(exchange, error(405, "Only GET is supported"));
+                return;
+            }
+            if (uri.getPath().equals("/export")) {
+                export(exchange, parameters(uri.getRawQuery()));
+                return;
+            }
+
+            Response cached;
+            long generation;
+            synchronized (cache) {
+                cached = cache.get(uri.toString());
+                generation = cacheGeneration;
+            }
+            var response = cached != null ? cached : respond(uri.getPath(), parameters(uri.getRawQuery()));
+            if (cached == null && response.status() == 200) {
+                synchronized (cache) {
+                    if (generation == cacheGeneration) {
+                        cache.put(uri.toString(), response);
+                    }
+                }
+            }
+            send(exchange, response);
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), response.body().length);
+        exchange.getResponseBody().write(response.body());
+    }
+
+    private Response respond(String path, Map<String, String> parameters) {
+        IndexSearcher searcher;
+        try {
+            searcher = searcherManager.acquire();
+        } catch (IOException e) {
+            return error(500, e.getMessage());
+        }
+        try {
+            return switch (path) {
+                case "/search" -> {
+                    var query = IndexSearch.parse(parameters.get("q"), parameters.get("filter"));
+                    var limit = parameters.containsKey("limit") ? Integer.parseInt(parameters.get("limit")) : DEFAULT_LIMIT;
+                    var facets = Boolean.parseBoolean(parameters.get("facets"));
+                    yield ok(IndexSearch.search(searcher, query, IndexSearch.sort(parameters.get("q")), limit, parameters.get("after"), facets, storedAnalyses));
+                }
+                case "/kw" -> {
+                    var number = parameters.get("number");
+                    if (number == null) {
+                        yield error(400, "Missing number parameter");
+                    }
+                    var hit = IndexSearch.kw(searcher, KWNumber.fromId(KWId.parse(number)), storedAnalyses);
+                    yield hit != null ? ok(hit) : error(404, "Not indexed: " + number);
+                }
+                case "/parcel" -> {
+                    var id = parameters.get("id");
+                    if (id == null) {
+                        yield error(400, "Missing id parameter");
+                    }
+                    var hits = new ArrayList<SearchResult.Hit>();
+                    for (var kwNumber : parcelIndex.byParcelId(id)) {
+                        var hit = IndexSearch.kw(searcher, kwNumber, storedAnalyses);
+                        hits.add(hit != null ? hit : new SearchResult.Hit(kwNumber.toCode(), null));
+                    }
+                    yield ok(new SearchResult(hits.size(), hits, null, null));
+                }
+                default -> error(404, "Unknown path: " + path);
+            };
+        } catch (IllegalArgumentException e) {
+            return error(400, e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Failed to serve " + path + ": " + e);
+            return error(500, e.getMessage());
+        } finally {
+            try {
+                searcherManager.release(searcher);
+            } catch (IOException e) {
+                System.out.println("Failed to release index searcher: " + e.getMessage());
+            }
+        }
+    }
+
+    /// Exports are not cached, they are as large as the index
+    private void export(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+        var searcher = searcherManager.acquire();
+        try {
+            Query query;
+            try {
+                query = IndexSearch.parse(parameters.get("q"), parameters.get("filter"));
+            } catch (IllegalArgumentException e) {
+                send(exchange, error(400, e.getMessage()));
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+            // chunked, the length is not known until all hits are written
+            exchange.sendResponseHeaders(200, 0);
+            IndexSearch.export(searcher, query, storedAnalyses, exchange.getResponseBody());
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        var parameters = new HashMap<String, String>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (var parameter : rawQuery.split("&")) {
+            var separator = parameter.indexOf('=');
+            var name = separator < 0 ? parameter : parameter.substring(0, separator);
+            var value = separator < 0 ? "" : parameter.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static Response ok(Object body) throws JsonProcessingException {
+        return new Response(200, IndexSearch.JSON.writeValueAsBytes(body));
+    }
+
+    private static Response error(int status, String message) {
+        try {
+            return new Response(status, IndexSearch.JSON.writeValueAsBytes(Map.of("error", String.valueOf(message))));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.kwcrawler.parser;
+
+
+import org.jsoup.nodes.Element;
+
+/// Table cell of a register page, detached from the DOM it was read from
+record Cell(
+        String className,
+        String text,
+        int rowspan,
+        int colspan
+) {
+    static Cell of(Element element) {
+        var rowspan = element.attr("rowspan");
+        var colspan = element.attr("colspan");
+        return new Cell(
+                element.className(),
+                element.text(),
+                rowspan.isEmpty() ? 0 : Integer.parseInt(rowspan),
+                colspan.isEmpty() ? 1 : Integer.parseInt(colspan)
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "<td class=\"" + className + "\">" + text + "</td>";
+    }
+}
@@ -0,0 +1,53 @@
+package org.kwcrawler.parser;
+
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/// Canonical table of entry keys ("1.", "2. Imię pierwsze", ...) shared by all parsed registers.
+/// Every distinct key is stored once and identified by a dense numeric ID, so entries keep
+/// an `int[]` instead of their own strings. Keys are field labels and row numbers, so the table
+/// stays small even for whole courts. The table lives as long as the process and never shrinks,
+/// so only keys go into it, values of entries and their change indexes don't.
+final class KeyTable {
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] keys = new String[1024];
+    private static int size;
+
+    private KeyTable() {
+    }
+
+    static int id(String key) {
+        var id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (KeyTable.class) {
+            id = ids.get(key);
+            if (id != null) {
+                return id;
+            }
+
+            var table = keys;
+            if (size == table.length) {
+                table = Arrays.copyOf(table, size * 2);
+            }
+            table[size] = key;
+            keys = table;
+            // published after the key is in place, readers getting the ID always find the key
+            ids.put(key, size);
+            return size++;
+        }
+    }
+
+    /// ID of a key already in the table, or -1, without adding it
+    static int find(String key) {
+        var id = ids.get(key);
+        return id == null ? -1 : id;
+    }
+
+    static String key(int id) {
+        return keys[id];
+    }
+}
@@ -0,0 +1,46 @@
+package org.kwcrawler.parser;
+
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/// Immutable list of entry keys stored as IDs from the [KeyTable]
+final class Keys extends AbstractList<String> implements RandomAccess {
+    private static final Keys EMPTY = new Keys(new int[0]);
+
+    private final int[] ids;
+
+    private Keys(int[] ids) {
+        this.ids = ids;
+    }
+
+    static Keys of(int[] ids) {
+        return ids.length == 0 ? EMPTY : new Keys(ids);
+    }
+
+    static Keys of(List<String> keys) {
+        if (keys instanceof Keys interned) {
+            return interned;
+        }
+        var ids = new int[keys.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = KeyTable.id(keys.get(i));
+        }
+        return of(ids);
+    }
+
+    @Override
+    public String get(int index) {
+        return KeyTable.key(ids[index]);
+    }
+
+    int id(int index) {
+        return ids[index];
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+}
@@ -0,0 +1,61 @@
+package org.kwcrawler.parser;
+
+
+import org.jsoup.nodes.Element;
+import org.kwcrawler.parser.ParsedRegister.Page;
+import org.kwcrawler.parser.ParsedRegister.Page.Section;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/// Turns `table.tbOdpis` tables of `div#contentDzialu` into a [Page], table by table in document order.
+/// Shared by the DOM based [RegisterParser] and the [StreamingPageParser], so both parse pages the same.
+class PageAssembler {
+    private final SectionSelection selection;
+    private final SectionAssembler assembler = new SectionAssembler();
+    private String mainTitle = "";
+    private final List<Section> sections = new ArrayList<>();
+
+    PageAssembler(SectionSelection selection) {
+        this.selection = selection;
+    }
+
+    void addTable(Element table) {
+        // main title
+        var topTitle = table.select("td.csTTytul").text();
+        if (!topTitle.isEmpty()) {
+            if (!topTitle.equals(RegisterParser.APPLICATIONS_TITLE)) {
+                mainTitle = topTitle;
+                return;
+            }
+        }
+
+        // title of the section
+        var title = table.select("td.csTytul").text();
+
+        if (!title.isEmpty()) {
+            var section = parseSection(table);
+
+            if (!section.entries().isEmpty() && selection.contains(section.title())) {
+                sections.add(section);
+            }
+        }
+    }
+
+    Page build() {
+        return new Page(mainTitle, sections);
+    }
+
+    private Section parseSection(Element table) {
+        assembler.reset();
+
+        for (var row : table.select("tr")) {
+            var cells = row.select("td").stream()
+                    .map(Cell::of)
+                    .toList();
+            assembler.addRow(cells);
+        }
+
+        return assembler.build();
+    }
+}
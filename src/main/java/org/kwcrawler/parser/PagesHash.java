@@ -0,0 +1,34 @@
+package org.kwcrawler.parser;
+
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/// CRC32C of the contents of the pages of a register, with the size of every page in the upper half.
+///
+/// Pages are added in the order of [org.kwcrawler.structure.Chapter#all], either whole as they were read
+/// for parsing, or in parts followed by [#endPage].
+public final class PagesHash {
+    private final CRC32C crc = new CRC32C();
+    private long sizes = 1;
+
+    public void add(byte[] page) {
+        crc.update(page);
+        endPage(page.length);
+    }
+
+    public void update(ByteBuffer part) {
+        crc.update(part);
+    }
+
+    /// Ends a page added in parts with [#update]
+    ///
+    /// @param size size of the page, -1 for a missing page
+    public void endPage(long size) {
+        sizes = sizes * 31 + size;
+    }
+
+    public long get() {
+        return (sizes << 32) ^ crc.getValue();
+    }
+}
@@ -2,10 +2,10 @@ package org.kwcrawler.parser;
 
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import org.jsoup.nodes.Element;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public record ParsedRegister(
@@ -15,29 +15,40 @@ public record ParsedRegister(
         String title,
         List<Section> sections
     ){
+        /// @param index lookups of the entries by their keys, made for the entries when `null`
         public record Section(
             String title,
             List<Entry> entries,
-
-            @JsonIgnore
-            Element element
+            @JsonIgnore SectionIndex index
         ){
             public record Entry(
                     RowType rowType,
                     List<String> keys,
                     Value value
-            ) {}
+            ) {
+                public Entry {
+                    // keys repeat across all registers, they are kept once in the key table
+                    keys = keys == null ? null : Keys.of(keys);
+                }
+            }
 
-            public ValueHistory getIndexedValue(int index, String key) {
-                var indexString = index + ".";
+            public Section {
+                if (index == null) {
+                    index = new SectionIndex(entries);
+                } else if (!index.isOf(entries)) {
+                    throw new IllegalArgumentException("Index of other entries than those of section " + title);
+                }
+            }
 
-                var results = new ArrayList<Value>();
+            public Section(String title, List<Entry> entries) {
+                this(title, entries, null);
+            }
 
+            public ValueHistory getIndexedValue(int index, String key) {
+                var results = new ArrayList<Value>();
 
-                for (var entry : entries) {
+                for (var entry : index().byFirstTwoKeys(index + ".", key)) {
                     if (entry.keys().size() < 3
-                            || !entry.keys().getFirst().equals(indexString)
-                            || !entry.keys().get(1).equals(key)
                             || entry.value() == null
                             || entry.value.isEmpty()
                     ) {
@@ -47,17 +58,14 @@ public record ParsedRegister(
                     results.add(entry.value());
                 }
 
-                return new ValueHistory(results);
+                return ValueHistory.of(results);
             }
 
             public ValueHistory getIndexedValue(int index, String key1, String key2) {
-                var indexString = index + ".";
-
                 var results = new ArrayList<Value>();
-                for (var entry : entries) {
+
+                for (var entry : index().byFirstTwoKeys(index + ".", key1)) {
                     if (entry.keys().size() < 4
-                            || !entry.keys().getFirst().equals(indexString)
-                            || !entry.keys().get(1).equals(key1)
                             || !entry.keys().get(2).equals(key2)
                             || entry.value() == null
                             || entry.value.isEmpty()
@@ -67,15 +75,14 @@ public record ParsedRegister(
 
                     results.add(entry.value());
                 }
-                return new ValueHistory(results);
+                return ValueHistory.of(results);
             }
 
             public ValueHistory getValue(String key) {
                 var results = new ArrayList<Value>();
 
-                for (var entry : entries) {
+                for (var entry : index().byFirstKey(key)) {
                     if (entry.keys().size() < 2
-                            || !entry.keys().getFirst().equals(key)
                             || entry.value() == null
                             || entry.value.isEmpty()
                     ) {
@@ -85,22 +92,27 @@ public record ParsedRegister(
                     results.add(entry.value());
                 }
 
-                return new ValueHistory(results);
+                return ValueHistory.of(results);
             }
 
             public String getChangeValue(int index, String[] keys) {
-                var indexString = Integer.toString(index);
                 var keyList = List.of(keys);
 
-                return entries.stream()
+                return index().byFirstTwoKeys(Integer.toString(index), "1.").stream()
                         .filter(entry -> entry.keys().size() >= 3
-                                && entry.keys().getFirst().equals(indexString)
-                                && entry.keys().get(1).equals("1.")
                                 && keyList.contains(entry.keys().get(2))
                                 && !entry.value().isEmpty())
                         .map(entry -> entry.value().value())
                         .collect(Collectors.joining(", "));
             }
+
+            /// Names of the fields filled in the first document of the change, which tell the kind of the document
+            public Set<String> getChangeFields(int index) {
+                return index().byFirstTwoKeys(Integer.toString(index), "1.").stream()
+                        .filter(entry -> entry.keys().size() >= 3 && !entry.value().isEmpty())
+                        .map(entry -> entry.keys().get(2))
+                        .collect(Collectors.toSet());
+            }
         }
     }
 }
@@ -0,0 +1,328 @@
+package org.kwcrawler.parser;
+
+
+import org.kwcrawler.ParseException;
+import org.kwcrawler.parser.ParsedRegister.Page;
+import org.kwcrawler.parser.ParsedRegister.Page.Section;
+import org.kwcrawler.parser.ParsedRegister.Page.Section.Entry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/// Binary cache of parsed registers, one file per register.
+///
+/// The file starts with a format version and the size and modification time of every source page,
+/// a cached register is used only when both still match. The [PagesHash] of the pages follows them. Keys are written once per file, in a table
+/// referenced by entries, the same way as the in-memory [KeyTable].
+///
+/// Bump [#FORMAT_VERSION] whenever the parser or the parsed model changes what a page parses to.
+public class ParsedRegisterCache {
+    private static final int MAGIC = 0x4B575052; // "KWPR"
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int HAS_VALUE = 1;
+    private static final int HAS_ADDED_INDEX = 2;
+    private static final int HAS_REMOVED_INDEX = 4;
+
+    /// Size and modification time of every source page, `null` when a page is missing
+    public long[] fingerprint(List<Path> sources) {
+        var fingerprint = new long[sources.size() * 2];
+        for (int i = 0; i < sources.size(); i++) {
+            try {
+                var attributes = Files.readAttributes(sources.get(i), BasicFileAttributes.class);
+                fingerprint[i * 2] = attributes.size();
+                fingerprint[i * 2 + 1] = attributes.lastModifiedTime().toMillis();
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (IOException e) {
+                throw new ParseException("Cannot read attributes of " + sources.get(i), e);
+            }
+        }
+        return fingerprint;
+    }
+
+    /// @return cached register, or `null` when not cached, written by another version or stale
+    public RegisterParser.Parsed read(Path file, long[] fingerprint) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new ParseException("Cannot read parsed register from file", e);
+        }
+
+        try (var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            var count = in.readInt();
+            if (count != fingerprint.length) {
+                return null;
+            }
+            for (var expected : fingerprint) {
+                if (in.readLong() != expected) {
+                    return null;
+                }
+            }
+            var pagesHash = in.readLong();
+
+            // the whole file is decoded before any of its keys is added to the key table,
+            // so that a broken file leaves nothing behind
+            var keys = new String[readCount(in)];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = readString(in);
+            }
+
+            var pageCount = readCount(in);
+            var rawPages = new ArrayList<RawPage>(pageCount);
+            for (int p = 0; p < pageCount; p++) {
+                var title = readString(in);
+                var sections = new ArrayList<RawSection>();
+                for (int s = readCount(in); s > 0; s--) {
+                    sections.add(readSection(in, keys.length));
+                }
+                rawPages.add(new RawPage(title, sections));
+            }
+            if (in.available() != 0) {
+                return null;
+            }
+
+            var keyIds = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                keyIds[i] = KeyTable.id(keys[i]);
+            }
+            var pages = rawPages.stream()
+                    .map(page -> page.toPage(keyIds))
+                    .toList();
+            return new RegisterParser.Parsed(new ParsedRegister(pages), pagesHash);
+        } catch (IOException | RuntimeException e) {
+            // truncated or otherwise broken, parse again
+            return null;
+        }
+    }
+
+    public void write(Path file, long[] fingerprint, RegisterParser.Parsed parsed) {
+        var register = parsed.register();
+        var keys = new HashMap<String, Integer>();
+        var keyList = new ArrayList<String>();
+        for (var page : register.pages()) {
+            for (var section : page.sections()) {
+                for (var entry : section.entries()) {
+                    if (entry.keys() != null) {
+                        for (var key : entry.keys()) {
+                            if (keys.putIfAbsent(key, keyList.size()) == null) {
+                                keyList.add(key);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        var bytes = new ByteArrayOutputStream(4096);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(fingerprint.length);
+            for (var value : fingerprint) {
+                out.writeLong(value);
+            }
+            out.writeLong(parsed.pagesHash());
+
+            writeCount(out, keyList.size());
+            for (var key : keyList) {
+                writeString(out, key);
+            }
+
+            writeCount(out, register.pages().size());
+            for (var page : register.pages()) {
+                writeString(out, page.title());
+                writeCount(out, page.sections().size());
+                for (var section : page.sections()) {
+                    writeSection(out, section, keys);
+                }
+            }
+        } catch (IOException e) {
+            throw new ParseException("Cannot serialize parsed register", e);
+        }
+
+        // written next to the target and moved, so readers never see a partial file
+        try {
+            Files.createDirectories(file.getParent());
+            var temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ParseException("Cannot write parsed register to file", e);
+        }
+    }
+
+    private static void writeSection(DataOutputStream out, Section section, HashMap<String, Integer> keys) throws IOException {
+        writeString(out, section.title());
+        writeCount(out, section.entries().size());
+        for (var entry : section.entries()) {
+            out.writeByte(entry.rowType().ordinal());
+
+            // count + 1, so that 0 stands for no keys at all
+            if (entry.keys() == null) {
+                writeCount(out, 0);
+            } else {
+                writeCount(out, entry.keys().size() + 1);
+                for (var key : entry.keys()) {
+                    writeCount(out, keys.get(key));
+                }
+            }
+
+            var value = entry.value();
+            var flags = 0;
+            if (value != null) {
+                flags |= HAS_VALUE;
+                flags |= value.addedIndex() != null ? HAS_ADDED_INDEX : 0;
+                flags |= value.removedIndex() != null ? HAS_REMOVED_INDEX : 0;
+            }
+            out.writeByte(flags);
+            if (value != null) {
+                if (value.addedIndex() != null) {
+                    writeString(out, value.addedIndex());
+                }
+                if (value.removedIndex() != null) {
+                    writeString(out, value.removedIndex());
+                }
+                writeString(out, value.value());
+            }
+        }
+    }
+
+    // decoded parts of a file, with keys as positions in the key table of the file
+    private record RawPage(String title, List<RawSection> sections) {
+        Page toPage(int[] keyIds) {
+            return new Page(title, sections.stream().map(section -> section.toSection(keyIds)).toList());
+        }
+    }
+
+    private record RawSection(String title, List<RawEntry> entries) {
+        Section toSection(int[] keyIds) {
+            return new Section(title, entries.stream().map(entry -> entry.toEntry(keyIds)).toList());
+        }
+    }
+
+    // keys is null for entries without keys, value is null for entries without a value
+    private record RawEntry(RowType rowType, int[] keys, String addedIndex, String removedIndex, String value) {
+        Entry toEntry(int[] keyIds) {
+            Keys entryKeys = null;
+            if (keys != null) {
+                var ids = new int[keys.length];
+                for (int k = 0; k < ids.length; k++) {
+                    ids[k] = keyIds[keys[k]];
+                }
+                entryKeys = Keys.of(ids);
+            }
+            return new Entry(rowType, entryKeys, value == null ? null : new Value(addedIndex, removedIndex, value));
+        }
+    }
+
+    private static RawSection readSection(DataInputStream in, int keyCount) throws IOException {
+        var title = readString(in);
+        var entryCount = readCount(in);
+        var entries = new ArrayList<RawEntry>(entryCount);
+        var rowTypes = RowType.values();
+        for (int e = 0; e < entryCount; e++) {
+            var rowType = in.readUnsignedByte();
+            if (rowType >= rowTypes.length) {
+                throw new IOException("Invalid row type " + rowType);
+            }
+
+            int[] keys = null;
+            var keysCount = readCount(in);
+            if (keysCount > 0) {
+                keys = new int[keysCount - 1];
+                for (int k = 0; k < keys.length; k++) {
+                    keys[k] = readKey(in, keyCount);
+                }
+            }
+
+            String addedIndex = null;
+            String removedIndex = null;
+            String value = null;
+            var flags = in.readUnsignedByte();
+            if ((flags & HAS_VALUE) != 0) {
+                addedIndex = (flags & HAS_ADDED_INDEX) != 0 ? readString(in) : null;
+                removedIndex = (flags & HAS_REMOVED_INDEX) != 0 ? readString(in) : null;
+                value = readString(in);
+            }
+            entries.add(new RawEntry(rowTypes[rowType], keys, addedIndex, removedIndex, value));
+        }
+        return new RawSection(title, entries);
+    }
+
+    // variable length, 7 bits per byte
+    private static void writeCount(DataOutputStream out, int count) throws IOException {
+        while ((count & ~0x7F) != 0) {
+            out.writeByte((count & 0x7F) | 0x80);
+            count >>>= 7;
+        }
+        out.writeByte(count);
+    }
+
+    /// Count of things following it, each of them takes at least a byte, so a count larger than the rest
+    /// of the file is broken, and is not allocated
+    private static int readCount(DataInputStream in) throws IOException {
+        var count = readVarInt(in);
+        if (count > in.available()) {
+            throw new IOException("Count " + count + " beyond the end of the file");
+        }
+        return count;
+    }
+
+    // position in the key table of the file
+    private static int readKey(DataInputStream in, int keyCount) throws IOException {
+        var key = readVarInt(in);
+        if (key >= keyCount) {
+            throw new IOException("Key " + key + " beyond the key table of " + keyCount + " keys");
+        }
+        return key;
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        var count = 0;
+        var shift = 0;
+        int b;
+        do {
+            if (shift > 28) {
+                throw new IOException("Variable length int too long");
+            }
+            b = in.readUnsignedByte();
+            count |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if (count < 0) {
+            throw new IOException("Negative variable length int");
+        }
+        return count;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeCount(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var bytes = new byte[readCount(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,11 @@
+package org.kwcrawler.parser;
+
+enum RowType {
+    TITLE,
+    BREAK,
+    HEADER,
+    NO_ENTRY,
+    EMPTY_LINE,
+    MARK,
+    VALUE
+}
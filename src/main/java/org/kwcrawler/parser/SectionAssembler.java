@@ -0,0 +1,290 @@
+package org.kwcrawler.parser;
+
+
+import org.kwcrawler.ParseException;
+import org.kwcrawler.parser.ParsedRegister.Page.Section;
+import org.kwcrawler.parser.ParsedRegister.Page.Section.Entry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/// Turns rows of a single `table.tbOdpis` into a [Section], row by row.
+/// Shared by the DOM based [RegisterParser] and the [StreamingPageParser].
+///
+/// Cells spanning several rows are kept in arrays together with the count of rows they still cover,
+/// and put in front of the cells of every following row. The current row is assembled in a reused array,
+/// so that only accepted entries allocate. Call [#reset()] to reuse the assembler for another table.
+class SectionAssembler {
+    private static final int NONE = -1;
+
+    // column (sum of colspans) of the header cells, NONE when not present in the header row
+    private static class Headers {
+        private int changeColspan = NONE;
+        private int addColspan = NONE;
+        private int removeColspan = NONE;
+        private int valueColspan = NONE;
+
+        public void clear() {
+            changeColspan = NONE;
+            addColspan = NONE;
+            removeColspan = NONE;
+            valueColspan = NONE;
+        }
+    }
+
+    private enum Column {
+        CHANGE,
+        ADD,
+        REMOVE,
+        VALUE,
+        KEY
+    }
+
+    // cells with rowspan carried to following rows, and the count of rows they still cover
+    private Cell[] spanCells = new Cell[8];
+    private int[] spanRows = new int[8];
+    private int spanCount;
+
+    // carried cells followed by the cells of the current row
+    private Cell[] row = new Cell[16];
+    private int rowSize;
+
+    private String mainTitle = "";
+    private List<Entry> entries = new ArrayList<>();
+    private final Headers headers = new Headers();
+
+    void reset() {
+        Arrays.fill(spanCells, 0, spanCount, null);
+        Arrays.fill(row, 0, rowSize, null);
+        spanCount = 0;
+        rowSize = 0;
+        mainTitle = "";
+        entries = new ArrayList<>();
+        headers.clear();
+    }
+
+    void addRow(List<Cell> cells) {
+        addRow(cells.toArray(new Cell[0]), 0, cells.size());
+    }
+
+    void addRow(Cell[] cells, int from, int to) {
+        // build cells with rowspans and new cells
+        var newCount = to - from;
+        if (row.length < spanCount + newCount) {
+            row = Arrays.copyOf(row, Math.max(row.length * 2, spanCount + newCount));
+        }
+        if (rowSize > spanCount + newCount) {
+            Arrays.fill(row, spanCount + newCount, rowSize, null);
+        }
+        System.arraycopy(spanCells, 0, row, 0, spanCount);
+        System.arraycopy(cells, from, row, spanCount, newCount);
+        rowSize = spanCount + newCount;
+
+        // update rowspans, old ones first, then new cells which have rowspan attribute
+        var kept = 0;
+        for (int i = 0; i < spanCount; i++) {
+            if (spanRows[i] > 1) {
+                spanCells[kept] = spanCells[i];
+                spanRows[kept] = spanRows[i] - 1;
+                kept++;
+            }
+        }
+        Arrays.fill(spanCells, kept, spanCount, null);
+        spanCount = kept;
+        for (int i = from; i < to; i++) {
+            if (cells[i].rowspan() > 1) {
+                addSpan(cells[i]);
+            }
+        }
+
+        switch (detectRowType()) {
+            case TITLE -> {
+                var title = parseTitleRow();
+                if (mainTitle.isEmpty()) {
+                    mainTitle = title;
+                }
+            }
+            case BREAK -> checkBreakRow();
+            case HEADER -> parseHeaderRow();
+            case NO_ENTRY, EMPTY_LINE, MARK -> {} // ignore
+            case VALUE -> parseValues();
+        }
+    }
+
+    Section build() {
+        return new Section(mainTitle, entries);
+    }
+
+    private void addSpan(Cell cell) {
+        if (spanCount == spanCells.length) {
+            spanCells = Arrays.copyOf(spanCells, spanCount * 2);
+            spanRows = Arrays.copyOf(spanRows, spanCount * 2);
+        }
+        spanCells[spanCount] = cell;
+        spanRows[spanCount] = cell.rowspan() - 1;
+        spanCount++;
+    }
+
+    private String rowToString() {
+        return Arrays.asList(row).subList(0, rowSize).toString();
+    }
+
+    private RowType detectRowType() {
+        return detectRowType(row, 0, rowSize);
+    }
+
+    private static RowType detectRowType(Cell[] row, int from, int to) {
+        for (int i = from; i < to; i++) {
+            var className = row[i].className();
+            if (className.equals("csTytul") || className.equals("csTTytul")) {
+                return RowType.TITLE;
+            }
+            if (className.equals("csTBreak") || className.equals("csBreak")) {
+                return RowType.BREAK;
+            }
+            if (className.equals("csEmptyLine")) {
+                return RowType.EMPTY_LINE;
+            }
+            if (className.equals("csCDane")) {
+                return RowType.NO_ENTRY;
+            }
+            if (className.equals("csMark")) {
+                return RowType.MARK;
+            }
+            if (className.equals("csDane") || className.equals("csBDDane") || className.equals("csBDane")) {
+                return RowType.VALUE;
+            }
+        }
+        return RowType.HEADER;
+    }
+
+    /// Title the section gets when this is its first row, `null` when the row is not a title row
+    static String titleOf(Cell[] cells, int from, int to) {
+        if (detectRowType(cells, from, to) != RowType.TITLE) {
+            return null;
+        }
+        String title = null;
+        for (int i = from; i < to; i++) {
+            var className = cells[i].className();
+            if (className.equals("csTytul") || className.equals("csTTytul")) {
+                title = cells[i].text();
+            }
+        }
+        return title;
+    }
+
+    private String parseTitleRow() {
+        String title = null;
+
+        for (int i = 0; i < rowSize; i++) {
+            var className = row[i].className();
+            if (className.equals("csTytul") || className.equals("csTTytul")) {
+                title = row[i].text();
+            } else if (className.equals("csCOpis") || className.equals("csOpis")) {
+                // ignore
+            } else {
+                throw new RuntimeException("Invalid title row: " + rowToString());
+            }
+        }
+
+        if (title == null) {
+            throw new RuntimeException("Invalid title row: " + rowToString());
+        }
+
+        return title;
+    }
+
+    private void checkBreakRow() {
+        if (rowSize != 1) {
+            throw new RuntimeException("Invalid count of cells in break row: " + rowToString());
+        }
+        if (!row[0].className().equals("csTBreak") && !row[0].className().equals("csBreak")) {
+            throw new RuntimeException("Invalid cell in break row: " + rowToString());
+        }
+    }
+
+    private void parseHeaderRow() {
+        var colspan = 0;
+        for (int i = 0; i < rowSize; i++) {
+            var cell = row[i];
+            if (!cell.className().equals("csCOpis")
+                    && !cell.className().equals("csCMOpis")
+                    && !cell.className().equals("csMOpis")
+                    && !cell.className().equals("csOpis")) {
+                throw new ParseException("Invalid header row cell: " + cell + " in row: " + rowToString());
+            }
+
+            switch (cell.text()) {
+                case "Indeks zmiany" -> headers.changeColspan = colspan;
+                case "Wpisu" -> headers.addColspan = colspan;
+                case "Wykr." -> headers.removeColspan = colspan;
+                case "Treść pola" -> headers.valueColspan = colspan;
+                default -> {}
+            }
+
+            colspan += cell.colspan();
+        }
+    }
+
+    private Column column(int colspan) {
+        if (colspan == headers.changeColspan) {
+            return Column.CHANGE;
+        } else if (colspan == headers.addColspan) {
+            return Column.ADD;
+        } else if (colspan == headers.removeColspan) {
+            return Column.REMOVE;
+        } else if (headers.valueColspan != NONE && colspan >= headers.valueColspan) {
+            return Column.VALUE;
+        }
+        return Column.KEY;
+    }
+
+    private String parseIndex(String index) {
+        if (index == null || index.isEmpty() || index.equals("---")) {
+            return null;
+        }
+        return index;
+    }
+
+    private void parseValues() {
+        var colspan = 0;
+        String addIndex = null;
+        String removeIndex = null;
+        String value = null;
+        var keyCount = 0;
+
+        for (int i = 0; i < rowSize; i++) {
+            var cell = row[i];
+            switch (column(colspan)) {
+                case CHANGE, ADD -> addIndex = parseIndex(cell.text());
+                case REMOVE -> removeIndex = parseIndex(cell.text());
+                case VALUE -> value = value == null ? cell.text() : value + " " + cell.text();
+                case KEY -> keyCount++;
+            }
+            colspan += cell.colspan();
+        }
+
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        if ((value.equals("---") || value.equals("/ /"))
+                && addIndex == null
+                && removeIndex == null) {
+            return;
+        }
+
+        // keys are collected only for rows which make an entry
+        var keys = new int[keyCount];
+        var key = 0;
+        colspan = 0;
+        for (int i = 0; i < rowSize; i++) {
+            if (column(colspan) == Column.KEY) {
+                keys[key++] = KeyTable.id(row[i].text());
+            }
+            colspan += row[i].colspan();
+        }
+
+        entries.add(new Entry(RowType.VALUE, Keys.of(keys), new Value(addIndex, removeIndex, value)));
+    }
+}
@@ -0,0 +1,162 @@
+package org.kwcrawler.parser;
+
+
+import org.kwcrawler.parser.ParsedRegister.Page.Section.Entry;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/// Entries of a section, grouped by their first key, and by their first two keys, using key IDs
+/// from the [KeyTable]. Groups are built once on the first lookup, so sections which are never queried
+/// don't pay for it.
+///
+/// Groups are sorted arrays of `id << 32 | position` longs, which are searched for the IDs of the keys.
+/// Entries with the same first key are a range of the array of first keys, the same range of the array of second keys
+/// holds their second keys, `0` for entries with a single key, so both keys are looked up without boxing.
+///
+/// The index is derived from the entries, which sections compare already, so all indexes are equal.
+public final class SectionIndex {
+    private static final long POSITION_MASK = 0xFFFFFFFFL;
+
+    private final List<Entry> entries;
+    private volatile Groups groups;
+
+    private record Groups(
+            long[] byFirstKey,
+            long[] bySecondKey
+    ) {}
+
+    SectionIndex(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    boolean isOf(List<Entry> entries) {
+        return this.entries == entries;
+    }
+
+    /// Entries with at least one key, the first being `key`, in section order
+    List<Entry> byFirstKey(String key) {
+        var id = KeyTable.find(key);
+        if (id < 0) {
+            return List.of();
+        }
+        var byFirstKey = groups().byFirstKey();
+        var from = lowerBound(byFirstKey, 0, byFirstKey.length, id);
+        var to = lowerBound(byFirstKey, from, byFirstKey.length, id + 1L);
+        return entries(byFirstKey, from, to);
+    }
+
+    /// Entries with at least two keys, the first two being `key1` and `key2`, in section order
+    List<Entry> byFirstTwoKeys(String key1, String key2) {
+        var id1 = KeyTable.find(key1);
+        var id2 = KeyTable.find(key2);
+        if (id1 < 0 || id2 < 0) {
+            return List.of();
+        }
+        var groups = groups();
+        var byFirstKey = groups.byFirstKey();
+        var from = lowerBound(byFirstKey, 0, byFirstKey.length, id1);
+        var to = lowerBound(byFirstKey, from, byFirstKey.length, id1 + 1L);
+        var bySecondKey = groups.bySecondKey();
+        var secondFrom = lowerBound(bySecondKey, from, to, id2 + 1L);
+        var secondTo = lowerBound(bySecondKey, secondFrom, to, id2 + 2L);
+        return entries(bySecondKey, secondFrom, secondTo);
+    }
+
+    private List<Entry> entries(long[] group, int from, int to) {
+        if (from == to) {
+            return List.of();
+        }
+        return new EntryRange(entries, group, from, to);
+    }
+
+    private Groups groups() {
+        var groups = this.groups;
+        if (groups == null) {
+            groups = build();
+            this.groups = groups;
+        }
+        return groups;
+    }
+
+    private Groups build() {
+        if (entries == null) {
+            return new Groups(new long[0], new long[0]);
+        }
+        var byFirstKey = new long[entries.size()];
+        var length = 0;
+        for (var position = 0; position < entries.size(); position++) {
+            var keys = entries.get(position).keys();
+            if (keys != null && !keys.isEmpty()) {
+                byFirstKey[length++] = (long) Keys.of(keys).id(0) << 32 | position;
+            }
+        }
+        byFirstKey = Arrays.copyOf(byFirstKey, length);
+        Arrays.sort(byFirstKey);
+
+        var bySecondKey = new long[length];
+        var from = 0;
+        for (var i = 0; i < length; i++) {
+            var position = (int) (byFirstKey[i] & POSITION_MASK);
+            var keys = Keys.of(entries.get(position).keys());
+            var secondId = keys.size() >= 2 ? keys.id(1) + 1L : 0L;
+            bySecondKey[i] = secondId << 32 | position;
+            if (i + 1 == length || byFirstKey[i + 1] >>> 32 != byFirstKey[i] >>> 32) {
+                Arrays.sort(bySecondKey, from, i + 1);
+                from = i + 1;
+            }
+        }
+        return new Groups(byFirstKey, bySecondKey);
+    }
+
+    /// Index of the first element of `group` between `from` and `to` with an ID of at least `id`
+    private static int lowerBound(long[] group, int from, int to, long id) {
+        var index = Arrays.binarySearch(group, from, to, id << 32);
+        // found only for the entry at position 0, which is the first of its group then
+        return index < 0 ? -index - 1 : index;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SectionIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SectionIndex";
+    }
+
+    /// Entries at the positions of a range of a group
+    private static final class EntryRange extends AbstractList<Entry> implements RandomAccess {
+        private final List<Entry> entries;
+        private final long[] group;
+        private final int from;
+        private final int to;
+
+        EntryRange(List<Entry> entries, long[] group, int from, int to) {
+            this.entries = entries;
+            this.group = group;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Entry get(int index) {
+            Objects.checkIndex(index, size());
+            return entries.get((int) (group[from + index] & POSITION_MASK));
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
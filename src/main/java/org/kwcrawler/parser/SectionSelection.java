@@ -0,0 +1,42 @@
+package org.kwcrawler.parser;
+
+
+import org.kwcrawler.structure.Chapter;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/// Chapters and sections a caller of [RegisterParser] is interested in.
+/// Pages of other chapters are not read at all, tables of other sections are skipped while scanning a page.
+///
+/// @param chapters chapters to read
+/// @param sections titles of sections to parse, `null` for all sections of the chapters
+public record SectionSelection(
+        Set<Chapter> chapters,
+        Set<String> sections
+) {
+    public static final SectionSelection ALL = new SectionSelection(EnumSet.allOf(Chapter.class), null);
+
+    public SectionSelection {
+        chapters = Set.copyOf(chapters);
+        sections = sections == null ? null : Set.copyOf(sections);
+    }
+
+    public boolean isAll() {
+        return sections == null && chapters.containsAll(Set.of(Chapter.all()));
+    }
+
+    public boolean contains(Chapter chapter) {
+        return chapters.contains(chapter);
+    }
+
+    public boolean contains(String sectionTitle) {
+        return sections == null || sections.contains(sectionTitle);
+    }
+
+    /// Whether everything selected by `other` is selected by this selection too
+    public boolean covers(SectionSelection other) {
+        return chapters.containsAll(other.chapters)
+                && (sections == null || other.sections != null && sections.containsAll(other.sections));
+    }
+}
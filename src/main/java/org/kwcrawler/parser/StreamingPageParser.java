@@ -0,0 +1,89 @@
+package org.kwcrawler.parser;
+
+
+import org.jsoup.helper.DataUtil;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+import org.kwcrawler.ParseException;
+import org.kwcrawler.parser.ParsedRegister.Page;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/// Register page parser on jsoup's [StreamParser], which doesn't keep the whole DOM of the page.
+///
+/// Every `table.tbOdpis` inside `div#contentDzialu` is handed to a [PageAssembler] as soon as it is complete,
+/// and removed from the document then, so only the open table is kept. Tables are parsed by jsoup
+/// and assembled the same way as by [RegisterParser#parse(Path)], so the result is the same [Page].
+///
+/// A register table nested in another one would come before the outer one, unlike in the DOM,
+/// so such markup yields `null`, callers should fall back to the DOM parser then.
+public class StreamingPageParser {
+    private static final Evaluator REGISTER_TABLES = QueryParser.parse("div#contentDzialu table.tbOdpis");
+    private static final Evaluator REGISTER_TABLE = QueryParser.parse("table.tbOdpis");
+    // jsoup looks for the charset in a meta tag only in the first 5 KiB of a page
+    private static final int CHARSET_PREFIX = 5 * 1024;
+
+    public Page parse(Path file) {
+        return parse(file, SectionSelection.ALL);
+    }
+
+    public Page parse(Path file, SectionSelection selection) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new ParseException("File not found", e);
+        }
+        return parse(bytes, selection);
+    }
+
+    /// @param content bytes of a page file, decoded in the charset jsoup detects for the file
+    /// @return parsed page, or `null` when the page has to be parsed by the DOM parser
+    public Page parse(byte[] content, SectionSelection selection) {
+        return parse(decode(content), selection);
+    }
+
+    public Page parse(String html) {
+        return parse(html, SectionSelection.ALL);
+    }
+
+    /// @return parsed page, or `null` when the page has to be parsed by the DOM parser
+    public Page parse(String html, SectionSelection selection) {
+        var page = new PageAssembler(selection);
+        try (var parser = new StreamParser(Parser.htmlParser()).parse(html, "")) {
+            Element table;
+            while ((table = parser.selectNext(REGISTER_TABLES)) != null) {
+                if (table.parent() != null && table.parent().closest(REGISTER_TABLE) != null) {
+                    return null;
+                }
+                page.addTable(table);
+                table.remove();
+            }
+        } catch (IOException e) {
+            throw new ParseException("Cannot parse page", e);
+        }
+        return page.build();
+    }
+
+    /// Decodes the page the way jsoup decodes files: a byte order mark, a charset of a meta tag, or UTF-8
+    private static String decode(byte[] content) {
+        Charset charset;
+        try {
+            // jsoup detects the charset while loading a document, only the part it looks at is loaded
+            var prefix = new ByteArrayInputStream(content, 0, Math.min(content.length, CHARSET_PREFIX));
+            charset = DataUtil.load(prefix, null, "").charset();
+        } catch (IOException e) {
+            throw new ParseException("Cannot detect charset of page", e);
+        }
+        var html = new String(content, charset);
+        // jsoup drops the byte order mark
+        return !html.isEmpty() && html.charAt(0) == '\uFEFF' ? html.substring(1) : html;
+    }
+}
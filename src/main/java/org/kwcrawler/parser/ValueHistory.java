@@ -1,14 +1,59 @@
 package org.kwcrawler.parser;
 
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
-public record ValueHistory(
-        List<Value> values
-) {
+/// All values a field had, with the current ones (not removed) computed once up front.
+/// Most fields have a single current value, which is then returned without any allocation.
+///
+/// Serialized as the plain list of values.
+public final class ValueHistory {
+    private static final ValueHistory EMPTY = new ValueHistory(List.of());
+
+    private final List<Value> values;
+    private final List<String> currentValues;
+    private final boolean currentNonEmpty;
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public ValueHistory(List<Value> values) {
+        this.values = List.copyOf(values);
+
+        List<String> current = List.of();
+        var nonEmpty = false;
+        for (var value : this.values) {
+            if (value.removedIndex() != null) {
+                continue;
+            }
+            nonEmpty |= !value.isEmpty();
+            if (current.isEmpty()) {
+                current = List.of(value.value());
+            } else {
+                if (current.size() == 1) {
+                    current = new ArrayList<>(current);
+                }
+                current.add(value.value());
+            }
+        }
+        this.currentValues = current.size() > 1 ? Collections.unmodifiableList(current) : current;
+        this.currentNonEmpty = nonEmpty;
+    }
+
+    /// Same as the constructor, but all empty histories are the same instance
+    public static ValueHistory of(List<Value> values) {
+        return values.isEmpty() ? EMPTY : new ValueHistory(values);
+    }
+
+    @JsonValue
+    public List<Value> values() {
+        return values;
+    }
+
     public String toString() {
         return values().stream()
                 .filter(value -> !value.isEmpty())
@@ -16,53 +61,52 @@ public record ValueHistory(
                 .collect(Collectors.joining(", "));
     }
 
-    @JsonIgnore
     public String toStringOnlyCurrent() {
-        return values().stream()
-                .filter(value -> value.removedIndex() == null)
-                .map(Value::value)
-                .collect(Collectors.joining(", "));
+        return switch (currentValues.size()) {
+            case 0 -> "";
+            case 1 -> currentValues.getFirst();
+            default -> String.join(", ", currentValues);
+        };
     }
 
-    @JsonIgnore
     public boolean isEmpty() {
-        return values().isEmpty();
+        return values.isEmpty();
     }
 
-    @JsonIgnore
     public boolean isCurrentNonEmpty() {
-        return values().stream()
-                .filter(value -> value.removedIndex() == null)
-                .anyMatch(value -> !value.isEmpty());
+        return currentNonEmpty;
     }
 
-    @JsonIgnore
     public String currentValue() {
-        var values = currentValues();
-        if (values.isEmpty()) {
+        if (currentValues.isEmpty()) {
             return null;
         }
-        if (values.size() != 1) {
-            throw new IllegalStateException("Multiple values in ValueHistory.getCurrentValue(): " + values);
+        if (currentValues.size() != 1) {
+            throw new IllegalStateException("Multiple values in ValueHistory.getCurrentValue(): " + currentValues);
             //System.out.println("Multiple values in ValueHistory.getCurrentValue(): " + values);
         }
 
-        return values.getFirst();
+        return currentValues.getFirst();
     }
 
     // mainly for '4. Położenie' field when parcel spans multiple locations
-    @JsonIgnore
     public List<String> currentValues() {
-        return values().stream()
-                .filter(value -> value.removedIndex() == null)
-                .map(Value::value)
-                .collect(Collectors.toList());
+        return currentValues;
     }
 
-    @JsonIgnore
     public ValueHistory removeSpacesFromValues() {
-        return new ValueHistory(values().stream()
+        return of(values().stream()
                 .map(Value::removeSpaces)
-                .collect(Collectors.toList()));
+                .toList());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ValueHistory other && values.equals(other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode();
     }
 }
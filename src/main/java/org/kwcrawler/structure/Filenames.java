@@ -3,6 +3,7 @@ package org.kwcrawler.structure;
 
 import org.kwcrawler.CourtCode;
 import org.kwcrawler.KWNumber;
+import org.kwcrawler.Shard;
 
 import java.net.URI;
 import java.nio.file.Path;
@@ -14,6 +15,10 @@ public class Filenames {
     public static final String DATA_DIR = "data";
     public static final String PARSED_DIR = "parsed";
     public static final String ANALYSED_DIR = "analysed";
+    public static final String INDEX_DIR = "index";
+    public static final String INDEX_SHARDS_DIR = "index-shards";
+    public static final String OWNERS_DIR = "owners";
+    public static final String PARCELS_DIR = "parcels";
 
     public static Path getCourtDir(CourtCode courtCode) {
         return Paths.get(KW_DIR + "/" + courtCode);
@@ -50,7 +55,7 @@ public class Filenames {
         var filename = path.getFileName().toString();
         var parts = filename.split("_");
 
-        var courtCode = new CourtCode(parts[0]);
+        var courtCode = CourtCode.of(parts[0]);
         var ledgerNumber = Integer.parseInt(parts[1]);
         var controlDigit = Byte.parseByte(parts[2].split("-")[0]);
 
@@ -61,6 +66,35 @@ public class Filenames {
         return Paths.get(DATA_DIR + "/" + courtCode);
     }
 
+    public static Path getTerytCountsDir(CourtCode courtCode) {
+        return getDataDir(courtCode).resolve("teryt-counts");
+    }
+
+    public static Path getTerytCountsFile(CourtCode courtCode, Shard shard) {
+        return getTerytCountsDir(courtCode).resolve(shard.getName() + ".csv");
+    }
+
+    /// Index of registers of the court, each court has its own
+    public static Path getIndexDir(CourtCode courtCode) {
+        return Paths.get(INDEX_DIR + "/" + courtCode);
+    }
+
+    public static Path getIndexShardsDir(CourtCode courtCode) {
+        return Paths.get(INDEX_SHARDS_DIR + "/" + courtCode);
+    }
+
+    public static Path getIndexShardDir(CourtCode courtCode, Shard shard) {
+        return getIndexShardsDir(courtCode).resolve(shard.getName());
+    }
+
+    public static Path getOwnersDir(CourtCode courtCode) {
+        return Paths.get(OWNERS_DIR + "/" + courtCode);
+    }
+
+    public static Path getParcelsDir(CourtCode courtCode) {
+        return Paths.get(PARCELS_DIR + "/" + courtCode);
+    }
+
     public static Path getParsedDir(CourtCode courtCode) {
         return Paths.get(PARSED_DIR + "/" + courtCode);
     }
@@ -73,11 +107,11 @@ public class Filenames {
         return getParsedDir(kwNumber.getCourtCode()).resolve(getJsonFilename(kwNumber));
     }
 
-    private static String getJsonFilename(KWNumber kwNumber) {
-        return kwNumber.toCode().replace("/", "_") + ".json";
+    public static Path getParsedCacheFileName(KWNumber kwNumber) {
+        return getParsedDir(kwNumber.getCourtCode()).resolve(kwNumber.toCode().replace("/", "_") + ".bin");
     }
 
-    public static Path getAnalysedFilename(KWNumber kwNumber) {
-        return getAnalysedDir(kwNumber.getCourtCode()).resolve(getJsonFilename(kwNumber));
+    private static String getJsonFilename(KWNumber kwNumber) {
+        return kwNumber.toCode().replace("/", "_") + ".json";
     }
 }
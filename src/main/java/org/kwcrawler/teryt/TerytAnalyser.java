@@ -1,26 +1,37 @@
 package org.kwcrawler.teryt;
 
 
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import org.kwcrawler.CourtCode;
 import org.kwcrawler.KWNumber;
 import org.kwcrawler.analyser.AnalysedRegister;
 import org.kwcrawler.analyser.AnalysedRegister.Location;
 import org.kwcrawler.analyser.AnalysedRegister.Parcel;
+import org.kwcrawler.analyser.RegisterAnalyser;
+import org.kwcrawler.parser.SectionSelection;
 import org.kwcrawler.parser.ValueHistory;
+import org.kwcrawler.structure.Chapter;
 import org.kwcrawler.structure.Filenames;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class TerytAnalyser {
+    /// Sections [#learn] needs, all of them in chapter I-O
+    public static final SectionSelection SECTIONS = new SectionSelection(
+            Set.of(Chapter.CHAPTER_I_O),
+            Set.of(RegisterAnalyser.LOCATIONS, RegisterAnalyser.PARCELS)
+    );
 
     private final ConcurrentHashMap<String, String> districtByCode = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, List<RegionTeryt>> regionByName = new ConcurrentHashMap<>();
@@ -179,6 +190,94 @@ public class TerytAnalyser {
 
     }
 
+    /// Writes raw learning counts, so that results of several sharded runs can be merged with [#readCounts(Path)]
+    public void writeCounts(Path outputFile) {
+        var mapper = new CsvMapper();
+        var objectWriter = mapper.writerFor(TerytCount.class).with(TerytCount.schema);
+
+        try {
+            Files.createDirectories(outputFile.getParent());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        try (var stream = Files.newOutputStream(outputFile);
+             var writer = objectWriter.writeValues(stream)) {
+            for (var entry : regionByName.entrySet()) {
+                for (var region : entry.getValue()) {
+                    writer.write(new TerytCount(TerytCount.REGION, entry.getKey(), region.toCode(), region.getVerificationCount()));
+                }
+            }
+            for (var entry : regionByCity.entrySet()) {
+                for (var region : entry.getValue()) {
+                    writer.write(new TerytCount(TerytCount.CITY, entry.getKey(), region.toCode(), region.getVerificationCount()));
+                }
+            }
+            for (var entry : communeByCityName.entrySet()) {
+                for (var commune : entry.getValue()) {
+                    writer.write(new TerytCount(TerytCount.COMMUNE, entry.getKey(), commune.toString(), commune.getVerificationCount()));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /// Adds learning counts written by [#writeCounts(Path)] to the already learned ones
+    public void readCounts(Path inputFile) {
+        var mapper = new CsvMapper();
+        var objectReader = mapper.readerFor(TerytCount.class).with(TerytCount.schema);
+
+        try (var reader = Files.newBufferedReader(inputFile)) {
+            MappingIterator<TerytCount> iterator = objectReader.readValues(reader);
+            while (iterator.hasNext()) {
+                var count = iterator.next();
+                switch (count.kind()) {
+                    case TerytCount.REGION -> mergeRegion(regionByName, count.name(), RegionTeryt.fromCode(count.teryt()), count.count());
+                    case TerytCount.CITY -> mergeRegion(regionByCity, count.name(), RegionTeryt.fromCode(count.teryt()), count.count());
+                    case TerytCount.COMMUNE -> mergeCommune(count.name(), CommuneTeryt.fromCode(count.teryt()), count.count());
+                    default -> throw new RuntimeException("Invalid TERYT count kind: " + count.kind());
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read " + inputFile, e);
+        }
+    }
+
+    private static void mergeRegion(ConcurrentHashMap<String, List<RegionTeryt>> regions, String name, RegionTeryt region, int count) {
+        if (region == null) {
+            return;
+        }
+
+        var regionList = regions.computeIfAbsent(name, key -> Collections.synchronizedList(new ArrayList<>()));
+        synchronized (regionList) {
+            var existingRegion = regionList.stream()
+                    .filter(existing -> existing.equals(region))
+                    .findAny();
+            if (existingRegion.isEmpty()) {
+                region.verificationCount().set(count);
+                regionList.add(region);
+            } else {
+                existingRegion.get().verificationCount().addAndGet(count);
+            }
+        }
+    }
+
+    private void mergeCommune(String cityName, CommuneTeryt commune, int count) {
+        var communeList = communeByCityName.computeIfAbsent(cityName, key -> Collections.synchronizedList(new ArrayList<>()));
+        synchronized (communeList) {
+            var existingCommune = communeList.stream()
+                    .filter(existing -> existing.equals(commune))
+                    .findAny();
+            if (existingCommune.isEmpty()) {
+                commune.verificationCount().set(count);
+                communeList.add(commune);
+            } else {
+                existingCommune.get().verificationCount().addAndGet(count);
+            }
+        }
+    }
+
     public void writeMappings(CourtCode courtCode) {
         writeRegionMapping(courtCode);
         writeCityMapping(courtCode);
@@ -0,0 +1,25 @@
+package org.kwcrawler.teryt;
+
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+/// Raw learning count of a single name to TERYT code association, written by sharded `generate-teryt` runs
+public record TerytCount(
+        @JsonProperty("kind") String kind,
+        @JsonProperty("name") String name,
+        @JsonProperty("teryt") String teryt,
+        @JsonProperty("count") int count
+) {
+    public static final String REGION = "region";
+    public static final String CITY = "city";
+    public static final String COMMUNE = "commune";
+
+    public static CsvSchema schema = CsvSchema.builder()
+            .addColumn("kind")
+            .addColumn("name")
+            .addColumn("teryt")
+            .addNumberColumn("count")
+            .setColumnSeparator('|')
+            .build();
+}
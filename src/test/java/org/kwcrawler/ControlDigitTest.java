@@ -23,4 +23,19 @@ public class ControlDigitTest {
         // then
         assertThat(controlDigit).isEqualTo(expectedControlDigit);
     }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '/', textBlock = """
+        GL1G/52948/3
+        GL1G/140264/8
+        WA1M/1/1
+        GL1G/0/7""")
+    public void shouldCalculateControlDigitOfLedgerNumber(String courtCode, int ledgerNumber, byte expectedControlDigit) {
+        // when
+        var controlDigit = ControlDigit.calculate(CourtCode.of(courtCode), ledgerNumber);
+
+        // then
+        assertThat(controlDigit).isEqualTo(expectedControlDigit);
+        assertThat(controlDigit).isEqualTo(ControlDigit.calculate(courtCode, String.format("%08d", ledgerNumber)));
+    }
 }
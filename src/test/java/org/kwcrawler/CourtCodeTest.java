@@ -0,0 +1,91 @@
+package org.kwcrawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CourtCodeTest {
+    private static final String CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    @Test
+    public void shouldResolveEveryCourtCodeToItsCanonicalInstance() throws IOException {
+        // given
+        String[] lines;
+        try (var inputStream = Objects.requireNonNull(CourtCode.class.getClassLoader().getResourceAsStream("court-codes.txt"))) {
+            lines = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8).lines().map(String::strip).filter(line -> !line.isEmpty()).toArray(String[]::new);
+        }
+
+        for (var line : lines) {
+            // when
+            var courtCode = CourtCode.of(line);
+
+            // then
+            assertThat(courtCode.getCode()).isEqualTo(line);
+            assertThat(CourtCode.of(line)).isSameAs(courtCode);
+            assertThat(CourtCode.ofPacked(pack(line))).isSameAs(courtCode);
+            assertThat(CourtCode.values().get(courtCode.ordinal())).isSameAs(courtCode);
+            assertThat(CourtCode.isValid(line)).isTrue();
+        }
+    }
+
+    @Test
+    public void shouldNumberCourtCodesDenselyInCodeOrder() {
+        // when
+        var values = CourtCode.values();
+
+        // then
+        assertThat(values).hasSize(CourtCode.count());
+        for (var i = 0; i < values.size(); i++) {
+            assertThat(values.get(i).ordinal()).isEqualTo(i);
+            if (i > 0) {
+                assertThat(values.get(i).getCode()).isGreaterThan(values.get(i - 1).getCode());
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotResolveCodesThatAreNotCourtCodes() {
+        // about one in 20 of all codes of 4 letters or digits falls into a slot of a court code
+        var code = new char[4];
+        var checked = 0;
+        for (var a = 0; a < CHARACTERS.length(); a++) {
+            for (var b = 0; b < CHARACTERS.length(); b++) {
+                for (var c = 0; c < CHARACTERS.length(); c++) {
+                    for (var d = 0; d < CHARACTERS.length(); d++) {
+                        code[0] = CHARACTERS.charAt(a);
+                        code[1] = CHARACTERS.charAt(b);
+                        code[2] = CHARACTERS.charAt(c);
+                        code[3] = CHARACTERS.charAt(d);
+                        var string = new String(code);
+                        var courtCode = CourtCode.ofPacked(pack(string));
+                        if (courtCode != null) {
+                            assertThat(courtCode.getCode()).isEqualTo(string);
+                        } else {
+                            assertThat(CourtCode.isValid(string)).isFalse();
+                            checked++;
+                        }
+                    }
+                }
+            }
+        }
+
+        assertThat(checked).isEqualTo(CHARACTERS.length() * CHARACTERS.length() * CHARACTERS.length() * CHARACTERS.length() - CourtCode.count());
+        assertThat(CourtCode.ofPacked(0)).isNull();
+        assertThat(CourtCode.isValid("gl1g")).isFalse();
+        assertThat(CourtCode.isValid("GL1G ")).isFalse();
+        assertThatThrownBy(() -> CourtCode.of("XXXX")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static int pack(String code) {
+        var packedCode = 0;
+        for (var i = 0; i < code.length(); i++) {
+            packedCode = packedCode << 8 | code.charAt(i);
+        }
+        return packedCode;
+    }
+}
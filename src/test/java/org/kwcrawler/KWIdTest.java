@@ -0,0 +1,81 @@
+package org.kwcrawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class KWIdTest {
+    @Test
+    public void shouldPackAndUnpackKwNumber() {
+        var kwNumber = new KWNumber("GL1G/00052948/3");
+
+        // when
+        var id = kwNumber.toId();
+
+        // then
+        assertThat(id).isEqualTo(KWId.parse("GL1G/00052948/3")).isEqualTo(KWId.of(CourtCode.of("GL1G"), 52948));
+        assertThat(KWId.toCode(id)).isEqualTo("GL1G/00052948/3");
+        assertThat(KWId.ledgerNumber(id)).isEqualTo(52948);
+        assertThat(KWId.controlDigit(id)).isEqualTo((byte) 3);
+        assertThat(KWNumber.fromId(id)).isEqualTo(kwNumber);
+        assertThat(kwNumber.getLedgerNumber()).isEqualTo("00052948");
+        assertThatThrownBy(() -> KWId.parse("GL1G/00052948/4")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldHashEqualKwNumbersEqually() {
+        // when
+        var kwNumbers = new HashSet<>(List.of(new KWNumber("GL1G/00052948/3"), new KWNumber(CourtCode.of("GL1G"), 52948)));
+
+        // then
+        assertThat(kwNumbers).hasSize(1);
+    }
+
+    @Test
+    public void shouldKeepIdsOfCourtsInSet() {
+        var set = new KWIdSet();
+        var ids = List.of(
+                KWId.of(CourtCode.of("GL1G"), 99_999_999),
+                KWId.of(CourtCode.of("CZ1C"), 2),
+                KWId.of(CourtCode.of("GL1G"), 0),
+                KWId.of(CourtCode.of("CZ1C"), 70_000));
+
+        // when
+        ids.forEach(set::add);
+        set.add(ids.get(0));
+        set.remove(KWId.of(CourtCode.of("CZ1C"), 2));
+
+        // then
+        var inOrder = new ArrayList<Long>();
+        set.forEach(inOrder::add);
+        assertThat(inOrder).containsExactly(ids.get(3), ids.get(2), ids.get(0));
+        assertThat(set.size()).isEqualTo(3);
+        assertThat(set.contains(ids.get(2))).isTrue();
+        assertThat(set.contains(ids.get(1))).isFalse();
+    }
+
+    @Test
+    public void shouldMapIdsBeyondInitialCapacity() {
+        var map = new KWIdMap();
+        var courtCode = CourtCode.of("GL1G");
+        for (var ledgerNumber = 0; ledgerNumber < 10_000; ledgerNumber++) {
+            map.put(KWId.of(courtCode, ledgerNumber), ledgerNumber, -1);
+        }
+
+        // when
+        for (var ledgerNumber = 0; ledgerNumber < 10_000; ledgerNumber += 2) {
+            map.remove(KWId.of(courtCode, ledgerNumber), -1);
+        }
+
+        // then
+        assertThat(map.size()).isEqualTo(5_000);
+        for (var ledgerNumber = 0; ledgerNumber < 10_000; ledgerNumber++) {
+            assertThat(map.get(KWId.of(courtCode, ledgerNumber), -1)).isEqualTo(ledgerNumber % 2 == 0 ? -1 : ledgerNumber);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.kwcrawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShardTest {
+    @Test
+    public void shouldAssignEveryKwToExactlyOneShard() {
+        var courtCode = CourtCode.of("GL1G");
+        var shards = new Shard[16];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = Shard.parse((i + 1) + "/16", Shard.Space.LEDGER);
+        }
+
+        for (var kwNumber : KWNumber.kwNumbersInRange(courtCode, 1, 1000)) {
+            var matching = 0;
+            for (var shard : shards) {
+                if (shard.contains(kwNumber)) {
+                    matching++;
+                }
+            }
+            assertThat(matching).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void shouldKeepWholeCourtInOneShard() {
+        var shard = Shard.parse("2/3", Shard.Space.COURT);
+        var courtCode = CourtCode.of("GL1G");
+
+        var contained = KWNumber.kwNumbersInRange(courtCode, 1, 100).stream()
+                .map(shard::contains)
+                .distinct()
+                .toList();
+
+        assertThat(contained).containsExactly(shard.contains(courtCode));
+    }
+
+    @Test
+    public void shouldFindShardsOfOutputsOfOneRun() {
+        var outputs = List.of(Path.of("2of3.csv"), Path.of("1of3.csv"), Path.of("lock"), Path.of("3of3.tmp"));
+
+        // when
+        var shards = Shard.ofOutputs(outputs, ".csv", Shard.Space.LEDGER);
+
+        // then
+        assertThat(shards.keySet()).extracting(Shard::getName).containsExactly("1of3", "2of3");
+        assertThat(shards.get(new Shard(2, 3, Shard.Space.LEDGER))).isEqualTo(Path.of("2of3.csv"));
+        assertThatThrownBy(() -> Shard.ofOutputs(List.of(Path.of("1of8"), Path.of("1of16")), "", Shard.Space.LEDGER))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void shouldFindMissingShardsOfRun() {
+        var shards = Shard.ofOutputs(List.of(Path.of("1of4.csv"), Path.of("3of4.csv")), ".csv", Shard.Space.LEDGER);
+
+        // when
+        var missing = Shard.missing(shards.keySet());
+
+        // then
+        assertThat(missing).extracting(Shard::getName).containsExactly("2of4", "4of4");
+        assertThat(Shard.missing(Shard.ofOutputs(List.of(Path.of("2of2.csv"), Path.of("1of2.csv")), ".csv", Shard.Space.LEDGER).keySet())).isEmpty();
+        assertThat(Shard.missing(List.of())).isEmpty();
+    }
+
+    @Test
+    public void shouldTreatMissingSpecAsAll() {
+        assertThat(Shard.parse(null, Shard.Space.LEDGER).isAll()).isTrue();
+    }
+
+    @Test
+    public void shouldRejectInvalidSpec() {
+        assertThatThrownBy(() -> Shard.parse("0/16", Shard.Space.LEDGER)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Shard.parse("17/16", Shard.Space.LEDGER)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Shard.parse("3", Shard.Space.LEDGER)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
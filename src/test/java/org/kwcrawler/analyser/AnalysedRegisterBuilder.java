@@ -0,0 +1,114 @@
+package org.kwcrawler.analyser;
+
+import org.kwcrawler.analyser.AnalysedRegister.Apartment;
+import org.kwcrawler.analyser.AnalysedRegister.Area;
+import org.kwcrawler.analyser.AnalysedRegister.BasicInfo;
+import org.kwcrawler.analyser.AnalysedRegister.CommuneOwner;
+import org.kwcrawler.analyser.AnalysedRegister.LegalOwner;
+import org.kwcrawler.analyser.AnalysedRegister.Location;
+import org.kwcrawler.analyser.AnalysedRegister.MigrationComment;
+import org.kwcrawler.analyser.AnalysedRegister.Owner;
+import org.kwcrawler.analyser.AnalysedRegister.Parcel;
+import org.kwcrawler.analyser.AnalysedRegister.TreasuryOwner;
+import org.kwcrawler.parser.Value;
+import org.kwcrawler.parser.ValueHistory;
+
+import java.util.List;
+
+/// Registers for tests, with nothing but the parts a test sets, e.g. `register().locations(List.of(location)).build()`
+public final class AnalysedRegisterBuilder {
+    private BasicInfo basicInfo;
+    private List<Location> locations = List.of();
+    private List<Apartment> apartments = List.of();
+    private List<Parcel> parcels = List.of();
+    private Area area;
+    private List<Owner> owners = List.of();
+    private List<LegalOwner> legalOwners = List.of();
+    private List<TreasuryOwner> treasuryOwners = List.of();
+    private List<CommuneOwner> communeOwners = List.of();
+    private List<Owner> authorizeds = List.of();
+    private ChangeHistory changes = ChangeHistory.of(List.of());
+    private MigrationComment migrationComment;
+
+    private AnalysedRegisterBuilder() {
+    }
+
+    public static AnalysedRegisterBuilder register() {
+        return new AnalysedRegisterBuilder();
+    }
+
+    /// Register without any values
+    public static AnalysedRegister emptyRegister() {
+        return register().build();
+    }
+
+    /// Single current value added by the first change, no values for `null`
+    public static ValueHistory history(String value) {
+        return new ValueHistory(value == null ? List.of() : List.of(new Value("1", null, value)));
+    }
+
+    public AnalysedRegisterBuilder basicInfo(BasicInfo basicInfo) {
+        this.basicInfo = basicInfo;
+        return this;
+    }
+
+    public AnalysedRegisterBuilder locations(List<Location> locations) {
+        this.locations = locations;
+        return this;
+    }
+
+    public AnalysedRegisterBuilder apartments(List<Apartment> apartments) {
+        this.apartments = apartments;
+        return this;
+    }
+
+    public AnalysedRegisterBuilder parcels(List<Parcel> parcels) {
+        this.parcels = parcels;
+        return this;
+    }
+
+    public AnalysedRegisterBuilder area(Area area) {
+        this.area = area;
+        return this;
+    }
+
+    public AnalysedRegisterBuilder owners(List<Owner> owners) {
+        this.owners = owners;
+        return this;
+    }
+
+    public AnalysedRegisterBuilder legalOwners(List<LegalOwner> legalOwners) {
+        this.legalOwners = legalOwners;
+        return this;
+    }
+
+    public AnalysedRegisterBuilder treasuryOwners(List<TreasuryOwner> treasuryOwners) {
+        this.treasuryOwners = treasuryOwners;
+        return this;
+    }
+
+    public AnalysedRegisterBuilder communeOwners(List<CommuneOwner> communeOwners) {
+        this.communeOwners = communeOwners;
+        return this;
+    }
+
+    public AnalysedRegisterBuilder authorizeds(List<Owner> authorizeds) {
+        this.authorizeds = authorizeds;
+        return this;
+    }
+
+    public AnalysedRegisterBuilder changes(ChangeHistory changes) {
+        this.changes = changes;
+        return this;
+    }
+
+    public AnalysedRegisterBuilder migrationComment(MigrationComment migrationComment) {
+        this.migrationComment = migrationComment;
+        return this;
+    }
+
+    public AnalysedRegister build() {
+        return new AnalysedRegister(basicInfo, locations, apartments, parcels, area, owners, legalOwners,
+                treasuryOwners, communeOwners, authorizeds, changes, migrationComment);
+    }
+}
@@ -0,0 +1,248 @@
+package org.kwcrawler.analyser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kwcrawler.CourtCode;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.analyser.AnalysedRegister.Area;
+import org.kwcrawler.analyser.AnalysedRegister.BasicInfo;
+import org.kwcrawler.analyser.AnalysedRegister.Change;
+import org.kwcrawler.analyser.AnalysedRegister.DocumentKind;
+import org.kwcrawler.analyser.AnalysedRegister.EntryRef;
+import org.kwcrawler.analyser.AnalysedRegister.Location;
+import org.kwcrawler.analyser.AnalysedRegister.Owner;
+import org.kwcrawler.analyser.AnalysedRegister.Parcel;
+import org.kwcrawler.analyser.AnalysedStore.Column;
+import org.kwcrawler.analyser.AnalysedStore.Origin;
+import org.kwcrawler.parser.Value;
+import org.kwcrawler.parser.ValueHistory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.kwcrawler.analyser.AnalysedRegisterBuilder.history;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AnalysedStoreTest {
+    private static final KWNumber FIRST = new KWNumber(CourtCode.of("GL1G"), 1);
+    private static final KWNumber SECOND = new KWNumber(CourtCode.of("GL1G"), 2);
+    private static final Origin ORIGIN = new Origin(1, 100, 200);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldReadStoredRegister() {
+        var register = register("Gliwice", "Kowalski");
+
+        // when
+        try (var store = new AnalysedStore(tempDir)) {
+            store.put(FIRST, register, ORIGIN);
+        }
+        AnalysedRegister stored;
+        try (var store = new AnalysedStore(tempDir)) {
+            stored = store.get(FIRST, EnumSet.allOf(Column.class));
+        }
+
+        // then
+        assertThat(stored).isEqualTo(register);
+    }
+
+    @Test
+    public void shouldDecodeRegisterFromBytes() {
+        var register = register("Gliwice", "Kowalski");
+
+        // when
+        var decoded = AnalysedStore.fromBytes(ByteBuffer.wrap(AnalysedStore.toBytes(register)));
+
+        // then
+        assertThat(decoded).isEqualTo(register);
+    }
+
+    @Test
+    public void shouldReadOnlyWantedColumns() {
+        try (var store = new AnalysedStore(tempDir)) {
+            store.put(FIRST, register("Gliwice", "Kowalski"), ORIGIN);
+
+            // when
+            var stored = store.get(FIRST, Set.of(Column.LOCATIONS));
+
+            // then
+            assertThat(stored.locations()).hasSize(1);
+            assertThat(stored.basicInfo()).isNull();
+            assertThat(stored.owners()).isEmpty();
+            assertThat(stored.changes()).isEmpty();
+        }
+    }
+
+    @Test
+    public void shouldScanLatestVersionOfRegisters() {
+        try (var store = new AnalysedStore(tempDir)) {
+            store.put(FIRST, register("Gliwice", "Kowalski"), ORIGIN);
+            store.put(SECOND, register("Zabrze", "Nowak"), ORIGIN);
+            store.put(FIRST, register("Bytom", "Kowalski"), ORIGIN);
+        }
+
+        // when
+        var cities = new ArrayList<String>();
+        try (var store = new AnalysedStore(tempDir)) {
+            store.forEach(Set.of(Column.LOCATIONS), (kwNumber, register) ->
+                    cities.add(kwNumber.toCode() + " " + register.locations().getFirst().city().currentValue()));
+        }
+
+        // then
+        assertThat(cities).containsExactly(SECOND.toCode() + " Zabrze", FIRST.toCode() + " Bytom");
+    }
+
+    @Test
+    public void shouldScanOnlyFilteredRegisters() {
+        try (var store = new AnalysedStore(tempDir)) {
+            store.put(FIRST, register("Gliwice", "Kowalski"), ORIGIN);
+            store.put(SECOND, register("Zabrze", "Nowak"), ORIGIN);
+            store.put(FIRST, register("Bytom", "Kowalski"), ORIGIN);
+
+            // when
+            var cities = new ArrayList<String>();
+            store.forEach(Set.of(Column.LOCATIONS), kwNumber -> kwNumber.equals(FIRST), (kwNumber, register) ->
+                    cities.add(kwNumber.toCode() + " " + register.locations().getFirst().city().currentValue()));
+
+            // then
+            assertThat(store.kwNumbers()).containsExactly(SECOND, FIRST);
+            assertThat(cities).containsExactly(FIRST.toCode() + " Bytom");
+        }
+    }
+
+    @Test
+    public void shouldReplaceOriginOfStoredRegister() {
+        var register = register("Gliwice", "Kowalski");
+        try (var store = new AnalysedStore(tempDir)) {
+            store.put(FIRST, register, ORIGIN);
+
+            // when
+            store.putOrigin(FIRST, ORIGIN.withPagesStamp(101));
+        }
+
+        // then
+        try (var store = new AnalysedStore(tempDir)) {
+            assertThat(store.origin(FIRST)).isEqualTo(new Origin(1, 101, 200));
+            assertThat(store.origin(SECOND)).isNull();
+            assertThat(store.get(FIRST, EnumSet.allOf(Column.class))).isEqualTo(register);
+        }
+    }
+
+    @Test
+    public void shouldIgnorePartiallyWrittenRegister() throws IOException {
+        try (var store = new AnalysedStore(tempDir)) {
+            store.put(FIRST, register("Gliwice", "Kowalski"), ORIGIN);
+            store.put(SECOND, register("Zabrze", "Nowak"), ORIGIN);
+        }
+        try (var index = FileChannel.open(tempDir.resolve("registers.idx"), StandardOpenOption.WRITE)) {
+            index.truncate(index.size() - 5);
+        }
+
+        // when
+        try (var store = new AnalysedStore(tempDir)) {
+            store.put(SECOND, register("Ruda Śląska", "Nowak"), ORIGIN);
+        }
+
+        // then
+        try (var store = new AnalysedStore(tempDir)) {
+            assertThat(store.size()).isEqualTo(2);
+            assertThat(store.get(SECOND, Set.of(Column.LOCATIONS)).locations().getFirst().city().currentValue()).isEqualTo("Ruda Śląska");
+        }
+    }
+
+    @Test
+    public void shouldReadStoreOpenedReadOnly() {
+        try (var store = new AnalysedStore(tempDir)) {
+            store.put(FIRST, register("Gliwice", "Kowalski"), ORIGIN);
+
+            // when
+            try (var readOnly = AnalysedStore.openReadOnly(tempDir)) {
+                store.put(SECOND, register("Zabrze", "Nowak"), ORIGIN);
+
+                // then
+                assertThat(readOnly.get(FIRST, Set.of(Column.LOCATIONS)).locations().getFirst().city().currentValue()).isEqualTo("Gliwice");
+                assertThat(readOnly.contains(SECOND)).isFalse();
+                assertThatThrownBy(() -> readOnly.putOrigin(FIRST, ORIGIN)).isInstanceOf(IllegalStateException.class);
+            }
+        }
+    }
+
+    @Test
+    public void shouldCompactStoreOfMostlySupersededRegisters() throws IOException {
+        var city = "Gliwice".repeat(10_000);
+        try (var store = new AnalysedStore(tempDir)) {
+            for (int i = 0; i < 30; i++) {
+                store.put(FIRST, register(city + i, "Kowalski"), ORIGIN);
+            }
+            store.put(SECOND, register("Zabrze", "Nowak"), ORIGIN);
+        }
+        var sizeBefore = columnsSize();
+
+        // when
+        try (var store = new AnalysedStore(tempDir)) {
+
+            // then
+            assertThat(columnsSize()).isLessThan(sizeBefore / 10);
+            assertThat(tempDir.resolve("locations.col")).doesNotExist();
+            assertThat(tempDir.resolve("locations.1.col")).exists();
+            assertThat(store.size()).isEqualTo(2);
+            assertThat(store.get(FIRST, Set.of(Column.LOCATIONS)).locations().getFirst().city().currentValue()).isEqualTo(city + 29);
+            store.put(SECOND, register("Bytom", "Nowak"), ORIGIN);
+        }
+        try (var store = new AnalysedStore(tempDir)) {
+            assertThat(store.get(FIRST, Set.of(Column.OWNERS)).owners()).isEqualTo(register(city + 29, "Kowalski").owners());
+            assertThat(store.get(SECOND, Set.of(Column.LOCATIONS)).locations().getFirst().city().currentValue()).isEqualTo("Bytom");
+        }
+    }
+
+    @Test
+    public void shouldNotCompactStoreOpenedElsewhere() throws IOException {
+        try (var first = new AnalysedStore(tempDir)) {
+            for (int i = 0; i < 30; i++) {
+                first.put(FIRST, register("Gliwice".repeat(10_000) + i, "Kowalski"), ORIGIN);
+            }
+            var sizeBefore = columnsSize();
+
+            // when
+            try (var second = new AnalysedStore(tempDir)) {
+
+                // then
+                assertThat(columnsSize()).isEqualTo(sizeBefore);
+                assertThat(second.size()).isEqualTo(1);
+            }
+        }
+    }
+
+    private long columnsSize() throws IOException {
+        try (var files = Files.list(tempDir)) {
+            var size = 0L;
+            for (var file : files.filter(file -> file.toString().endsWith(".col")).toList()) {
+                size += Files.size(file);
+            }
+            return size;
+        }
+    }
+
+    private static AnalysedRegister register(String city, String surname) {
+        return AnalysedRegisterBuilder.register()
+                .basicInfo(new BasicInfo(history("KW")))
+                .locations(List.of(new Location(history("1"), history("ŚLĄSKIE"), history("GLIWICKI"), history("GLIWICE"), history(city))))
+                .parcels(List.of(new Parcel(history("241201_1.0001.12"), history("12"), history("0001"), history("0001"), history("1"), history(null), history("B"))))
+                .area(new Area(new ValueHistory(List.of(new Value("1", "2", "0,1000 HA"), new Value("2", null, "0,2000 HA")))))
+                .owners(List.of(new Owner(history("JAN"), history(surname), history("PIOTR"), history("ANNA"), history("80010112345"))))
+                .changes(ChangeHistory.of(List.of(new Change(1, LocalDate.of(2001, 1, 1), DocumentKind.NOTARIAL_DEED, "AKT NOTARIALNY", null, List.of(new EntryRef("1.3", "1."))))))
+                .build();
+    }
+}
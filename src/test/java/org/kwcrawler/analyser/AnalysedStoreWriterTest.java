@@ -0,0 +1,63 @@
+package org.kwcrawler.analyser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kwcrawler.CourtCode;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.analyser.AnalysedStore.Column;
+import org.kwcrawler.analyser.AnalysedStore.Origin;
+import org.kwcrawler.analyser.AnalysedStore.Stored;
+
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.kwcrawler.analyser.AnalysedRegisterBuilder.emptyRegister;
+
+public class AnalysedStoreWriterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldWriteEverythingQueuedBeforeClose() {
+        var register = emptyRegister();
+        var kwNumbers = IntStream.rangeClosed(1, 10_000)
+                .mapToObj(ledger -> new KWNumber(CourtCode.of("GL1G"), ledger))
+                .toList();
+
+        try (var store = new AnalysedStore(tempDir)) {
+            // when
+            var writer = new AnalysedStoreWriter();
+            kwNumbers.parallelStream().forEach(kwNumber -> writer.write(store, new Stored(kwNumber, register, new Origin(1, 0, 0))));
+            writer.close();
+
+            // then
+            assertThat(writer.getWritten()).isEqualTo(kwNumbers.size());
+            assertThat(writer.getQueueDepth()).isZero();
+            assertThat(writer.getMaxQueueDepth()).isBetween(1, writer.getQueueCapacity());
+            assertThat(store.size()).isEqualTo(kwNumbers.size());
+            assertThat(store.get(kwNumbers.getLast(), EnumSet.allOf(Column.class))).isEqualTo(register);
+        }
+    }
+
+    @Test
+    public void shouldReplaceOriginsInBackground() {
+        var register = emptyRegister();
+        var kwNumber = new KWNumber(CourtCode.of("GL1G"), 1);
+
+        try (var store = new AnalysedStore(tempDir)) {
+            store.put(kwNumber, register, new Origin(1, 100, 200));
+
+            // when
+            var writer = new AnalysedStoreWriter();
+            writer.writeOrigin(store, kwNumber, new Origin(1, 101, 200));
+            writer.close();
+
+            // then
+            assertThat(store.origin(kwNumber)).isEqualTo(new Origin(1, 101, 200));
+            assertThat(store.get(kwNumber, EnumSet.allOf(Column.class))).isEqualTo(register);
+            assertThat(writer.getWritten()).isZero();
+        }
+    }
+}
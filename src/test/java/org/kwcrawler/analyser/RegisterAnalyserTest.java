@@ -0,0 +1,77 @@
+package org.kwcrawler.analyser;
+
+import org.junit.jupiter.api.Test;
+import org.kwcrawler.CourtCode;
+import org.kwcrawler.analyser.AnalysedRegister.Change;
+import org.kwcrawler.analyser.AnalysedRegister.DocumentKind;
+import org.kwcrawler.analyser.AnalysedRegister.EntryRef;
+import org.kwcrawler.parser.ParsedRegister;
+import org.kwcrawler.parser.StreamingPageParser;
+
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RegisterAnalyserTest {
+    @Test
+    public void shouldExtractTypedChanges() throws URISyntaxException {
+        var parser = new StreamingPageParser();
+        var pages = new ArrayList<ParsedRegister.Page>();
+        for (var page : new String[]{"chapter-i-o.html", "chapter-ii.html"}) {
+            pages.add(parser.parse(Path.of(getClass().getResource("/pages/" + page).toURI())));
+        }
+
+        // when
+        AnalysedRegister analysed;
+        try (var analyser = new RegisterAnalyser(CourtCode.of("GL1G"))) {
+            analysed = analyser.analyse(new ParsedRegister(pages));
+        }
+
+        // then
+        var changes = analysed.changes();
+        assertThat(changes.stream().map(Change::number)).containsExactly(1, 2, 3);
+
+        var ruling = changes.byNumber(2);
+        assertThat(ruling.date()).isEqualTo(LocalDate.of(2010, 5, 17));
+        assertThat(ruling.kind()).isEqualTo(DocumentKind.COURT_RULING);
+        assertThat(ruling.entries()).contains(new EntryRef("1.3", "2."));
+
+        var decision = changes.byNumber(3);
+        assertThat(decision.date()).isNull();
+        assertThat(decision.kind()).isEqualTo(DocumentKind.ADMINISTRATIVE_DECISION);
+        assertThat(decision.entity()).isEqualTo("STAROSTA KŁOBUCKI POWIAT");
+        assertThat(decision.entries()).contains(new EntryRef("1.3", "2."));
+
+        assertThat(changes.byNumber(4)).isNull();
+        assertThat(changes.between(LocalDate.of(2003, 1, 1), LocalDate.of(2003, 12, 31)))
+                .extracting(Change::number)
+                .containsExactly(1);
+    }
+
+    @Test
+    public void shouldFindSameChangedEntriesInWholeAndSelectivelyParsedRegister() throws URISyntaxException {
+        var parser = new StreamingPageParser();
+        var whole = new ArrayList<ParsedRegister.Page>();
+        var selected = new ArrayList<ParsedRegister.Page>();
+        for (var page : new String[]{"chapter-i-o.html", "chapter-ii.html"}) {
+            var file = Path.of(getClass().getResource("/pages/" + page).toURI());
+            whole.add(parser.parse(file));
+            selected.add(parser.parse(file, RegisterAnalyser.SECTIONS));
+        }
+
+        // when
+        List<Change> wholeChanges;
+        List<Change> selectedChanges;
+        try (var analyser = new RegisterAnalyser(CourtCode.of("GL1G"))) {
+            wholeChanges = analyser.analyse(new ParsedRegister(whole)).changes().stream().toList();
+            selectedChanges = analyser.analyse(new ParsedRegister(selected)).changes().stream().toList();
+        }
+
+        // then
+        assertThat(wholeChanges).isEqualTo(selectedChanges);
+    }
+}
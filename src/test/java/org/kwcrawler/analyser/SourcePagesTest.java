@@ -0,0 +1,31 @@
+package org.kwcrawler.analyser;
+
+import org.junit.jupiter.api.Test;
+import org.kwcrawler.parser.PagesHash;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourcePagesTest {
+    @Test
+    public void shouldHashPagesReadForParsingLikePagesReadAgain() throws URISyntaxException, IOException {
+        var pages = List.of(
+                Path.of(getClass().getResource("/pages/chapter-i-o.html").toURI()),
+                Path.of(getClass().getResource("/pages/chapter-ii.html").toURI()));
+
+        // when
+        var hash = new PagesHash();
+        for (var page : pages) {
+            hash.add(Files.readAllBytes(page));
+        }
+
+        // then
+        assertThat(hash.get()).isEqualTo(SourcePages.contentHash(pages));
+        assertThat(hash.get()).isNotEqualTo(SourcePages.contentHash(pages.reversed()));
+    }
+}
@@ -0,0 +1,92 @@
+package org.kwcrawler.index;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kwcrawler.CourtCode;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.analyser.AnalysedRegister;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.kwcrawler.analyser.AnalysedRegisterBuilder.emptyRegister;
+
+public class CatalogSearcherManagerTest {
+    private static final AnalysedRegister REGISTER = emptyRegister();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldDropRemovedCourtsOnceTheirSearchesAreReleased() throws IOException {
+        var catalog = new IndexCatalog(tempDir);
+        try (var indexer = new Indexer(catalog.directory("GL1G"))) {
+            indexer.index(new KWNumber(CourtCode.of("GL1G"), 1), REGISTER);
+        }
+        try (var indexer = new Indexer(catalog.directory("WA1M"))) {
+            indexer.index(new KWNumber(CourtCode.of("WA1M"), 1), REGISTER);
+            indexer.index(new KWNumber(CourtCode.of("WA1M"), 2), REGISTER);
+        }
+
+        try (var manager = new CatalogSearcherManager(catalog, Runnable::run)) {
+            var before = manager.acquire();
+            var kept = courtDirectory(before.getIndexReader(), 0);
+            var removed = courtDirectory(before.getIndexReader(), 1);
+            try {
+                // when
+                delete(catalog.directory("WA1M"));
+                manager.maybeRefresh();
+
+                // then
+                var after = manager.acquire();
+                try {
+                    assertThat(after.count(new MatchAllDocsQuery())).isEqualTo(1);
+                } finally {
+                    manager.release(after);
+                }
+                assertThat(before.count(new MatchAllDocsQuery())).isEqualTo(3);
+            } finally {
+                manager.release(before);
+            }
+            assertThatThrownBy(removed::listAll).isInstanceOf(AlreadyClosedException.class);
+            assertThat(kept.listAll()).isNotEmpty();
+        }
+    }
+
+    @Test
+    public void shouldCloseDirectoriesOfCourtsWithTheirReader() throws IOException {
+        var catalog = new IndexCatalog(tempDir);
+        try (var indexer = new Indexer(catalog.directory("GL1G"))) {
+            indexer.index(new KWNumber(CourtCode.of("GL1G"), 1), REGISTER);
+        }
+
+        // when
+        var reader = catalog.openReader();
+        var directory = courtDirectory(reader, 0);
+        reader.close();
+
+        // then
+        assertThatThrownBy(directory::listAll).isInstanceOf(AlreadyClosedException.class);
+    }
+
+    private static Directory courtDirectory(IndexReader reader, int court) {
+        return ((DirectoryReader) reader.getContext().children().get(court).reader()).directory();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.kwcrawler.index;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kwcrawler.CourtCode;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.OwnerTypeSelector.Group;
+import org.kwcrawler.analyser.AnalysedRegister;
+import org.kwcrawler.analyser.AnalysedRegister.Area;
+import org.kwcrawler.analyser.AnalysedRegister.Change;
+import org.kwcrawler.analyser.AnalysedRegister.DocumentKind;
+import org.kwcrawler.analyser.AnalysedRegister.Location;
+import org.kwcrawler.analyser.AnalysedRegister.Owner;
+import org.kwcrawler.analyser.AnalysedRegisterBuilder;
+import org.kwcrawler.analyser.ChangeHistory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.kwcrawler.analyser.AnalysedRegisterBuilder.history;
+
+public class IndexSearchTest {
+    private static final KWNumber MIEDZNO = new KWNumber(CourtCode.of("CZ1C"), 1);
+    private static final KWNumber KLOBUCK = new KWNumber(CourtCode.of("CZ1C"), 2);
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void index() {
+        try (var indexer = new Indexer(tempDir)) {
+            indexer.index(MIEDZNO, register("MIEDŹNO", "KOWALSKI"));
+            indexer.index(KLOBUCK, register("KŁOBUCK", "NOWAK"));
+        }
+    }
+
+    @Test
+    public void shouldIgnoreCaseAndDiacritics() throws IOException {
+        // when
+        var hits = search("lokalizacja:Miedzno");
+
+        // then
+        assertThat(hits).containsExactly(MIEDZNO.toCode());
+        assertThat(search("Kłobuck")).isEqualTo(search("KLOBUCK"));
+    }
+
+    @Test
+    public void shouldFindPrefixWithSingleTerm() throws IOException {
+        // when
+        var query = IndexSearch.parse("właściciel:Kowal*");
+
+        // then
+        assertThat(query).isInstanceOf(TermQuery.class);
+        assertThat(((TermQuery) query).getTerm().field()).isEqualTo("właściciel.prefix");
+        assertThat(search("właściciel:Kowal*")).containsExactly(MIEDZNO.toCode());
+        assertThat(search("właściciel:kowalskiego*")).isEmpty();
+        assertThat(search("lokalizacja:Miedź*")).containsExactly(MIEDZNO.toCode());
+    }
+
+    @Test
+    public void shouldFindFuzzyNamesByBigrams() throws IOException {
+        // when
+        var query = IndexSearch.parse("właściciel:Kowalsky~");
+
+        // then
+        assertThat(query).isInstanceOf(BooleanQuery.class);
+        assertThat(((BooleanQuery) query).clauses())
+                .extracting(clause -> ((TermQuery) clause.query()).getTerm().field())
+                .containsOnly("właściciel.gram");
+        assertThat(search("właściciel:Kowalsky~")).containsExactly(MIEDZNO.toCode());
+        assertThat(search("właściciel:Nowac~1")).containsExactly(KLOBUCK.toCode());
+        // bigrams of the district KŁOBUCKI of both registers match as well, but rank below the town
+        assertThat(search("lokalizacja:Kłobók~")).containsExactly(KLOBUCK.toCode(), MIEDZNO.toCode());
+        assertThat(search("właściciel:Wiśniewski~")).isEmpty();
+        // too short for bigrams to tell anything after two edits
+        assertThat(IndexSearch.parse("właściciel:Now~")).isInstanceOf(FuzzyQuery.class);
+    }
+
+    @Test
+    public void shouldFilterByTypedFieldsAndCountFacets() throws IOException {
+        var query = IndexSearch.parse("", "gmina:miedźno obszar:[0.1 TO *] własność:PERSON zmiana:[2003-01-01 TO 2003-12-31]");
+
+        // when
+        SearchResult result;
+        try (var directory = FSDirectory.open(tempDir);
+             var reader = DirectoryReader.open(directory)) {
+            result = IndexSearch.search(new IndexSearcher(reader), query, IndexSearch.BY_KW, 10, null, true, null);
+        }
+
+        // then
+        assertThat(result.hits()).extracting(SearchResult.Hit::kw).containsExactly(MIEDZNO.toCode());
+        assertThat(result.facets().get(RegisterFields.DISTRICT)).containsExactly(entry("KŁOBUCKI", 1));
+        assertThat(search("numer:[2 TO 2]")).containsExactly(KLOBUCK.toCode());
+        assertThat(search("obszar:{0.1234 TO *]")).isEmpty();
+    }
+
+    @Test
+    public void shouldCountFacetsOfManyCourtsWithOrdinalsMadeOncePerSearcher() throws IOException {
+        var otherCourt = tempDir.resolve("other");
+        try (var indexer = new Indexer(otherCourt)) {
+            indexer.index(new KWNumber(CourtCode.of("GL1G"), 1), register("MIEDŹNO", "NOWAK"));
+        }
+
+        try (var directory = FSDirectory.open(tempDir);
+             var otherDirectory = FSDirectory.open(otherCourt);
+             var reader = new MultiReader(new IndexReader[]{DirectoryReader.open(directory), DirectoryReader.open(otherDirectory)}, true)) {
+            var searcher = new FacetedSearcher(reader);
+
+            // when
+            var result = IndexSearch.search(searcher, IndexSearch.parse("", null), IndexSearch.BY_KW, 10, null, true, null);
+
+            // then
+            assertThat(reader.getReaderCacheHelper()).isNull();
+            assertThat(searcher.facetsState()).isNotNull().isSameAs(searcher.facetsState());
+            assertThat(result.facets().get(RegisterFields.DISTRICT)).containsExactly(entry("KŁOBUCKI", 3));
+        }
+    }
+
+    @Test
+    public void shouldPageThroughAllHitsAndExportThem() throws IOException {
+        var kwNumbers = new ArrayList<String>(List.of(MIEDZNO.toCode(), KLOBUCK.toCode()));
+        try (var indexer = new Indexer(tempDir)) {
+            for (var ledgerNumber = 3; ledgerNumber <= 7; ledgerNumber++) {
+                var kwNumber = new KWNumber(CourtCode.of("CZ1C"), ledgerNumber);
+                indexer.index(kwNumber, register("KŁOBUCK", "NOWAK"));
+                kwNumbers.add(kwNumber.toCode());
+            }
+        }
+        Collections.sort(kwNumbers);
+
+        try (var directory = FSDirectory.open(tempDir);
+             var reader = DirectoryReader.open(directory)) {
+            var searcher = new IndexSearcher(reader);
+
+            // when
+            var paged = new ArrayList<String>();
+            var ranked = new ArrayList<String>();
+            for (var sort : List.of(IndexSearch.BY_KW, IndexSearch.BY_RELEVANCE)) {
+                var query = IndexSearch.parse(sort == IndexSearch.BY_KW ? "" : "Kłobuck Miedźno", null);
+                String after = null;
+                do {
+                    var result = IndexSearch.search(searcher, query, sort, 2, after, false, null);
+                    assertThat(result.totalHits()).isEqualTo(kwNumbers.size());
+                    result.hits().forEach(hit -> (sort == IndexSearch.BY_KW ? paged : ranked).add(hit.kw()));
+                    after = result.next();
+                } while (after != null);
+            }
+            var out = new ByteArrayOutputStream();
+            var exported = IndexSearch.export(searcher, IndexSearch.parse("", null), null, out);
+            var lines = new ArrayList<String>();
+            for (var line : out.toString(StandardCharsets.UTF_8).lines().toList()) {
+                lines.add(IndexSearch.JSON.readTree(line).path("kw").asText());
+            }
+
+            // then
+            assertThat(paged).isEqualTo(kwNumbers);
+            assertThat(ranked).containsExactlyInAnyOrderElementsOf(kwNumbers);
+            assertThat(exported).isEqualTo(kwNumbers.size());
+            assertThat(lines).isEqualTo(kwNumbers);
+        }
+    }
+
+    @Test
+    public void shouldMatchGroupsByNameAndPesel() throws IOException {
+        var groups = List.of(
+                new Group("kowalscy", List.of("jan kowalski (piotr, anna)"), List.of()),
+                new Group("pesel", List.of(), List.of("80010112345")),
+                new Group("nobody", List.of("JAN NOWAK (JAN, MARIA)"), List.of("99999999999")));
+
+        // when
+        Map<String, SortedSet<String>> matches;
+        try (var directory = FSDirectory.open(tempDir);
+             var reader = DirectoryReader.open(directory)) {
+            matches = IndexSearch.matchGroups(new IndexSearcher(reader), groups);
+        }
+
+        // then
+        assertThat(matches).containsExactly(
+                entry("kowalscy", new TreeSet<>(List.of(MIEDZNO.toCode()))),
+                entry("pesel", new TreeSet<>(List.of(MIEDZNO.toCode(), KLOBUCK.toCode()))),
+                entry("nobody", new TreeSet<>()));
+        assertThat(search("osoba:\"Jan Nowak (Piotr, Anna)\"")).containsExactly(KLOBUCK.toCode());
+    }
+
+    private List<String> search(String query) throws IOException {
+        try (var directory = FSDirectory.open(tempDir);
+             var reader = DirectoryReader.open(directory)) {
+            var result = IndexSearch.search(new IndexSearcher(reader), IndexSearch.parse(query), IndexSearch.BY_RELEVANCE, 10, null, false, null);
+            return result.hits().stream()
+                    .map(SearchResult.Hit::kw)
+                    .toList();
+        }
+    }
+
+    private static AnalysedRegister register(String city, String surname) {
+        var location = new Location(history("1"), history("ŚLĄSKIE"), history("KŁOBUCKI"), history(city), history(city));
+        var owner = new Owner(history("JAN"), history(surname), history("PIOTR"), history("ANNA"), history("80010112345"));
+        var area = new Area(history(city.equals("MIEDŹNO") ? "0,1234 HA" : "500 M2"));
+        var changes = ChangeHistory.of(List.of(new Change(1, LocalDate.of(2003, 10, 22), DocumentKind.NOTARIAL_DEED, "AKT NOTARIALNY", null, List.of())));
+        return AnalysedRegisterBuilder.register().locations(List.of(location)).area(area).owners(List.of(owner)).changes(changes).build();
+    }
+}
@@ -0,0 +1,101 @@
+package org.kwcrawler.index;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kwcrawler.CourtCode;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.analyser.AnalysedRegister;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.kwcrawler.analyser.AnalysedRegisterBuilder.emptyRegister;
+
+public class IndexerTest {
+    private static final AnalysedRegister REGISTER = emptyRegister();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldIndexFromManyThreadsAndCommitOnClose() throws IOException {
+        var kwNumbers = IntStream.rangeClosed(1, 1000)
+                .mapToObj(ledger -> new KWNumber(CourtCode.of("GL1G"), ledger))
+                .toList();
+
+        try (var indexer = new Indexer(tempDir)) {
+            // when
+            kwNumbers.parallelStream().forEach(kwNumber -> indexer.index(kwNumber, REGISTER));
+            indexer.index(kwNumbers.getFirst(), REGISTER);
+
+            // then
+            assertThat(numDocs(indexer)).isEqualTo(kwNumbers.size());
+            assertThat(indexer.getIndexed()).isEqualTo(kwNumbers.size() + 1);
+            indexer.index(new KWNumber(CourtCode.of("GL1G"), 1001), REGISTER);
+        }
+
+        try (var directory = FSDirectory.open(tempDir);
+             var reader = DirectoryReader.open(directory)) {
+            assertThat(reader.numDocs()).isEqualTo(kwNumbers.size() + 1);
+        }
+    }
+
+    @Test
+    public void shouldSkipUnchangedAndDeleteMissingRegisters() throws IOException {
+        var first = new KWNumber(CourtCode.of("GL1G"), 1);
+        var second = new KWNumber(CourtCode.of("GL1G"), 2);
+        var other = new KWNumber(CourtCode.of("WA1M"), 1);
+        try (var indexer = new Indexer(tempDir)) {
+            indexer.index(first, REGISTER);
+            indexer.index(second, REGISTER);
+            indexer.index(other, REGISTER);
+        }
+
+        // when
+        try (var indexer = new Indexer(tempDir)) {
+            var indexed = indexer.index(first, REGISTER);
+            var deleted = indexer.deleteMissing(kwNumber -> kwNumber.getCourtCode().getCode().equals("GL1G"));
+
+            // then
+            assertThat(indexed).isFalse();
+            assertThat(indexer.getUnchanged()).isEqualTo(1);
+            assertThat(deleted).isEqualTo(1);
+            assertThat(numDocs(indexer)).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void shouldKeepRegistersThatFailedToParse() throws IOException {
+        var first = new KWNumber(CourtCode.of("GL1G"), 1);
+        var broken = new KWNumber(CourtCode.of("GL1G"), 2);
+        try (var indexer = new Indexer(tempDir)) {
+            indexer.index(first, REGISTER);
+            indexer.index(broken, REGISTER);
+        }
+
+        // when
+        try (var indexer = new Indexer(tempDir)) {
+            indexer.index(first, REGISTER);
+            // what processing reports for a register whose pages throw a ParseException
+            indexer.keep(broken);
+            var deleted = indexer.deleteMissing(kwNumber -> true);
+
+            // then
+            assertThat(deleted).isZero();
+            assertThat(numDocs(indexer)).isEqualTo(2);
+        }
+    }
+
+    // documents visible to a reader opened after a commit
+    private int numDocs(Indexer indexer) throws IOException {
+        indexer.commit();
+        try (var directory = FSDirectory.open(tempDir);
+             var reader = DirectoryReader.open(directory)) {
+            return reader.numDocs();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.kwcrawler.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kwcrawler.CourtCode;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.Shard;
+import org.kwcrawler.analyser.AnalysedRegister;
+import org.kwcrawler.analyser.AnalysedRegister.LegalOwner;
+import org.kwcrawler.analyser.AnalysedRegister.Owner;
+import org.kwcrawler.analyser.AnalysedRegisterBuilder;
+import org.kwcrawler.parser.ValueHistory;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.kwcrawler.analyser.AnalysedRegisterBuilder.history;
+
+public class OwnerIndexTest {
+    private static final ValueHistory EMPTY = new ValueHistory(List.of());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldFindRegistersOfOwnersInAllCourts() {
+        var kowalski = new Owner(history("JAN"), history("KOWALSKI"), history("PIOTR"), history("ANNA"), history("80010112345"));
+        var nowak = new Owner(history("ŁUCJA"), history("NOWAK"), history("JAN"), history("MARIA"), EMPTY);
+        var company = new LegalOwner(history("SPÓŁKA Z O.O."), history("KŁOBUCK"), history("123456789"));
+
+        var gliwice = new KWNumber(CourtCode.of("GL1G"), 1);
+        var czestochowa1 = new KWNumber(CourtCode.of("CZ1C"), 1);
+        var czestochowa2 = new KWNumber(CourtCode.of("CZ1C"), 2);
+
+        var gliwiceOwners = new OwnerIndex.Builder();
+        gliwiceOwners.add(gliwice, register(List.of(kowalski), List.of()));
+        gliwiceOwners.write(tempDir.resolve("GL1G"), Shard.ALL);
+        var czestochowaOwners = new OwnerIndex.Builder();
+        czestochowaOwners.add(czestochowa2, register(List.of(kowalski, nowak), List.of(company)));
+        czestochowaOwners.add(czestochowa1, register(List.of(kowalski), List.of(company)));
+        czestochowaOwners.write(tempDir.resolve("CZ1C"), Shard.ALL);
+
+        // when
+        var ownerIndex = OwnerIndex.open(tempDir);
+
+        // then
+        assertThat(ownerIndex.byPesel("80010112345")).containsExactly(czestochowa1, czestochowa2, gliwice);
+        assertThat(ownerIndex.byName("Lucja  Nowak (Jan, Maria)")).containsExactly(czestochowa2);
+        assertThat(ownerIndex.byRegon("123456789")).containsExactly(czestochowa1, czestochowa2);
+        assertThat(ownerIndex.byPesel("99999999999")).isEmpty();
+    }
+
+    @Test
+    public void shouldGrowBeyondInitialCapacity() {
+        var kwNumber = new KWNumber(CourtCode.of("GL1G"), 1);
+        var builder = new OwnerIndex.Builder();
+        for (var i = 0; i < 10_000; i++) {
+            var pesel = String.format("%011d", i);
+            builder.add(kwNumber, register(List.of(new Owner(EMPTY, EMPTY, EMPTY, EMPTY, history(pesel))), List.of()));
+        }
+        builder.write(tempDir, Shard.ALL);
+
+        // when
+        var ownerIndex = OwnerIndex.open(tempDir);
+
+        // then
+        assertThat(builder.getKeyCount()).isEqualTo(10_000);
+        assertThat(ownerIndex.byPesel("00000001234")).containsExactly(kwNumber);
+        assertThat(ownerIndex.byPesel("00000009999")).containsExactly(kwNumber);
+    }
+
+    private static AnalysedRegister register(List<Owner> owners, List<LegalOwner> legalOwners) {
+        return AnalysedRegisterBuilder.register().owners(owners).legalOwners(legalOwners).build();
+    }
+}
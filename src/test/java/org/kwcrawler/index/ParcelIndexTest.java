@@ -0,0 +1,91 @@
+package org.kwcrawler.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kwcrawler.CourtCode;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.Shard;
+import org.kwcrawler.analyser.AnalysedRegister;
+import org.kwcrawler.analyser.AnalysedRegister.Parcel;
+import org.kwcrawler.analyser.AnalysedRegisterBuilder;
+import org.kwcrawler.parser.Value;
+import org.kwcrawler.parser.ValueHistory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParcelIndexTest {
+    private static final ValueHistory EMPTY = new ValueHistory(List.of());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldFindRegistersOfCurrentAndRemovedParcels() {
+        var current = new KWNumber(CourtCode.of("CZ1C"), 1);
+        var previous = new KWNumber(CourtCode.of("CZ1C"), 2);
+        var builder = new ParcelIndex.Builder();
+        builder.add(current, register(new ValueHistory(List.of(new Value("1", null, "240601_2.0001.AR_3.123/4")))));
+        // the parcel was moved out of the register
+        builder.add(previous, register(new ValueHistory(List.of(new Value("1", "2", "240601_2.0001.AR_3.123/4"), new Value("1", null, "240601_2.0001.55")))));
+        builder.write(tempDir.resolve("CZ1C"), Shard.ALL);
+
+        // when
+        var parcelIndex = ParcelIndex.open(tempDir);
+
+        // then
+        assertThat(parcelIndex.byParcelId("240601_2.0001.AR_3.123/4")).containsExactly(current, previous);
+        assertThat(parcelIndex.byParcelId("240601_2.0001.123/4")).containsExactly(current, previous);
+        assertThat(parcelIndex.byParcelId(" 240601_2.0001.55 ")).containsExactly(previous);
+        assertThat(parcelIndex.byParcelId("240601_2.0001.56")).isEmpty();
+    }
+
+    @Test
+    public void shouldFindParcelsOfDistrictsInCourtsOfThem() {
+        var czestochowa = new KWNumber(CourtCode.of("CZ1C"), 1);
+        var warszawa = new KWNumber(CourtCode.of("WA1M"), 1);
+        var builder = new ParcelIndex.Builder();
+        builder.add(czestochowa, register(new ValueHistory(List.of(new Value("1", null, "240601_2.0001.55")))));
+        builder.write(tempDir.resolve("CZ1C"), Shard.ALL);
+        builder = new ParcelIndex.Builder();
+        builder.add(warszawa, register(new ValueHistory(List.of(new Value("1", null, "146501_8.0001.55"), new Value("1", null, "działka 7")))));
+        builder.write(tempDir.resolve("WA1M"), Shard.ALL);
+
+        // when
+        var parcelIndex = ParcelIndex.open(tempDir);
+
+        // then
+        assertThat(parcelIndex.byParcelId("240601_2.0001.55")).containsExactly(czestochowa);
+        assertThat(parcelIndex.byParcelId("146501_8.0001.55")).containsExactly(warszawa);
+        assertThat(parcelIndex.byParcelId("działka 7")).containsExactly(warszawa);
+    }
+
+    @Test
+    public void shouldReplaceShardsOfRunsWithAnotherShardCount() throws IOException {
+        var kwNumber = new KWNumber(CourtCode.of("CZ1C"), 1);
+        var builder = new ParcelIndex.Builder();
+        builder.add(kwNumber, register(new ValueHistory(List.of(new Value("1", null, "240601_2.0001.55")))));
+        var courtDir = tempDir.resolve("CZ1C");
+        builder.write(courtDir, new Shard(1, 2, Shard.Space.LEDGER));
+        builder.write(courtDir, new Shard(2, 2, Shard.Space.LEDGER));
+
+        // when
+        builder.write(courtDir, new Shard(1, 4, Shard.Space.LEDGER));
+        builder.write(courtDir, new Shard(2, 4, Shard.Space.LEDGER));
+
+        // then
+        try (var files = Files.list(courtDir)) {
+            assertThat(files.map(file -> file.getFileName().toString())).containsExactlyInAnyOrder("1of4.bin", "2of4.bin");
+        }
+        assertThat(ParcelIndex.open(tempDir).byParcelId("240601_2.0001.55")).containsExactly(kwNumber);
+    }
+
+    private static AnalysedRegister register(ValueHistory parcelId) {
+        var parcel = new Parcel(parcelId, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY, EMPTY);
+        return AnalysedRegisterBuilder.register().parcels(List.of(parcel)).build();
+    }
+}
@@ -0,0 +1,118 @@
+package org.kwcrawler.index;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kwcrawler.CourtCode;
+import org.kwcrawler.KWNumber;
+import org.kwcrawler.analyser.AnalysedRegister;
+import org.kwcrawler.analyser.AnalysedRegister.Location;
+import org.kwcrawler.analyser.AnalysedRegisterBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.kwcrawler.analyser.AnalysedRegisterBuilder.history;
+
+public class SearchServerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldServeConcurrentSearches() {
+        var gliwice = register("GLIWICE");
+        try (var indexer = new Indexer(tempDir.resolve("GL1G"))) {
+            indexer.index(new KWNumber(CourtCode.of("GL1G"), 1), gliwice);
+            indexer.index(new KWNumber(CourtCode.of("GL1G"), 2), register("ZABRZE"));
+        }
+
+        try (var server = new SearchServer(tempDir, tempDir.resolve("parcels"), 0)) {
+            var client = new SearchClient(server.getPort());
+
+            // when
+            var results = IntStream.range(0, 100)
+                    .parallel()
+                    .mapToObj(i -> client.search("lokalizacja:gliwice", 10))
+                    .toList();
+
+            // then
+            assertThat(results).allSatisfy(result -> {
+                assertThat(result.totalHits()).isEqualTo(1);
+                assertThat(result.hits()).hasSize(1);
+                assertThat(result.hits().getFirst().analysed()).isEqualTo(gliwice);
+            });
+            assertThatThrownBy(() -> client.search("lokalizacja:(", 10))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    public void shouldSearchCourtsIndexedWhileServing() throws InterruptedException {
+        var czestochowa = new KWNumber(CourtCode.of("CZ1C"), 1);
+        try (var indexer = new Indexer(tempDir.resolve("GL1G"))) {
+            indexer.index(new KWNumber(CourtCode.of("GL1G"), 1), register("GLIWICE"));
+        }
+
+        try (var server = new SearchServer(tempDir, tempDir.resolve("parcels"), 0)) {
+            var client = new SearchClient(server.getPort());
+            assertThat(client.search("lokalizacja:częstochowa", 10).totalHits()).isZero();
+
+            // when
+            try (var indexer = new Indexer(tempDir.resolve("CZ1C"))) {
+                indexer.index(czestochowa, register("CZĘSTOCHOWA"));
+            }
+            var result = client.search("lokalizacja:częstochowa", 10);
+            for (var i = 0; i < 50 && result.totalHits() == 0; i++) {
+                Thread.sleep(100);
+                result = client.search("lokalizacja:częstochowa", 10);
+            }
+
+            // then
+            assertThat(result.hits()).extracting(SearchResult.Hit::kw).containsExactly(czestochowa.toCode());
+            assertThat(client.search("", 10).totalHits()).isEqualTo(2);
+            var out = new ByteArrayOutputStream();
+            assertThat(client.export("", null, out)).isTrue();
+            assertThat(out.toString(StandardCharsets.UTF_8).lines()).hasSize(2);
+        }
+    }
+
+    @Test
+    public void shouldRejectMalformedKwNumber() throws IOException {
+        try (var server = new SearchServer(tempDir, tempDir.resolve("parcels"), 0)) {
+            var httpClient = new OkHttpClient();
+
+            // when
+            try (var response = httpClient.newCall(new Request.Builder().url("http://localhost:" + server.getPort() + "/kw?number=GL1G/123").build()).execute()) {
+
+                // then
+                assertThat(response.code()).isEqualTo(400);
+            }
+        }
+    }
+
+    @Test
+    public void shouldReturnNullWhenServerIsNotRunning() {
+        int port;
+        try (var server = new SearchServer(tempDir, tempDir.resolve("parcels"), 0)) {
+            port = server.getPort();
+        }
+
+        // when
+        var result = new SearchClient(port).search("gliwice", 10);
+
+        // then
+        assertThat(result).isNull();
+    }
+
+    private static AnalysedRegister register(String city) {
+        var location = new Location(history("1"), history("ŚLĄSKIE"), history("GLIWICKI"), history(city), history(city));
+        return AnalysedRegisterBuilder.register().locations(List.of(location)).build();
+    }
+}
@@ -0,0 +1,137 @@
+package org.kwcrawler.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParsedRegisterCacheTest {
+    private final ParsedRegisterCache cache = new ParsedRegisterCache();
+    private final StreamingPageParser parser = new StreamingPageParser();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldReadWrittenRegister() throws Exception {
+        var sources = copyPages();
+        var register = parse(sources);
+        var cacheFile = tempDir.resolve("cache/register.bin");
+
+        // when
+        cache.write(cacheFile, cache.fingerprint(sources), new RegisterParser.Parsed(register, 42));
+        var cached = cache.read(cacheFile, cache.fingerprint(sources));
+
+        // then
+        assertThat(cached.register()).isEqualTo(register);
+        assertThat(cached.pagesHash()).isEqualTo(42);
+    }
+
+    @Test
+    public void shouldIgnoreCacheWhenSourceChanged() throws Exception {
+        var sources = copyPages();
+        var cacheFile = tempDir.resolve("cache/register.bin");
+        cache.write(cacheFile, cache.fingerprint(sources), new RegisterParser.Parsed(parse(sources), 42));
+
+        // when
+        Files.setLastModifiedTime(sources.getFirst(), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        var cached = cache.read(cacheFile, cache.fingerprint(sources));
+
+        // then
+        assertThat(cached).isNull();
+    }
+
+    @Test
+    public void shouldIgnoreBrokenCache() throws Exception {
+        var sources = copyPages();
+        var cacheFile = tempDir.resolve("cache/register.bin");
+        cache.write(cacheFile, cache.fingerprint(sources), new RegisterParser.Parsed(parse(sources), 42));
+
+        // when
+        var bytes = Files.readAllBytes(cacheFile);
+        Files.write(cacheFile, Arrays.copyOf(bytes, bytes.length / 2));
+        var cached = cache.read(cacheFile, cache.fingerprint(sources));
+
+        // then
+        assertThat(cached).isNull();
+    }
+
+    @Test
+    public void shouldNotAddKeysOfBrokenCacheToKeyTable() throws Exception {
+        var sources = copyPages();
+        var cacheFile = tempDir.resolve("cache/register.bin");
+        cache.write(cacheFile, cache.fingerprint(sources), new RegisterParser.Parsed(parse(sources), 42));
+
+        // when
+        var bytes = Files.readAllBytes(cacheFile);
+        var key = "7. Imię matki".getBytes(StandardCharsets.UTF_8);
+        var at = indexOf(bytes, key);
+        var garbage = "Q".repeat(key.length);
+        System.arraycopy(garbage.getBytes(StandardCharsets.UTF_8), 0, bytes, at, key.length);
+        Files.write(cacheFile, Arrays.copyOf(bytes, bytes.length - 1));
+        var cached = cache.read(cacheFile, cache.fingerprint(sources));
+
+        // then
+        assertThat(at).isPositive();
+        assertThat(cached).isNull();
+        assertThat(KeyTable.find(garbage)).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldIgnoreCacheWithCountBeyondItsEnd() throws Exception {
+        var sources = copyPages();
+        var cacheFile = tempDir.resolve("cache/register.bin");
+        var fingerprint = cache.fingerprint(sources);
+        cache.write(cacheFile, fingerprint, new RegisterParser.Parsed(parse(sources), 42));
+
+        // when
+        var bytes = Files.readAllBytes(cacheFile);
+        // magic, version, fingerprint and hash, followed by the number of keys
+        var header = 4 + 4 + 4 + fingerprint.length * 8 + 8;
+        var broken = new ByteArrayOutputStream();
+        broken.write(bytes, 0, header);
+        broken.write(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+        broken.write(bytes, header, bytes.length - header);
+        Files.write(cacheFile, broken.toByteArray());
+        var cached = cache.read(cacheFile, fingerprint);
+
+        // then
+        assertThat(cached).isNull();
+    }
+
+    private static int indexOf(byte[] bytes, byte[] part) {
+        for (int i = 0; i + part.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + part.length, part, 0, part.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private List<Path> copyPages() throws URISyntaxException, IOException {
+        var sources = new ArrayList<Path>();
+        for (var page : List.of("chapter-i-o.html", "chapter-ii.html")) {
+            var source = Path.of(getClass().getResource("/pages/" + page).toURI());
+            var copy = tempDir.resolve(page);
+            Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING);
+            sources.add(copy);
+        }
+        return sources;
+    }
+
+    private ParsedRegister parse(List<Path> sources) {
+        return new ParsedRegister(sources.stream().map(parser::parse).toList());
+    }
+}
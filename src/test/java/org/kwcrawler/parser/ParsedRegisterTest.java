@@ -0,0 +1,97 @@
+package org.kwcrawler.parser;
+
+import org.junit.jupiter.api.Test;
+import org.kwcrawler.parser.ParsedRegister.Page;
+import org.kwcrawler.parser.ParsedRegister.Page.Section;
+import org.kwcrawler.parser.ParsedRegister.Page.Section.Entry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParsedRegisterTest {
+    private static final Section OWNERS = new Section("Podrubryka 2.2.5 - Osoba fizyczna", List.of(
+            entry(RowType.TITLE, null, "Podrubryka 2.2.5 - Osoba fizyczna"),
+            entry(RowType.VALUE, new Value("1", "2", "KOWALSKA"), "1. Nazwisko"),
+            entry(RowType.VALUE, new Value("1", null, "JAN"), "1. Imię", "1."),
+            entry(RowType.VALUE, new Value("1", null, "KOWALSKI"), "2. Nazwisko", "1."),
+            entry(RowType.VALUE, new Value("2", null, "ANNA"), "1. Imię", "2."),
+            entry(RowType.VALUE, new Value("1", null, "---"), "1. Imię", "3."),
+            entry(RowType.VALUE, new Value("1", null, "PIOTR"), "1. Imię", "1.", "2. Imię ojca", "x"),
+            entry(RowType.VALUE, new Value("2", null, "NOWAK"), "1. Nazwisko", "2."),
+            entry(RowType.VALUE, new Value("1", null, "ADAM"), "1. Imię", "1.")));
+
+    private static final Section CHANGES = new Section("Rubryka 2.1 - Dokument", List.of(
+            entry(RowType.VALUE, new Value("1", null, "AKT NOTARIALNY"), "1", "1.", "1. Rodzaj dokumentu"),
+            entry(RowType.VALUE, new Value("1", null, "---"), "1", "1.", "2. Sygnatura"),
+            entry(RowType.VALUE, new Value("1", null, "JAN NOWAK"), "1", "1.", "3. Notariusz"),
+            entry(RowType.VALUE, new Value("2", null, "WYROK"), "2", "1.", "1. Rodzaj dokumentu"),
+            entry(RowType.VALUE, new Value("1", null, "SĄD REJONOWY"), "1.", "4. Sąd", "1. Nazwa", "x"),
+            entry(RowType.VALUE, new Value("1", null, "KŁOBUCK"), "1.", "4. Sąd", "2. Siedziba", "x"),
+            entry(RowType.VALUE, new Value("2", null, "CZĘSTOCHOWA"), "2.", "4. Sąd", "2. Siedziba", "x")));
+
+    @Test
+    public void shouldLookUpEntriesByTheirFirstKeys() {
+        // when
+        var firstName = OWNERS.getValue("1. Imię");
+        var surname = OWNERS.getValue("1. Nazwisko");
+
+        // then
+        assertThat(firstName.values()).extracting(Value::value).containsExactly("JAN", "ANNA", "PIOTR", "ADAM");
+        assertThat(surname.values()).extracting(Value::value).containsExactly("NOWAK");
+        assertThat(OWNERS.getValue("3. Nazwisko").values()).isEmpty();
+    }
+
+    @Test
+    public void shouldLookUpEntriesByTheirFirstTwoKeys() {
+        // when
+        var first = CHANGES.getIndexedValue(1, "4. Sąd");
+        var second = CHANGES.getIndexedValue(2, "4. Sąd", "2. Siedziba");
+
+        // then
+        assertThat(first.values()).extracting(Value::value).containsExactly("SĄD REJONOWY", "KŁOBUCK");
+        assertThat(second.values()).extracting(Value::value).containsExactly("CZĘSTOCHOWA");
+        assertThat(CHANGES.getIndexedValue(1, "4. Sąd", "1. Nazwa").values()).extracting(Value::value).containsExactly("SĄD REJONOWY");
+        assertThat(CHANGES.getIndexedValue(3, "4. Sąd").values()).isEmpty();
+        assertThat(CHANGES.getChangeValue(1, new String[]{"1. Rodzaj dokumentu", "3. Notariusz"})).isEqualTo("AKT NOTARIALNY, JAN NOWAK");
+        assertThat(CHANGES.getChangeFields(1)).containsExactlyInAnyOrder("1. Rodzaj dokumentu", "3. Notariusz");
+        assertThat(CHANGES.getChangeFields(2)).containsExactly("1. Rodzaj dokumentu");
+        assertThat(OWNERS.getIndexedValue(1, "1. Imię").values()).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepLookupsInSectionOrderForManyEntries() {
+        var entries = new ArrayList<Entry>();
+        for (var i = 0; i < 1000; i++) {
+            entries.add(entry(RowType.VALUE, new Value("1", null, "W" + i), (i % 7) + ".", "4. Sąd", "2. Siedziba", "x"));
+        }
+        var section = new Section("Rubryka 2.1 - Dokument", entries);
+
+        // when
+        var values = section.getIndexedValue(3, "4. Sąd");
+
+        // then
+        assertThat(values.values()).hasSize(143);
+        assertThat(values.values()).extracting(Value::value).startsWith("W3", "W10", "W17").endsWith("W997");
+    }
+
+    @Test
+    public void shouldCompareSectionsByTheirEntries() {
+        // when
+        var copy = new Section(OWNERS.title(), new ArrayList<>(OWNERS.entries()));
+        var page = new Page("Dział II", List.of(OWNERS));
+
+        // then
+        assertThat(copy).isEqualTo(OWNERS).hasSameHashCodeAs(OWNERS);
+        assertThat(new ParsedRegisterSerialized(false).deserialize(new ParsedRegisterSerialized(false).serialize(new ParsedRegister(List.of(page)))))
+                .isEqualTo(new ParsedRegister(List.of(page)));
+        assertThatThrownBy(() -> new Section(OWNERS.title(), List.of(), OWNERS.index()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Entry entry(RowType rowType, Value value, String... keys) {
+        return new Entry(rowType, List.of(keys), value);
+    }
+}
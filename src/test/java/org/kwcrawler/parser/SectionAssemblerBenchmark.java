@@ -0,0 +1,119 @@
+package org.kwcrawler.parser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/// Assembly of a large chapter IV section (mortgages), run with `-prof gc` to see allocations.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SectionAssemblerBenchmark {
+    private static final String[] FIELDS = {
+            "1. Numer hipoteki", "2. Rodzaj hipoteki", "3. Suma", "4. Waluta", "5. Wierzytelność", "6. Wierzyciel"
+    };
+
+    @Param({"1000"})
+    public int mortgages;
+
+    private Cell[] cells;
+    private int[] rowEnds;
+    private String html;
+
+    private final SectionAssembler assembler = new SectionAssembler();
+    private final StreamingPageParser streamingParser = new StreamingPageParser();
+
+    @Setup
+    public void setUp() {
+        List<List<Cell>> rows = new ArrayList<>();
+        var page = new StringBuilder("<html><body><div id=\"contentDzialu\"><table class=\"tbOdpis\"><tbody>\n");
+
+        rows.add(List.of(new Cell("csTytul", "Rubryka 4.4 - Hipoteka", 0, 6)));
+        page.append("<tr><td class=\"csTytul\" colspan=\"6\">Rubryka 4.4 - Hipoteka</td></tr>\n");
+
+        var headers = new String[]{"Lp.", "Nazwa pola", "Wpisu", "Wykr.", "Treść pola"};
+        var headerRow = new ArrayList<Cell>();
+        page.append("<tr>");
+        for (var header : headers) {
+            var colspan = header.equals("Nazwa pola") ? 2 : 1;
+            headerRow.add(new Cell("csCOpis", header, 0, colspan));
+            page.append("<td class=\"csCOpis\" colspan=\"").append(colspan).append("\">").append(header).append("</td>");
+        }
+        page.append("</tr>\n");
+        rows.add(headerRow);
+
+        for (int i = 1; i <= mortgages; i++) {
+            for (int field = 0; field < FIELDS.length; field++) {
+                var row = new ArrayList<Cell>();
+                page.append("<tr>");
+                if (field == 0) {
+                    row.add(new Cell("csBDane", i + ".", FIELDS.length, 1));
+                    page.append("<td class=\"csBDane\" rowspan=\"").append(FIELDS.length).append("\">").append(i).append(".</td>");
+                }
+                var value = "WARTOŚĆ " + i + "/" + field;
+                row.add(new Cell("csOpis", FIELDS[field], 0, 1));
+                row.add(new Cell("csOpis", "", 0, 1));
+                row.add(new Cell("csDane", Integer.toString(i), 0, 1));
+                row.add(new Cell("csDane", "---", 0, 1));
+                row.add(new Cell("csDane", value, 0, 1));
+                page.append("<td class=\"csOpis\">").append(FIELDS[field]).append("</td><td class=\"csOpis\"></td>")
+                        .append("<td class=\"csDane\">").append(i).append("</td><td class=\"csDane\">---</td>")
+                        .append("<td class=\"csDane\">").append(value).append("</td></tr>\n");
+                rows.add(row);
+            }
+            rows.add(List.of(new Cell("csBreak", "", 0, 6)));
+            page.append("<tr><td class=\"csBreak\" colspan=\"6\">&nbsp;</td></tr>\n");
+        }
+        page.append("</tbody></table></div></body></html>");
+        html = page.toString();
+
+        cells = rows.stream().flatMap(List::stream).toArray(Cell[]::new);
+        rowEnds = new int[rows.size()];
+        var end = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            end += rows.get(i).size();
+            rowEnds[i] = end;
+        }
+    }
+
+    @Benchmark
+    public Object assembleSection() {
+        assembler.reset();
+        var rowStart = 0;
+        for (var rowEnd : rowEnds) {
+            assembler.addRow(cells, rowStart, rowEnd);
+            rowStart = rowEnd;
+        }
+        return assembler.build();
+    }
+
+    @Benchmark
+    public Object parsePage() {
+        return streamingParser.parse(html);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        var options = new OptionsBuilder()
+                .include(SectionAssemblerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
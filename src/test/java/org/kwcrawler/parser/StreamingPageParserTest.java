@@ -0,0 +1,146 @@
+package org.kwcrawler.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.kwcrawler.CourtCode;
+import org.kwcrawler.structure.Chapter;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class StreamingPageParserTest {
+    private final RegisterParser domParser = new RegisterParser(CourtCode.of("GL1G"));
+    private final StreamingPageParser streamingParser = new StreamingPageParser();
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"chapter-i-o.html", "chapter-ii.html"})
+    public void shouldParseSamePageAsDomParser(String page) throws URISyntaxException {
+        var file = Path.of(getClass().getResource("/pages/" + page).toURI());
+
+        assertSamePage(file);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"chapter-i-o.html", "chapter-ii.html"})
+    public void shouldParseOnlySelectedSections(String page) throws URISyntaxException {
+        var file = Path.of(getClass().getResource("/pages/" + page).toURI());
+        var selection = new SectionSelection(
+                Set.of(Chapter.CHAPTER_I_O, Chapter.CHAPTER_II),
+                Set.of("Rubryka 1.4 - Oznaczenie", "Podrubryka 2.2.5 - Osoba fizyczna", RegisterParser.APPLICATIONS_TITLE)
+        );
+        var all = domParser.parse(file);
+
+        // when
+        var expected = domParser.parse(file, selection);
+        var actual = streamingParser.parse(file, selection);
+
+        // then
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual.title()).isEqualTo(all.title());
+        assertThat(actual.sections())
+                .isNotEmpty()
+                .containsExactlyElementsOf(all.sections().stream()
+                        .filter(section -> selection.contains(section.title()))
+                        .toList());
+    }
+
+    @Test
+    public void shouldFollowTextRulesOfDomParser() throws IOException {
+        var file = tempDir.resolve("page.html");
+        Files.writeString(file, """
+                <div id="contentDzialu">
+                <table class="tbOdpis"><tr><td class="csTytul">Rubryka 2.2 - Test</td></tr>
+                <tr><td class="csCOpis">Nazwa pola</td><td class="csCOpis">Wpisu</td><td class="csCOpis">Wykr.</td><td class="csCOpis">Treść pola</td></tr>
+                <tr><td class="csOpis">1. Pole<p>z akapitem</td><td class="csDane">1</td><td class="csDane">---</td><td class="csDane"><div>A</div>B<div>C</div><!-- x --><div>D</div>E</td></tr>
+                <tr><td class="csOpis">2. Pole</td><td class="csDane">1</td><td class="csDane"></td><td class="csDane">x</br>y<p>z</p>&amp;&#x41;&nbsp;&nbsp;<hr>q <pre>
+                  a   b</pre></td></tr>
+                <tr><td class="csOpis">3. Pole</td><td class="csDane" rowspan=2>2</td><td class="csDane">---</td><td class="csDane">Ala<b>ma</b> <i>kota</i></td>
+                <td class="csOpis">4. Pole</td><td class="csDane">---</td><td class="csDane">X</td>
+                </table>
+                </div>
+                <table class="tbOdpis"><tr><td class="csTytul">Poza treścią</td></tr></table>
+                """);
+
+        assertSamePage(file);
+    }
+
+    @Test
+    public void shouldGiveUpOnNestedRegisterTables() throws IOException {
+        var file = tempDir.resolve("page.html");
+        Files.writeString(file, """
+                <div id="contentDzialu">
+                <table class="tbOdpis"><tr><td class="csTytul">Rubryka</td><td><table class="tbOdpis"><tr><td>x</td></tr></table></td></tr></table>
+                </div>
+                """);
+
+        // when
+        var page = streamingParser.parse(file);
+
+        // then
+        assertThat(page).isNull();
+    }
+
+    @Test
+    public void shouldDecodePagesInCharsetOfTheirMetaTag() throws IOException {
+        var file = tempDir.resolve("page.html");
+        var html = """
+                <html><head><meta http-equiv="Content-Type" content="text/html; charset=ISO-8859-2"></head><body>
+                <div id="contentDzialu">
+                <table class="tbOdpis"><tr><td class="csTytul">Rubryka 1.3 - Położenie</td></tr>
+                <tr><td class="csCOpis">Nazwa pola</td><td class="csCOpis">Wpisu</td><td class="csCOpis">Wykr.</td><td class="csCOpis">Treść pola</td></tr>
+                <tr><td class="csOpis">1. Miejscowość</td><td class="csDane">1</td><td class="csDane">---</td><td class="csDane">Łódź</td></tr></table>
+                </div></body></html>
+                """;
+        Files.write(file, html.getBytes(Charset.forName("ISO-8859-2")));
+
+        // when
+        var page = streamingParser.parse(file);
+
+        // then
+        assertThat(page).isEqualTo(domParser.parse(file));
+        assertThat(page.sections().getFirst().entries())
+                .extracting(entry -> entry.keys().getFirst(), entry -> entry.value().value())
+                .contains(tuple("1. Miejscowość", "Łódź"));
+    }
+
+    /// Differential test over downloaded pages, e.g. `-Dkwcrawler.samplePages=kw/GL1G`, skipped without them
+    @Test
+    public void shouldParseSampleOfDownloadedPagesLikeDomParser() throws IOException {
+        var sampleDir = System.getProperty("kwcrawler.samplePages");
+        assumeTrue(sampleDir != null, "no sample of downloaded pages given");
+
+        List<Path> pages;
+        try (var files = Files.walk(Path.of(sampleDir))) {
+            pages = files
+                    .filter(path -> path.getFileName().toString().endsWith(".html"))
+                    .filter(path -> !path.getFileName().toString().endsWith("-Summary.html"))
+                    .toList();
+        }
+
+        assertThat(pages).isNotEmpty();
+        pages.parallelStream().forEach(this::assertSamePage);
+    }
+
+    private void assertSamePage(Path file) {
+        // when
+        var expected = domParser.parse(file);
+        var actual = streamingParser.parse(file);
+
+        // then
+        assertThat(actual).as(file.toString()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,61 @@
+package org.kwcrawler.parser;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ValueHistoryTest {
+    @Test
+    public void shouldKeepOnlyValuesNotRemovedAsCurrent() {
+        // when
+        var history = ValueHistory.of(List.of(new Value("1", "2", "STARA"), new Value("2", null, "NOWA")));
+
+        // then
+        assertThat(history.currentValue()).isEqualTo("NOWA");
+        assertThat(history.currentValues()).containsExactly("NOWA");
+        assertThat(history.toStringOnlyCurrent()).isEqualTo("NOWA");
+        assertThat(history.isCurrentNonEmpty()).isTrue();
+    }
+
+    @Test
+    public void shouldJoinSeveralCurrentValues() {
+        // when
+        var history = ValueHistory.of(List.of(new Value("1", null, "1"), new Value("1", null, "2"), new Value("1", null, "---")));
+
+        // then
+        assertThat(history.currentValues()).containsExactly("1", "2", "---");
+        assertThat(history.toStringOnlyCurrent()).isEqualTo("1, 2, ---");
+        assertThatThrownBy(history::currentValue).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void shouldTreatOnlyRemovedAndEmptyValuesAsNoCurrentValue() {
+        // when
+        var removed = ValueHistory.of(List.of(new Value("1", "2", "STARA")));
+        var empty = ValueHistory.of(List.of(new Value("1", null, "---")));
+
+        // then
+        assertThat(removed.currentValue()).isNull();
+        assertThat(removed.toStringOnlyCurrent()).isEmpty();
+        assertThat(removed.isCurrentNonEmpty()).isFalse();
+        assertThat(empty.isCurrentNonEmpty()).isFalse();
+        assertThat(ValueHistory.of(List.of())).isSameAs(ValueHistory.of(List.of()));
+    }
+
+    @Test
+    public void shouldSerializeAsListOfValues() throws Exception {
+        var objectMapper = new ObjectMapper();
+        var history = ValueHistory.of(List.of(new Value("1", null, "NOWA")));
+
+        // when
+        var json = objectMapper.writeValueAsString(history);
+
+        // then
+        assertThat(json).isEqualTo("[{\"addedIndex\":\"1\",\"removedIndex\":null,\"value\":\"NOWA\"}]");
+        assertThat(objectMapper.readValue(json, ValueHistory.class)).isEqualTo(history);
+    }
+}